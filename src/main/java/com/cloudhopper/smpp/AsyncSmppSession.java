@@ -0,0 +1,119 @@
+package com.cloudhopper.smpp;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+
+/**
+ * An SmppSession that can also send requests without blocking on their
+ * response, tell whether it's ready to accept another request and exposes
+ * its send window and recent response time (e.g. to pick the least loaded
+ * of several sessions).  Kept apart from SmppSession so existing
+ * implementations of that interface don't break.  Sessions created by a
+ * DefaultSmppClient or DefaultSmppServer implement it.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface AsyncSmppSession extends SmppSession {
+
+    /**
+     * Gets the send window of this session regardless of which send window
+     * factory it was created with.  Prefer this over getSendWindow() unless
+     * the ch-commons-util Window itself is needed.
+     * @return The send window
+     */
+    public SmppSendWindow getSmppSendWindow();
+
+    /**
+     * Gets a moving average of the time between a request being accepted
+     * into the send window and its response being received.
+     * @return The recent response time in milliseconds or -1 if no response
+     *      has been received yet
+     */
+    public long getRecentResponseTime();
+
+    /**
+     * Asynchronously sends a "submit" request to the remote endpoint.
+     * @see #sendRequestAsync(com.cloudhopper.smpp.pdu.PduRequest, long)
+     */
+    public PduResponseFuture<SubmitSmResp> submitAsync(SubmitSm request, long timeoutMillis);
+
+    /**
+     * Asynchronously sends a request PDU to the remote endpoint and returns a
+     * future completed as soon as the response is matched to the request
+     * (along with any listeners added to it).  The response is NOT passed to
+     * the "fireExpectedPduResponseReceived" method on the session handler and
+     * an expired request is NOT passed to "firePduRequestExpired" -- the
+     * future is failed instead.  This method never throws a checked exception,
+     * any error sending the request fails the returned future.
+     * <br><br>
+     * The request is always written without waiting for the write to
+     * complete (regardless of the non-blocking writes setting) and a send
+     * rate limit delay is scheduled rather than waited out, so the calling
+     * thread only blocks while waiting for a slot in the window.  On a session
+     * with neither a monitor executor nor a timer, a request that would have
+     * to be delayed by the send rate limit fails instead.
+     * @param request The request PDU to send
+     * @param timeoutMillis The time to wait for a slot to open in the
+     *      underlying window (and the longest a send rate limit may delay
+     *      the request).  Use the request expiry timeout to limit the time to
+     *      wait for a response.
+     * @return A future completed with the response
+     */
+    public <R extends PduResponse> PduResponseFuture<R> sendRequestAsync(PduRequest<R> request, long timeoutMillis);
+
+    /**
+     * Checks if the session can accept another request without blocking: it's
+     * bound, the send window has a free slot and the underlying channel is
+     * writable.
+     * @return True if the session is ready
+     */
+    public boolean isReady();
+
+    /**
+     * Adds a listener notified each time the session changes from ready to
+     * not ready (or back).  Lets a single thread dispatch requests over many
+     * sessions without ever parking on one of them.  The listener is not
+     * called for the current state, so check isReady() after adding it.
+     * @param listener The listener to add
+     */
+    public void addReadyListener(SmppSessionReadyListener listener);
+
+    /**
+     * Removes a listener previously added with addReadyListener.
+     * @param listener The listener to remove
+     */
+    public void removeReadyListener(SmppSessionReadyListener listener);
+
+    /**
+     * Same as sendRequestAsync, but fails fast rather than waiting for a slot
+     * in the send window or for the channel's write buffer to drain.
+     * @param request The request PDU to send
+     * @return A future completed with the response or null if the session
+     *      isn't ready (the request was not sent)
+     * @see #sendRequestAsync(com.cloudhopper.smpp.pdu.PduRequest, long)
+     */
+    public <R extends PduResponse> PduResponseFuture<R> trySendRequestAsync(PduRequest<R> request);
+
+}
@@ -0,0 +1,46 @@
+package com.cloudhopper.smpp;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.pdu.PduRequest;
+
+/**
+ * Receives the requests of a session from a PduRequestPublisher, but only as
+ * many as it requested via its subscription.  Follows the same protocol as a
+ * Reactive Streams subscriber: onSubscribe first, then up to the requested
+ * number of onNext calls and finally either onError or onComplete.  The
+ * subscriber is responsible for sending back a response to every request.
+ * (java.util.concurrent.Flow is a JDK 9 API, which a 1.7 source level
+ * can't use, hence these small interfaces.)
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface PduRequestSubscriber {
+
+    public void onSubscribe(PduRequestSubscription subscription);
+
+    public void onNext(PduRequest request);
+
+    public void onError(Throwable t);
+
+    public void onComplete();
+
+}
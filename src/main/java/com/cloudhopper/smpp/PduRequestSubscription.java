@@ -0,0 +1,44 @@
+package com.cloudhopper.smpp;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The link between a PduRequestPublisher and its subscriber.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface PduRequestSubscription {
+
+    /**
+     * Requests more requests to be passed to the subscriber.  Can be called
+     * at any time, including from within onNext.
+     * @param n The number of additional requests (> 0), Long.MAX_VALUE for
+     *      no limit
+     */
+    public void request(long n);
+
+    /**
+     * Stops passing requests to the subscriber.  Any further requests are
+     * passed to the session handler the publisher delegates to.
+     */
+    public void cancel();
+
+}
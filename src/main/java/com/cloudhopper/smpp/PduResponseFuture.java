@@ -0,0 +1,80 @@
+package com.cloudhopper.smpp;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import java.util.concurrent.Future;
+
+/**
+ * The result of a request sent with AsyncSmppSession.sendRequestAsync.  Completed
+ * directly when the response is matched to the request, so callers can chain
+ * further work per request with listeners instead of correlating responses
+ * passed to the session handler.  Fails with an SmppTimeoutException if the
+ * request expires, an SmppChannelException if it couldn't be written or the
+ * channel closed, a GenericNackException if a generic_nack was received or an
+ * UnexpectedPduResponseException if a response of the wrong type was received.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface PduResponseFuture<R extends PduResponse> extends Future<R> {
+
+    /**
+     * Gets the request this future is for.
+     * @return The request
+     */
+    public PduRequest<R> getRequest();
+
+    /**
+     * Gets the response along with the window wait and response times.
+     * @return The async response or null if not (successfully) done yet
+     */
+    public PduAsyncResponse getAsyncResponse();
+
+    /**
+     * Checks whether a response of the expected type was received.
+     * @return True if done successfully
+     */
+    public boolean isSuccess();
+
+    /**
+     * Gets the reason this future failed.
+     * @return The cause or null if not done or done successfully
+     */
+    public Throwable getCause();
+
+    /**
+     * Waits for this future to be done.
+     * @param timeoutMillis The max time to wait
+     * @return True if done within the timeout
+     * @throws InterruptedException
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException;
+
+    /**
+     * Adds a listener called once this future is done.  If already done, the
+     * listener is called right away by the calling thread.
+     * @param listener The listener
+     * @return This future
+     */
+    public PduResponseFuture<R> addListener(PduResponseListener<R> listener);
+
+}
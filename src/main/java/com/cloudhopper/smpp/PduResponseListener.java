@@ -0,0 +1,40 @@
+package com.cloudhopper.smpp;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.pdu.PduResponse;
+
+/**
+ * Listens for the completion of a PduResponseFuture.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface PduResponseListener<R extends PduResponse> {
+
+    /**
+     * Called once the future is done (successfully or not).  Runs on the
+     * thread that completed the future, usually the I/O thread (or the
+     * session's handler executor if one is configured), so it must not block.
+     * @param future The future that is done
+     */
+    public void operationComplete(PduResponseFuture<R> future);
+
+}
@@ -55,9 +55,36 @@ public class SmppConstants {
     public static final long DEFAULT_BIND_TIMEOUT = 5000;
     public static final long DEFAULT_REQUEST_EXPIRY_TIMEOUT = -1;   // disabled
     public static final long DEFAULT_WINDOW_MONITOR_INTERVAL = -1;  // disabled
+    public static final boolean DEFAULT_REQUEST_EXPIRY_TIMER_ENABLED = false;
     public static final int DEFAULT_SERVER_MAX_CONNECTION_SIZE = 100;
+    public static final int DEFAULT_SERVER_IO_WORKER_COUNT = Runtime.getRuntime().availableProcessors() * 2;
     public static final boolean DEFAULT_SERVER_NON_BLOCKING_SOCKETS_ENABLED = true;
     public static final boolean DEFAULT_SERVER_REUSE_ADDRESS = true;
+    public static final int DEFAULT_SERVER_BACKLOG = -1;            // system default
+    public static final boolean DEFAULT_TCP_NO_DELAY = false;
+    public static final boolean DEFAULT_TCP_KEEP_ALIVE = false;
+    public static final int DEFAULT_SEND_BUFFER_SIZE = -1;          // system default
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE = -1;       // system default
+    public static final boolean DEFAULT_NON_BLOCKING_WRITES_ENABLED = false;
+    public static final int DEFAULT_DIRECT_BUFFER_ARENA_SIZE = -1;   // disabled
+    public static final int DEFAULT_WRITE_COALESCING_MAX_PDUS = -1;  // disabled
+    public static final int DEFAULT_WRITE_COALESCING_MAX_BYTES = 65536;
+    public static final boolean DEFAULT_HANDLER_EXECUTOR_ORDERED = true;
+    public static final boolean DEFAULT_ZERO_COPY_DECODE_ENABLED = false;
+    public static final boolean DEFAULT_ADAPTIVE_WINDOW_ENABLED = false;
+    public static final int DEFAULT_ADAPTIVE_WINDOW_MIN_SIZE = 1;
+    public static final long DEFAULT_ADAPTIVE_WINDOW_LATENCY_THRESHOLD = 5000;
+    public static final int DEFAULT_SEND_RATE_LIMIT = -1;           // disabled
+    public static final int DEFAULT_SEND_RATE_BURST = 1;
+    public static final long DEFAULT_THROTTLE_BACKOFF_TIME = -1;    // disabled
+    public static final long DEFAULT_RECONNECT_DELAY = 100;
+    public static final long DEFAULT_RECONNECT_MAX_DELAY = 30000;
+    public static final int DEFAULT_RECONNECT_QUEUE_SIZE = 1000;
+    public static final long DEFAULT_ENQUIRE_LINK_INTERVAL = -1;    // disabled
+    public static final int DEFAULT_ENQUIRE_LINK_MAX_MISSED = 3;
+    public static final int DEFAULT_INBOUND_HIGH_WATERMARK = -1;    // disabled
+    public static final int DEFAULT_INBOUND_LOW_WATERMARK = -1;     // half of high watermark
+    public static final boolean DEFAULT_INBOUND_WATERMARK_BYTES = false;
 
     //
     // SUBMIT_MULTI destination type flags
@@ -0,0 +1,102 @@
+package com.cloudhopper.smpp;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.windowing.DuplicateKeyException;
+import com.cloudhopper.commons.util.windowing.OfferTimeoutException;
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import java.util.Map;
+
+/**
+ * The "window" of requests a session has sent to the remote endpoint, but has
+ * not yet received a response for.  Requests are keyed by their sequence
+ * number.  A session creates its window with the SmppSendWindowFactory in its
+ * configuration.
+ * 
+ * @see SmppSessionConfiguration#setSendWindowFactory(com.cloudhopper.smpp.SmppSendWindowFactory)
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface SmppSendWindow {
+
+    /**
+     * Gets the max number of requests that can be pending in the window.
+     * @return The max size of the window
+     */
+    public int getMaxSize();
+
+    /**
+     * Gets the number of requests currently pending in the window.
+     * @return The current size of the window
+     */
+    public int getSize();
+
+    /**
+     * Offers a request to the window, waiting up to offerTimeoutMillis for a
+     * slot to open up if the window is full.
+     * @param sequenceNumber The sequence number of the request
+     * @param request The request
+     * @param offerTimeoutMillis The time to wait for a free slot
+     * @param expireTimeoutMillis The time after which the request expires if
+     *      no response is received (only if monitoring is enabled), or <= 0
+     *      to never expire
+     * @param callerWaitingHint True if the caller will wait on the future
+     * @return The future that completes once a response is received
+     * @throws DuplicateKeyException If a request with the same sequence number
+     *      is already pending
+     * @throws OfferTimeoutException If no slot opened up in time
+     * @throws InterruptedException If interrupted while waiting for a slot
+     */
+    public WindowFuture<Integer,PduRequest,PduResponse> offer(int sequenceNumber, PduRequest request, long offerTimeoutMillis, long expireTimeoutMillis, boolean callerWaitingHint) throws DuplicateKeyException, OfferTimeoutException, InterruptedException;
+
+    /**
+     * Completes the pending request with the sequence number and removes it
+     * from the window.
+     * @param sequenceNumber The sequence number of the response
+     * @param response The response
+     * @return The future of the matching request or null if no request with
+     *      the sequence number is pending
+     * @throws InterruptedException
+     */
+    public WindowFuture<Integer,PduRequest,PduResponse> complete(int sequenceNumber, PduResponse response) throws InterruptedException;
+
+    /**
+     * Releases anything the window still keeps for a request that is done
+     * without its response having been passed to complete(), e.g. once it
+     * was cancelled or failed via its future.  A noop if there is nothing to
+     * release.
+     * @param future The future of the request
+     */
+    public void release(WindowFuture<Integer,PduRequest,PduResponse> future);
+
+    /**
+     * Creates a snapshot of the pending requests sorted by sequence number.
+     * @return The sorted snapshot
+     */
+    public Map<Integer,WindowFuture<Integer,PduRequest,PduResponse>> createSortedSnapshot();
+
+    /**
+     * Cancels all pending requests and stops any monitoring of the window.
+     */
+    public void destroy();
+
+}
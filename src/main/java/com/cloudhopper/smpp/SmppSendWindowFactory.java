@@ -0,0 +1,49 @@
+package com.cloudhopper.smpp;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.windowing.WindowListener;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import java.util.concurrent.ScheduledExecutorService;
+import org.jboss.netty.util.Timer;
+
+/**
+ * Creates the send window of a session.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface SmppSendWindowFactory {
+
+    /**
+     * Creates a new send window for a session.
+     * @param configuration The session configuration (window size, monitor
+     *      interval, etc.)
+     * @param monitorExecutor The executor to monitor the window for expired
+     *      requests under or null if monitoring is disabled
+     * @param expiryTimer The (shared) wheel timer to expire requests on if
+     *      the request expiry timer is enabled or null if not available
+     * @param listener The listener to notify of expired requests
+     * @return The new send window
+     */
+    public SmppSendWindow createSendWindow(SmppSessionConfiguration configuration, ScheduledExecutorService monitorExecutor, Timer expiryTimer, WindowListener<Integer,PduRequest,PduResponse> listener);
+
+}
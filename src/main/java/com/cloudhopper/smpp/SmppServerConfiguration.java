@@ -22,6 +22,7 @@ package com.cloudhopper.smpp;
 
 import com.cloudhopper.smpp.ssl.SslConfiguration;
 import com.cloudhopper.smpp.type.SmppConnectionConfiguration;
+import java.util.concurrent.Executor;
 
 /**
  * Configuration of an SMPP server.
@@ -47,8 +48,12 @@ public class SmppServerConfiguration extends SmppConnectionConfiguration {
     // this number corrosponds to the number of worker threads handling reading
     // data from sockets and the thread things will be processed under
     private int maxConnectionSize;
+    private int ioWorkerCount;
     private boolean nonBlockingSocketsEnabled;
     private boolean reuseAddress;
+    private int backlog;
+    // if true, short_message and TLV values are slices of the inbound buffer
+    private boolean zeroCopyDecodeEnabled;
     // jmx options
     private boolean jmxEnabled;
     private String jmxDomain;
@@ -57,7 +62,26 @@ public class SmppServerConfiguration extends SmppConnectionConfiguration {
     private long defaultWindowWaitTimeout = SmppConstants.DEFAULT_WINDOW_WAIT_TIMEOUT;
     private long defaultRequestExpiryTimeout = SmppConstants.DEFAULT_REQUEST_EXPIRY_TIMEOUT;
     private long defaultWindowMonitorInterval = SmppConstants.DEFAULT_WINDOW_MONITOR_INTERVAL;
+    private boolean defaultRequestExpiryTimerEnabled = SmppConstants.DEFAULT_REQUEST_EXPIRY_TIMER_ENABLED;
     private boolean defaultSessionCountersEnabled = false;
+    private boolean defaultNonBlockingWritesEnabled = SmppConstants.DEFAULT_NON_BLOCKING_WRITES_ENABLED;
+    private int defaultDirectBufferArenaSize = SmppConstants.DEFAULT_DIRECT_BUFFER_ARENA_SIZE;
+    private int defaultWriteCoalescingMaxPdus = SmppConstants.DEFAULT_WRITE_COALESCING_MAX_PDUS;
+    private int defaultWriteCoalescingMaxBytes = SmppConstants.DEFAULT_WRITE_COALESCING_MAX_BYTES;
+    private Executor defaultHandlerExecutor = null;
+    private boolean defaultHandlerExecutorOrdered = SmppConstants.DEFAULT_HANDLER_EXECUTOR_ORDERED;
+    private SmppSendWindowFactory defaultSendWindowFactory = null;
+    private boolean defaultAdaptiveWindowEnabled = SmppConstants.DEFAULT_ADAPTIVE_WINDOW_ENABLED;
+    private int defaultAdaptiveWindowMinSize = SmppConstants.DEFAULT_ADAPTIVE_WINDOW_MIN_SIZE;
+    private long defaultAdaptiveWindowLatencyThreshold = SmppConstants.DEFAULT_ADAPTIVE_WINDOW_LATENCY_THRESHOLD;
+    private int defaultSendRateLimit = SmppConstants.DEFAULT_SEND_RATE_LIMIT;
+    private int defaultSendRateBurst = SmppConstants.DEFAULT_SEND_RATE_BURST;
+    private long defaultThrottleBackoffTime = SmppConstants.DEFAULT_THROTTLE_BACKOFF_TIME;
+    private long defaultEnquireLinkInterval = SmppConstants.DEFAULT_ENQUIRE_LINK_INTERVAL;
+    private int defaultEnquireLinkMaxMissed = SmppConstants.DEFAULT_ENQUIRE_LINK_MAX_MISSED;
+    private int defaultInboundHighWatermark = SmppConstants.DEFAULT_INBOUND_HIGH_WATERMARK;
+    private int defaultInboundLowWatermark = SmppConstants.DEFAULT_INBOUND_LOW_WATERMARK;
+    private boolean defaultInboundWatermarkBytes = SmppConstants.DEFAULT_INBOUND_WATERMARK_BYTES;
 
     public SmppServerConfiguration() {
         super("0.0.0.0", 2775, 5000l);
@@ -67,8 +91,11 @@ public class SmppServerConfiguration extends SmppConnectionConfiguration {
         this.autoNegotiateInterfaceVersion = true;
         this.interfaceVersion = SmppConstants.VERSION_3_4;
         this.maxConnectionSize = SmppConstants.DEFAULT_SERVER_MAX_CONNECTION_SIZE;
+        this.ioWorkerCount = SmppConstants.DEFAULT_SERVER_IO_WORKER_COUNT;
         this.nonBlockingSocketsEnabled = SmppConstants.DEFAULT_SERVER_NON_BLOCKING_SOCKETS_ENABLED;
         this.reuseAddress = SmppConstants.DEFAULT_SERVER_REUSE_ADDRESS;
+        this.backlog = SmppConstants.DEFAULT_SERVER_BACKLOG;
+        this.zeroCopyDecodeEnabled = SmppConstants.DEFAULT_ZERO_COPY_DECODE_ENABLED;
         this.jmxEnabled = false;
         this.jmxDomain = "com.cloudhopper.smpp";
         this.defaultWindowSize = SmppConstants.DEFAULT_WINDOW_SIZE;
@@ -101,6 +128,37 @@ public class SmppServerConfiguration extends SmppConnectionConfiguration {
         this.reuseAddress = reuseAddress;
     }
 
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Sets the max number of pending connections the server socket queues
+     * until they are accepted.  The socket options inherited from
+     * SmppConnectionConfiguration (tcpNoDelay, keepAlive, send and receive
+     * buffer sizes) apply to each accepted connection.  Defaults to -1 (the
+     * system default).
+     * @param backlog The accept backlog or -1
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public boolean isZeroCopyDecodeEnabled() {
+        return zeroCopyDecodeEnabled;
+    }
+
+    /**
+     * Sets if PDUs received by this server keep their short_message and TLV
+     * values as slices of the buffer they were read from.  Applies to every
+     * session of this server since they share a single decoder.
+     * @see SmppSessionConfiguration#setZeroCopyDecodeEnabled(boolean)
+     * @param zeroCopyDecodeEnabled True if enabled, otherwise false
+     */
+    public void setZeroCopyDecodeEnabled(boolean zeroCopyDecodeEnabled) {
+        this.zeroCopyDecodeEnabled = zeroCopyDecodeEnabled;
+    }
+
     public boolean isNonBlockingSocketsEnabled() {
         return nonBlockingSocketsEnabled;
     }
@@ -121,16 +179,34 @@ public class SmppServerConfiguration extends SmppConnectionConfiguration {
 
     /**
      * Set the maximum number of connections this server is configured to
-     * handle.
+     * handle.  Any connection accepted beyond it is closed immediately.
      * @param maxConnectionSize Max number of connections. Must be >= 1
      */
     public void setMaxConnectionSize(int maxConnectionSize) {
-        if (this.maxConnectionSize < 1) {
+        if (maxConnectionSize < 1) {
             throw new IllegalArgumentException("Max connection size must be >= 1");
         }
         this.maxConnectionSize = maxConnectionSize;
     }
 
+    public int getIoWorkerCount() {
+        return ioWorkerCount;
+    }
+
+    /**
+     * Sets the number of NIO worker threads that read and write the accepted
+     * connections (each worker multiplexes many connections).  Not used if
+     * non-blocking sockets are disabled, since then each connection gets
+     * its own thread.  Defaults to 2x the number of available processors.
+     * @param ioWorkerCount The number of I/O workers. Must be >= 1
+     */
+    public void setIoWorkerCount(int ioWorkerCount) {
+        if (ioWorkerCount < 1) {
+            throw new IllegalArgumentException("I/O worker count must be >= 1");
+        }
+        this.ioWorkerCount = ioWorkerCount;
+    }
+
     /**
      * Set the name of the server that is used for some logging and naming of
      * threads.  The default is "SmppServer".
@@ -226,6 +302,14 @@ public class SmppServerConfiguration extends SmppConnectionConfiguration {
         this.defaultWindowMonitorInterval = defaultWindowMonitorInterval;
     }
 
+    public boolean isDefaultRequestExpiryTimerEnabled() {
+        return defaultRequestExpiryTimerEnabled;
+    }
+
+    public void setDefaultRequestExpiryTimerEnabled(boolean defaultRequestExpiryTimerEnabled) {
+        this.defaultRequestExpiryTimerEnabled = defaultRequestExpiryTimerEnabled;
+    }
+
     public int getDefaultWindowSize() {
         return defaultWindowSize;
     }
@@ -250,4 +334,171 @@ public class SmppServerConfiguration extends SmppConnectionConfiguration {
         this.defaultSessionCountersEnabled = defaultSessionCountersEnabled;
     }
 
+    public boolean isDefaultNonBlockingWritesEnabled() {
+        return defaultNonBlockingWritesEnabled;
+    }
+
+    public void setDefaultNonBlockingWritesEnabled(boolean defaultNonBlockingWritesEnabled) {
+        this.defaultNonBlockingWritesEnabled = defaultNonBlockingWritesEnabled;
+    }
+
+    public int getDefaultDirectBufferArenaSize() {
+        return defaultDirectBufferArenaSize;
+    }
+
+    public void setDefaultDirectBufferArenaSize(int defaultDirectBufferArenaSize) {
+        this.defaultDirectBufferArenaSize = defaultDirectBufferArenaSize;
+    }
+
+    public int getDefaultWriteCoalescingMaxPdus() {
+        return defaultWriteCoalescingMaxPdus;
+    }
+
+    public void setDefaultWriteCoalescingMaxPdus(int defaultWriteCoalescingMaxPdus) {
+        this.defaultWriteCoalescingMaxPdus = defaultWriteCoalescingMaxPdus;
+    }
+
+    public int getDefaultWriteCoalescingMaxBytes() {
+        return defaultWriteCoalescingMaxBytes;
+    }
+
+    public void setDefaultWriteCoalescingMaxBytes(int defaultWriteCoalescingMaxBytes) {
+        this.defaultWriteCoalescingMaxBytes = defaultWriteCoalescingMaxBytes;
+    }
+
+    public Executor getDefaultHandlerExecutor() {
+        return defaultHandlerExecutor;
+    }
+
+    /**
+     * Sets the executor the session handler of every server session is called
+     * under when a PDU is received (shared by all sessions).
+     * @see SmppSessionConfiguration#setHandlerExecutor(java.util.concurrent.Executor)
+     * @param defaultHandlerExecutor The executor or null to call session
+     *      handlers directly on the I/O threads.
+     */
+    public void setDefaultHandlerExecutor(Executor defaultHandlerExecutor) {
+        this.defaultHandlerExecutor = defaultHandlerExecutor;
+    }
+
+    public boolean isDefaultHandlerExecutorOrdered() {
+        return defaultHandlerExecutorOrdered;
+    }
+
+    public void setDefaultHandlerExecutorOrdered(boolean defaultHandlerExecutorOrdered) {
+        this.defaultHandlerExecutorOrdered = defaultHandlerExecutorOrdered;
+    }
+
+    public SmppSendWindowFactory getDefaultSendWindowFactory() {
+        return defaultSendWindowFactory;
+    }
+
+    /**
+     * Sets the factory the send window of every server session is created with.
+     * @see SmppSessionConfiguration#setSendWindowFactory(com.cloudhopper.smpp.SmppSendWindowFactory)
+     * @param defaultSendWindowFactory The factory or null for the default window
+     */
+    public void setDefaultSendWindowFactory(SmppSendWindowFactory defaultSendWindowFactory) {
+        this.defaultSendWindowFactory = defaultSendWindowFactory;
+    }
+
+    public boolean isDefaultAdaptiveWindowEnabled() {
+        return defaultAdaptiveWindowEnabled;
+    }
+
+    /**
+     * Sets if the effective window size of server sessions adapts to the
+     * remote endpoint.
+     * @see SmppSessionConfiguration#setAdaptiveWindowEnabled(boolean)
+     * @param defaultAdaptiveWindowEnabled True if enabled, otherwise false
+     */
+    public void setDefaultAdaptiveWindowEnabled(boolean defaultAdaptiveWindowEnabled) {
+        this.defaultAdaptiveWindowEnabled = defaultAdaptiveWindowEnabled;
+    }
+
+    public int getDefaultAdaptiveWindowMinSize() {
+        return defaultAdaptiveWindowMinSize;
+    }
+
+    public void setDefaultAdaptiveWindowMinSize(int defaultAdaptiveWindowMinSize) {
+        this.defaultAdaptiveWindowMinSize = defaultAdaptiveWindowMinSize;
+    }
+
+    public long getDefaultAdaptiveWindowLatencyThreshold() {
+        return defaultAdaptiveWindowLatencyThreshold;
+    }
+
+    public void setDefaultAdaptiveWindowLatencyThreshold(long defaultAdaptiveWindowLatencyThreshold) {
+        this.defaultAdaptiveWindowLatencyThreshold = defaultAdaptiveWindowLatencyThreshold;
+    }
+
+    public int getDefaultSendRateLimit() {
+        return defaultSendRateLimit;
+    }
+
+    /**
+     * Sets the max number of deliver_sm (and data_sm) requests per second each
+     * server session will send.
+     * @see SmppSessionConfiguration#setSendRateLimit(int)
+     * @param defaultSendRateLimit The max requests per second or -1 to disable
+     */
+    public void setDefaultSendRateLimit(int defaultSendRateLimit) {
+        this.defaultSendRateLimit = defaultSendRateLimit;
+    }
+
+    public int getDefaultSendRateBurst() {
+        return defaultSendRateBurst;
+    }
+
+    public void setDefaultSendRateBurst(int defaultSendRateBurst) {
+        this.defaultSendRateBurst = defaultSendRateBurst;
+    }
+
+    public long getDefaultThrottleBackoffTime() {
+        return defaultThrottleBackoffTime;
+    }
+
+    public void setDefaultThrottleBackoffTime(long defaultThrottleBackoffTime) {
+        this.defaultThrottleBackoffTime = defaultThrottleBackoffTime;
+    }
+
+    public long getDefaultEnquireLinkInterval() {
+        return defaultEnquireLinkInterval;
+    }
+
+    public void setDefaultEnquireLinkInterval(long defaultEnquireLinkInterval) {
+        this.defaultEnquireLinkInterval = defaultEnquireLinkInterval;
+    }
+
+    public int getDefaultEnquireLinkMaxMissed() {
+        return defaultEnquireLinkMaxMissed;
+    }
+
+    public void setDefaultEnquireLinkMaxMissed(int defaultEnquireLinkMaxMissed) {
+        this.defaultEnquireLinkMaxMissed = defaultEnquireLinkMaxMissed;
+    }
+
+    public int getDefaultInboundHighWatermark() {
+        return defaultInboundHighWatermark;
+    }
+
+    public void setDefaultInboundHighWatermark(int defaultInboundHighWatermark) {
+        this.defaultInboundHighWatermark = defaultInboundHighWatermark;
+    }
+
+    public int getDefaultInboundLowWatermark() {
+        return defaultInboundLowWatermark;
+    }
+
+    public void setDefaultInboundLowWatermark(int defaultInboundLowWatermark) {
+        this.defaultInboundLowWatermark = defaultInboundLowWatermark;
+    }
+
+    public boolean isDefaultInboundWatermarkBytes() {
+        return defaultInboundWatermarkBytes;
+    }
+
+    public void setDefaultInboundWatermarkBytes(boolean defaultInboundWatermarkBytes) {
+        this.defaultInboundWatermarkBytes = defaultInboundWatermarkBytes;
+    }
 }
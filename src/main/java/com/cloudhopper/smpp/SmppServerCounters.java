@@ -40,6 +40,12 @@ public interface SmppServerCounters {
     public int getChannelConnects();
     
     public int getChannelDisconnects();
+
+    /**
+     * Gets the number of connections closed as soon as they were accepted
+     * since the server already had its max number of connections.
+     */
+    public int getChannelRejects();
     
     public int getBindTimeouts();
     
@@ -180,6 +180,10 @@ public interface SmppSession {
      * yet.  Accessing this property is useful if unacknowledged requests need
      * to be cleared out (most likely for a retry at a later time).
      * @return The request "window"
+     * @throws IllegalStateException Thrown if the session was configured with
+     *      a send window factory other than the default one, since its send
+     *      window isn't a ch-commons-util Window.  Use AsyncSmppSession.getSmppSendWindow().
+     * @see SmppSessionConfiguration#setSendWindowFactory(com.cloudhopper.smpp.SmppSendWindowFactory)
      */
     public Window<Integer,PduRequest,PduResponse> getSendWindow();
     
@@ -24,6 +24,7 @@ import com.cloudhopper.smpp.ssl.SslConfiguration;
 import com.cloudhopper.smpp.type.SmppConnectionConfiguration;
 import com.cloudhopper.smpp.type.LoggingOptions;
 import com.cloudhopper.smpp.type.Address;
+import java.util.concurrent.Executor;
 
 /**
  * Configuration to bind an SmppSession as an ESME to an SMSC.
@@ -52,8 +53,44 @@ public class SmppSessionConfiguration extends SmppConnectionConfiguration {
     // if > 0, then activated
     private long requestExpiryTimeout;
     private long windowMonitorInterval;
+    // if true, requests expire on the shared wheel timer instead of a window monitor
+    private boolean requestExpiryTimerEnabled;
     private long writeTimeout;
     private boolean countersEnabled;
+    // if true, writes are not waited on (failures reported via the future)
+    private boolean nonBlockingWritesEnabled;
+    // if > 0, then PDUs are encoded into slices of direct buffers of this size
+    private int directBufferArenaSize;
+    // if > 1, then PDUs written in a burst are coalesced into a single write
+    private int writeCoalescingMaxPdus;
+    private int writeCoalescingMaxBytes;
+    // if not null, then handler callbacks are run on this executor
+    private Executor handlerExecutor;
+    private boolean handlerExecutorOrdered;
+    // if true, short_message and TLV values are slices of the inbound buffer
+    private boolean zeroCopyDecodeEnabled;
+    // if not null, then the send window is created by this factory
+    private SmppSendWindowFactory sendWindowFactory;
+    // if true, the window size shrinks and grows based on responses (AIMD)
+    private boolean adaptiveWindowEnabled;
+    private int adaptiveWindowMinSize;
+    private long adaptiveWindowLatencyThreshold;
+    // if > 0, then submit_sm, deliver_sm and data_sm are paced to this rate
+    private int sendRateLimit;
+    private int sendRateBurst;
+    // if > 0, then sending pauses for this long after a throttled response
+    private long throttleBackoffTime;
+    // if > 0, then an enquire_link is sent after this long without receiving anything
+    private long enquireLinkInterval;
+    private int enquireLinkMaxMissed;
+    // if > 0, then reading pauses while this many received requests are pending in the handler executor
+    private int inboundHighWatermark;
+    private int inboundLowWatermark;
+    private boolean inboundWatermarkBytes;
+    // only used by a SupervisedSmppSession
+    private long reconnectDelay;
+    private long reconnectMaxDelay;
+    private int reconnectQueueSize;
 
     public SmppSessionConfiguration() {
         this(SmppBindType.TRANSCEIVER, null, null, null);
@@ -74,9 +111,32 @@ public class SmppSessionConfiguration extends SmppConnectionConfiguration {
         this.loggingOptions = new LoggingOptions();
         this.windowWaitTimeout = SmppConstants.DEFAULT_WINDOW_WAIT_TIMEOUT;
         this.requestExpiryTimeout = SmppConstants.DEFAULT_REQUEST_EXPIRY_TIMEOUT;
+        this.requestExpiryTimerEnabled = SmppConstants.DEFAULT_REQUEST_EXPIRY_TIMER_ENABLED;
         this.windowMonitorInterval = SmppConstants.DEFAULT_WINDOW_MONITOR_INTERVAL;
         this.writeTimeout = SmppConstants.DEFAULT_WRITE_TIMEOUT;
         this.countersEnabled = false;
+        this.nonBlockingWritesEnabled = SmppConstants.DEFAULT_NON_BLOCKING_WRITES_ENABLED;
+        this.directBufferArenaSize = SmppConstants.DEFAULT_DIRECT_BUFFER_ARENA_SIZE;
+        this.writeCoalescingMaxPdus = SmppConstants.DEFAULT_WRITE_COALESCING_MAX_PDUS;
+        this.writeCoalescingMaxBytes = SmppConstants.DEFAULT_WRITE_COALESCING_MAX_BYTES;
+        this.handlerExecutor = null;
+        this.handlerExecutorOrdered = SmppConstants.DEFAULT_HANDLER_EXECUTOR_ORDERED;
+        this.zeroCopyDecodeEnabled = SmppConstants.DEFAULT_ZERO_COPY_DECODE_ENABLED;
+        this.sendWindowFactory = null;
+        this.adaptiveWindowEnabled = SmppConstants.DEFAULT_ADAPTIVE_WINDOW_ENABLED;
+        this.adaptiveWindowMinSize = SmppConstants.DEFAULT_ADAPTIVE_WINDOW_MIN_SIZE;
+        this.adaptiveWindowLatencyThreshold = SmppConstants.DEFAULT_ADAPTIVE_WINDOW_LATENCY_THRESHOLD;
+        this.sendRateLimit = SmppConstants.DEFAULT_SEND_RATE_LIMIT;
+        this.sendRateBurst = SmppConstants.DEFAULT_SEND_RATE_BURST;
+        this.throttleBackoffTime = SmppConstants.DEFAULT_THROTTLE_BACKOFF_TIME;
+        this.enquireLinkInterval = SmppConstants.DEFAULT_ENQUIRE_LINK_INTERVAL;
+        this.enquireLinkMaxMissed = SmppConstants.DEFAULT_ENQUIRE_LINK_MAX_MISSED;
+        this.inboundHighWatermark = SmppConstants.DEFAULT_INBOUND_HIGH_WATERMARK;
+        this.inboundLowWatermark = SmppConstants.DEFAULT_INBOUND_LOW_WATERMARK;
+        this.inboundWatermarkBytes = SmppConstants.DEFAULT_INBOUND_WATERMARK_BYTES;
+        this.reconnectDelay = SmppConstants.DEFAULT_RECONNECT_DELAY;
+        this.reconnectMaxDelay = SmppConstants.DEFAULT_RECONNECT_MAX_DELAY;
+        this.reconnectQueueSize = SmppConstants.DEFAULT_RECONNECT_QUEUE_SIZE;
     }
 
     public void setName(String value) {
@@ -222,6 +282,24 @@ public class SmppSessionConfiguration extends SmppConnectionConfiguration {
         this.windowMonitorInterval = windowMonitorInterval;
     }
 
+    public boolean isRequestExpiryTimerEnabled() {
+        return requestExpiryTimerEnabled;
+    }
+
+    /**
+     * Sets whether requests expire on the hashed wheel timer shared by all
+     * sessions of a DefaultSmppClient or DefaultSmppServer rather than by
+     * periodically monitoring the window.  Each request gets a timeout of
+     * requestExpiryTimeout that is cancelled once its response is received,
+     * so the cost is proportional to the requests that actually expire and
+     * they expire on time (not up to a window monitor interval late).  The
+     * window monitor interval is ignored if enabled.  Defaults to false.
+     * @param requestExpiryTimerEnabled True to expire requests on the timer
+     */
+    public void setRequestExpiryTimerEnabled(boolean requestExpiryTimerEnabled) {
+        this.requestExpiryTimerEnabled = requestExpiryTimerEnabled;
+    }
+
     public long getWriteTimeout() {
         return writeTimeout;
     }
@@ -238,4 +316,361 @@ public class SmppSessionConfiguration extends SmppConnectionConfiguration {
         this.countersEnabled = countersEnabled;
     }
 
+    public boolean isNonBlockingWritesEnabled() {
+        return nonBlockingWritesEnabled;
+    }
+
+    /**
+     * Sets if PDUs are written to the channel without waiting for the write
+     * to complete.  If true, sendRequestPdu() and sendResponsePdu() return
+     * as soon as the PDU is queued on the channel.  A failed write of a request
+     * will fail its WindowFuture (and notify the session handler if the caller
+     * is not waiting on it) rather than throw an SmppChannelException.
+     * Defaults to false.
+     * @param nonBlockingWritesEnabled True if enabled, otherwise false
+     */
+    public void setNonBlockingWritesEnabled(boolean nonBlockingWritesEnabled) {
+        this.nonBlockingWritesEnabled = nonBlockingWritesEnabled;
+    }
+
+    public int getDirectBufferArenaSize() {
+        return directBufferArenaSize;
+    }
+
+    /**
+     * Sets the size of the direct buffer "arena" each session encodes its PDUs
+     * into.  If > 0, every PDU is encoded into a slice of a preallocated direct
+     * buffer of this size (a new one is allocated once it's used up) rather
+     * than a new heap buffer.  This cuts per-PDU garbage and the copy from a
+     * heap buffer into a direct buffer on each socket write.  Defaults to
+     * disabled (-1).
+     * @param directBufferArenaSize The size (in bytes) of each direct buffer
+     *      arena. -1 disables.
+     */
+    public void setDirectBufferArenaSize(int directBufferArenaSize) {
+        this.directBufferArenaSize = directBufferArenaSize;
+    }
+
+    public boolean isWriteCoalescingEnabled() {
+        return (this.writeCoalescingMaxPdus > 1);
+    }
+
+    public int getWriteCoalescingMaxPdus() {
+        return writeCoalescingMaxPdus;
+    }
+
+    /**
+     * Sets the max number of PDUs that will be coalesced into a single write
+     * on the channel.  If > 1, PDUs written in a burst (before the channel's
+     * I/O thread gets a chance to flush them) are written together as one
+     * composite buffer.  Only supported on NIO channels.  Defaults to
+     * disabled (-1).
+     * @param writeCoalescingMaxPdus The max number of PDUs in a single write.
+     *      -1 disables.
+     */
+    public void setWriteCoalescingMaxPdus(int writeCoalescingMaxPdus) {
+        this.writeCoalescingMaxPdus = writeCoalescingMaxPdus;
+    }
+
+    public int getWriteCoalescingMaxBytes() {
+        return writeCoalescingMaxBytes;
+    }
+
+    /**
+     * Sets the max number of bytes that will be coalesced into a single write
+     * on the channel.  A batch is written immediately once it reaches this
+     * size.  Defaults to 65536.
+     * @param writeCoalescingMaxBytes The max number of bytes in a single write
+     */
+    public void setWriteCoalescingMaxBytes(int writeCoalescingMaxBytes) {
+        this.writeCoalescingMaxBytes = writeCoalescingMaxBytes;
+    }
+
+    public Executor getHandlerExecutor() {
+        return handlerExecutor;
+    }
+
+    /**
+     * Sets the executor the session handler is called under when a PDU is
+     * received.  Decoding a PDU and matching a response to its request in the
+     * window still happens on the Netty I/O thread, but firePduRequestReceived
+     * (and sending the response it returns), fireExpectedPduResponseReceived,
+     * and fireUnexpectedPduResponseReceived run on this executor.  A slow
+     * handler then no longer stalls every other channel sharing the same I/O
+     * thread.  The executor can be shared by many sessions.  Defaults to null
+     * (handler is called on the I/O thread).
+     * @param handlerExecutor The executor to call the session handler under
+     *      or null to call it directly on the I/O thread.
+     */
+    public void setHandlerExecutor(Executor handlerExecutor) {
+        this.handlerExecutor = handlerExecutor;
+    }
+
+    public boolean isHandlerExecutorOrdered() {
+        return handlerExecutorOrdered;
+    }
+
+    /**
+     * Sets if PDUs received by this session are passed to the session handler
+     * one at a time in the order they were received (ordered) or as soon as
+     * a thread of the handler executor is free (unordered).  Unordered gives
+     * more throughput for a single session, but the handler must be thread
+     * safe and can't rely on the order of PDUs.  Only applies if a handler
+     * executor is set.  Defaults to true.
+     * @param handlerExecutorOrdered True if ordered, otherwise false
+     */
+    public void setHandlerExecutorOrdered(boolean handlerExecutorOrdered) {
+        this.handlerExecutorOrdered = handlerExecutorOrdered;
+    }
+
+    public boolean isZeroCopyDecodeEnabled() {
+        return zeroCopyDecodeEnabled;
+    }
+
+    /**
+     * Sets if the short_message (of submit_sm, deliver_sm, etc.) and the
+     * values of TLVs in received PDUs are kept as slices of the buffer they
+     * were read from rather than copied into new byte arrays.  Useful for
+     * proxies and routers that forward a PDU's payload without looking at it
+     * (see BaseSm.getShortMessageBuffer()).  Calling getShortMessage() or
+     * Tlv.getValue() still works, but copies the bytes on first access.  A
+     * PDU retains the inbound buffer until its copyRetainedBuffers() is
+     * called.  Only applies to client sessions -- for server sessions see
+     * SmppServerConfiguration.  Defaults to false.
+     * @param zeroCopyDecodeEnabled True if enabled, otherwise false
+     */
+    public void setZeroCopyDecodeEnabled(boolean zeroCopyDecodeEnabled) {
+        this.zeroCopyDecodeEnabled = zeroCopyDecodeEnabled;
+    }
+
+    public SmppSendWindowFactory getSendWindowFactory() {
+        return sendWindowFactory;
+    }
+
+    /**
+     * Sets the factory the send window of the session is created with.  Use
+     * IntKeyedSmppSendWindow.FACTORY for a window keyed directly by the int
+     * sequence number with striped locking, which scales better with large
+     * windows and many threads sending on the same session.  Defaults to null
+     * (a ch-commons-util Window, also returned by SmppSession.getSendWindow()).
+     * @param sendWindowFactory The factory or null for the default window
+     */
+    public void setSendWindowFactory(SmppSendWindowFactory sendWindowFactory) {
+        this.sendWindowFactory = sendWindowFactory;
+    }
+
+    public boolean isAdaptiveWindowEnabled() {
+        return adaptiveWindowEnabled;
+    }
+
+    /**
+     * Sets if the "effective" window size adapts to the remote endpoint.  The
+     * window starts at the configured window size, which stays the max.  It
+     * is halved when a response has a throttling status (ESME_RTHROTTLED or
+     * ESME_RMSGQFUL), takes longer than the adaptive window latency threshold,
+     * or a request expires.  It then grows back by about one slot per window's
+     * worth of responses.  Sending a request waits up to the window wait
+     * timeout for the number of pending requests to drop under the effective
+     * size.  The effective size is available via JMX.  Defaults to false.
+     * @param adaptiveWindowEnabled True if enabled, otherwise false
+     */
+    public void setAdaptiveWindowEnabled(boolean adaptiveWindowEnabled) {
+        this.adaptiveWindowEnabled = adaptiveWindowEnabled;
+    }
+
+    public int getAdaptiveWindowMinSize() {
+        return adaptiveWindowMinSize;
+    }
+
+    /**
+     * Sets the min size the adaptive window shrinks to.  Defaults to 1.
+     * @param adaptiveWindowMinSize The min effective window size
+     */
+    public void setAdaptiveWindowMinSize(int adaptiveWindowMinSize) {
+        this.adaptiveWindowMinSize = adaptiveWindowMinSize;
+    }
+
+    public long getAdaptiveWindowLatencyThreshold() {
+        return adaptiveWindowLatencyThreshold;
+    }
+
+    /**
+     * Sets the response latency (from when a request was accepted into the
+     * window until its response was received) above which the adaptive
+     * window shrinks.  Defaults to 5000 ms.
+     * @param adaptiveWindowLatencyThreshold The threshold in milliseconds or
+     *      -1 to only shrink on throttling statuses and expired requests
+     */
+    public void setAdaptiveWindowLatencyThreshold(long adaptiveWindowLatencyThreshold) {
+        this.adaptiveWindowLatencyThreshold = adaptiveWindowLatencyThreshold;
+    }
+
+    public int getSendRateLimit() {
+        return sendRateLimit;
+    }
+
+    /**
+     * Sets the max number of submit_sm, deliver_sm and data_sm requests per
+     * second the session will send.  Requests are paced with a token bucket:
+     * once a request has its slot in the send window, sendRequestPdu reserves
+     * the next permit and, if it isn't due yet, schedules a non-blocking write
+     * of the request for when it is (on the monitor executor or wheel timer)
+     * and returns its future right away.  A session with neither fails such a
+     * request with an SmppChannelException rather than parking the calling
+     * thread.  If the permit isn't due within the
+     * timeout of the request, the request is removed from the window without
+     * spending a permit and an SmppTimeoutException is thrown.  Other requests
+     * (enquire_link, unbind, etc.) are never paced.  Defaults to -1 (disabled).
+     * @param sendRateLimit The max requests per second or -1 to disable
+     */
+    public void setSendRateLimit(int sendRateLimit) {
+        this.sendRateLimit = sendRateLimit;
+    }
+
+    public int getSendRateBurst() {
+        return sendRateBurst;
+    }
+
+    /**
+     * Sets the number of requests that can be sent back-to-back (over the
+     * send rate limit) after the session has been idle.  Defaults to 1.
+     * @param sendRateBurst The burst credit
+     */
+    public void setSendRateBurst(int sendRateBurst) {
+        this.sendRateBurst = sendRateBurst;
+    }
+
+    public long getThrottleBackoffTime() {
+        return throttleBackoffTime;
+    }
+
+    /**
+     * Sets the time submit_sm, deliver_sm and data_sm requests are held back
+     * after a response with a status of ESME_RTHROTTLED is received.  Works
+     * with or without a send rate limit.  Defaults to -1 (disabled).
+     * @param throttleBackoffTime The backoff time in milliseconds or -1 to
+     *      disable
+     */
+    public void setThrottleBackoffTime(long throttleBackoffTime) {
+        this.throttleBackoffTime = throttleBackoffTime;
+    }
+
+    public long getEnquireLinkInterval() {
+        return enquireLinkInterval;
+    }
+
+    /**
+     * Sets the interval of the enquire_link keepalive.  Once bound, an
+     * enquire_link is sent asynchronously whenever nothing was received from
+     * the remote endpoint for this long (so no enquire_link is sent while
+     * other traffic flows).  The keepalive runs on a timer shared by all
+     * sessions of a DefaultSmppClient or DefaultSmppServer.  Defaults to -1
+     * (disabled).
+     * @param enquireLinkInterval The interval in milliseconds or -1 to disable
+     */
+    public void setEnquireLinkInterval(long enquireLinkInterval) {
+        this.enquireLinkInterval = enquireLinkInterval;
+    }
+
+    public int getEnquireLinkMaxMissed() {
+        return enquireLinkMaxMissed;
+    }
+
+    /**
+     * Sets the number of enquire_link intervals in a row nothing may be
+     * received (including a response to the enquire_link) before the session
+     * is closed.  The session handler is then told the channel unexpectedly
+     * closed.  Defaults to 3.
+     * @param enquireLinkMaxMissed The max number of missed enquire_links
+     */
+    public void setEnquireLinkMaxMissed(int enquireLinkMaxMissed) {
+        this.enquireLinkMaxMissed = enquireLinkMaxMissed;
+    }
+
+    public int getInboundHighWatermark() {
+        return inboundHighWatermark;
+    }
+
+    /**
+     * Sets the max amount of received requests queued on the handler
+     * executor (but not yet processed by the session handler).  Once reached,
+     * reading from the channel is paused until the amount drops to the low
+     * watermark, so memory stays bounded no matter how fast the remote
+     * endpoint sends.  Only applies with a handler executor (without one,
+     * requests are processed on the I/O thread and reading waits anyway).
+     * Should not be combined with a PduRequestPublisher, which suspends
+     * reading on its own.  Defaults to -1 (disabled).
+     * @param inboundHighWatermark The high watermark in PDUs (or bytes) or -1
+     *      to disable
+     */
+    public void setInboundHighWatermark(int inboundHighWatermark) {
+        this.inboundHighWatermark = inboundHighWatermark;
+    }
+
+    public int getInboundLowWatermark() {
+        return inboundLowWatermark;
+    }
+
+    /**
+     * Sets the amount of received requests pending processing at which reading
+     * from the channel resumes after reaching the high watermark.  Defaults to
+     * -1 (half the high watermark).
+     * @param inboundLowWatermark The low watermark in PDUs (or bytes)
+     */
+    public void setInboundLowWatermark(int inboundLowWatermark) {
+        this.inboundLowWatermark = inboundLowWatermark;
+    }
+
+    public boolean isInboundWatermarkBytes() {
+        return inboundWatermarkBytes;
+    }
+
+    /**
+     * Sets whether the inbound watermarks are a number of bytes (the command
+     * length of the pending requests) rather than a number of PDUs.  Defaults
+     * to false.
+     * @param inboundWatermarkBytes True to count bytes
+     */
+    public void setInboundWatermarkBytes(boolean inboundWatermarkBytes) {
+        this.inboundWatermarkBytes = inboundWatermarkBytes;
+    }
+
+    public long getReconnectDelay() {
+        return reconnectDelay;
+    }
+
+    /**
+     * Sets the delay before a SupervisedSmppSession retries a failed bind.
+     * The delay doubles with every further failure (up to the reconnect max
+     * delay) and is randomized by up to half.
+     * @param reconnectDelay The initial retry delay in milliseconds
+     */
+    public void setReconnectDelay(long reconnectDelay) {
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    public long getReconnectMaxDelay() {
+        return reconnectMaxDelay;
+    }
+
+    /**
+     * Sets the max delay between bind attempts of a SupervisedSmppSession.
+     * @param reconnectMaxDelay The max retry delay in milliseconds
+     */
+    public void setReconnectMaxDelay(long reconnectMaxDelay) {
+        this.reconnectMaxDelay = reconnectMaxDelay;
+    }
+
+    public int getReconnectQueueSize() {
+        return reconnectQueueSize;
+    }
+
+    /**
+     * Sets the max number of asynchronous requests a SupervisedSmppSession
+     * holds on to while it's rebinding.  Further requests are rejected.
+     * @param reconnectQueueSize The max number of queued requests
+     */
+    public void setReconnectQueueSize(int reconnectQueueSize) {
+        this.reconnectQueueSize = reconnectQueueSize;
+    }
 }
@@ -46,5 +46,17 @@ public interface SmppSessionCounters {
     public ConcurrentCommandCounter getTxEnquireLink();
 
     public ConcurrentCommandCounter getTxSubmitSM();
+
+    /**
+     * Gets the number of times reading was paused because the inbound high
+     * watermark was reached.
+     */
+    public int getReadPauses();
+
+    /**
+     * Gets the total time (in ms) reading was paused because the inbound high
+     * watermark was reached.
+     */
+    public long getReadPauseTime();
     
 }
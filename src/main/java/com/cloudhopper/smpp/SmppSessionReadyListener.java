@@ -0,0 +1,42 @@
+package com.cloudhopper.smpp;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Listens for a session becoming ready (or not ready) to accept another
+ * request without blocking.  A session is ready while it is bound, its send
+ * window has a free slot and the underlying channel is writable (the bytes
+ * queued for writing are below the channel's write buffer high water mark).
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface SmppSessionReadyListener {
+
+    /**
+     * Called when the session changes from ready to not ready (or back).
+     * Runs on whatever thread caused the change, usually an I/O thread or a
+     * thread sending a request, so it must not block.
+     * @param session The session whose readiness changed
+     * @param ready True if the session is now ready
+     */
+    public void fireSessionReadyChanged(SmppSession session, boolean ready);
+
+}
@@ -25,6 +25,7 @@ import com.cloudhopper.smpp.impl.DefaultSmppServer;
 import com.cloudhopper.smpp.impl.UnboundSmppSession;
 import com.cloudhopper.smpp.ssl.SslConfiguration;
 import com.cloudhopper.smpp.ssl.SslContextFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.net.ssl.SSLEngine;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -48,10 +49,26 @@ public class SmppServerConnector extends SimpleChannelUpstreamHandler {
     // reference to every channel connected via this server channel
     private ChannelGroup channels;
     private DefaultSmppServer server;
+    // connection slots taken by accepted channels (reserved before a channel
+    // is added, so concurrent accepts can't exceed the max connection size)
+    private final AtomicInteger connectionSlots;
 
     public SmppServerConnector(ChannelGroup channels, DefaultSmppServer server) {
         this.channels = channels;
         this.server = server;
+        this.connectionSlots = new AtomicInteger(0);
+    }
+
+    private boolean reserveConnectionSlot(int maxConnectionSize) {
+        while (true) {
+            int slots = this.connectionSlots.get();
+            if (slots >= maxConnectionSize) {
+                return false;
+            }
+            if (this.connectionSlots.compareAndSet(slots, slots + 1)) {
+                return true;
+            }
+        }
     }
 
     @Override
@@ -59,13 +76,25 @@ public class SmppServerConnector extends SimpleChannelUpstreamHandler {
         // the channel we are going to handle
         Channel channel = e.getChannel();
 
-        // always add it to our channel group
-        channels.add(channel);
-        this.server.getCounters().incrementChannelConnectsAndGet();
-
         // create a default "unbound" thread name for the thread processing the channel
         // this will create a name of "RemoteIPAddress.RemotePort"
         String channelName = ChannelUtil.createChannelName(channel);
+
+        // enforce max connections -- a rejected channel is never added to our
+        // channel group nor counted as a connect (or later a disconnect)
+        int maxConnectionSize = server.getConfiguration().getMaxConnectionSize();
+        if (!reserveConnectionSlot(maxConnectionSize)) {
+            logger.warn("Rejecting channel from [{}], max connection size [{}] reached", channelName, maxConnectionSize);
+            this.server.getCounters().incrementChannelRejectsAndGet();
+            channel.close();
+            return;
+        }
+        // marks the channel as accepted so its slot is released on disconnect
+        ctx.setAttachment(Boolean.TRUE);
+
+        // add it to our channel group
+        channels.add(channel);
+        this.server.getCounters().incrementChannelConnectsAndGet();
         String threadName = server.getConfiguration().getName() + ".UnboundSession." + channelName;
 
         // rename the current thread for logging, then rename it back
@@ -97,8 +126,13 @@ public class SmppServerConnector extends SimpleChannelUpstreamHandler {
 
     @Override
     public void channelDisconnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-        // called every time a channel disconnects
+        // called every time a channel disconnects (including rejected ones)
+        if (ctx.getAttachment() == null) {
+            return;
+        }
+        ctx.setAttachment(null);
         channels.remove(e.getChannel());
+        this.connectionSlots.decrementAndGet();
         this.server.getCounters().incrementChannelDisconnectsAndGet();
     }
 
@@ -20,6 +20,7 @@ package com.cloudhopper.smpp.channel;
  * #L%
  */
 
+import com.cloudhopper.smpp.impl.SmppSessionChannelInterestListener;
 import com.cloudhopper.smpp.impl.SmppSessionChannelListener;
 import com.cloudhopper.smpp.pdu.Pdu;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -79,6 +80,16 @@ public class SmppSessionWrapper extends SimpleChannelHandler {
         //logger.info(e.toString());
     }
 
+    /**
+     * Invoked when a Channel's interestOps was changed.
+     */
+    @Override
+    public void channelInterestChanged(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        if (this.listener instanceof SmppSessionChannelInterestListener) {
+            ((SmppSessionChannelInterestListener)this.listener).fireChannelInterestChanged();
+        }
+    }
+
     /**
      * Invoked when a Channel was closed and all its related resources were released.
      */
@@ -0,0 +1,317 @@
+package com.cloudhopper.smpp.channel;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipelineCoverage;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * Channel handler responsible for coalescing PDUs written to a channel in a
+ * short burst into a single write.  The first write of a batch schedules a
+ * flush on the channel's I/O thread (deferred until after the event being
+ * processed, even when written from the I/O thread); every write queued
+ * before that flush runs is sent as one composite buffer (one syscall and usually one TCP
+ * segment).  A batch is also flushed immediately once it reaches the max
+ * number of PDUs or bytes.  The future of each individual write is completed
+ * when the batch it was part of is written.
+ * <br>
+ * NOTE: This handler relies on the I/O thread to run the scheduled flush and
+ * must only be used with NIO channels.
+ *
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@ChannelPipelineCoverage("one")
+public class SmppSessionWriteCoalescer extends SimpleChannelDownstreamHandler {
+
+    private final int maxBatchSize;
+    private final int maxBatchBytes;
+    // writes (and close/disconnect requests) waiting to be flushed (guarded by "this")
+    private final List<ChannelEvent> pending;
+    private int pendingBufferCount;
+    private int pendingBytes;
+    private boolean flushScheduled;
+    // true while a thread is passing pending events downstream
+    private boolean flushing;
+    // counters
+    private final AtomicLong batchCount;
+    private final AtomicLong pduCount;
+    private final AtomicLong maxObservedBatchSize;
+
+    /**
+     * Creates a new write coalescer.
+     * @param maxBatchSize The max number of PDUs written in a single batch
+     * @param maxBatchBytes The max number of bytes written in a single batch
+     */
+    public SmppSessionWriteCoalescer(int maxBatchSize, int maxBatchBytes) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.pending = new ArrayList<ChannelEvent>(maxBatchSize);
+        this.pendingBufferCount = 0;
+        this.pendingBytes = 0;
+        this.flushScheduled = false;
+        this.batchCount = new AtomicLong(0);
+        this.pduCount = new AtomicLong(0);
+        this.maxObservedBatchSize = new AtomicLong(0);
+    }
+
+    public int getMaxBatchSize() {
+        return this.maxBatchSize;
+    }
+
+    public int getMaxBatchBytes() {
+        return this.maxBatchBytes;
+    }
+
+    /**
+     * Gets the number of batched writes passed downstream.
+     */
+    public long getBatchCount() {
+        return this.batchCount.get();
+    }
+
+    /**
+     * Gets the number of PDUs (individual writes) passed downstream.
+     */
+    public long getPduCount() {
+        return this.pduCount.get();
+    }
+
+    /**
+     * Gets the largest number of PDUs written in a single batch.
+     */
+    public long getMaxObservedBatchSize() {
+        return this.maxObservedBatchSize.get();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = this.batchCount.get();
+        return (batches == 0 ? 0 : ((double)this.pduCount.get() / (double)batches));
+    }
+
+    public void resetCounters() {
+        this.batchCount.set(0);
+        this.pduCount.set(0);
+        this.maxObservedBatchSize.set(0);
+    }
+
+    @Override
+    public void writeRequested(final ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        // only buffers can be coalesced, anything else flushes what's pending
+        if (!(e.getMessage() instanceof ChannelBuffer)) {
+            enqueueAndFlush(ctx, e);
+            return;
+        }
+
+        boolean flushNow = false;
+        boolean scheduleFlush = false;
+        synchronized (this) {
+            pending.add(e);
+            pendingBufferCount++;
+            pendingBytes += ((ChannelBuffer)e.getMessage()).readableBytes();
+            if (pendingBufferCount >= maxBatchSize || pendingBytes >= maxBatchBytes) {
+                flushNow = true;
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush = true;
+            }
+        }
+
+        if (flushNow) {
+            flush(ctx);
+        } else if (scheduleFlush) {
+            scheduleFlush(ctx);
+        }
+    }
+
+    @Override
+    public void closeRequested(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        // queued behind any pending write so it can't overtake it
+        enqueueAndFlush(ctx, e);
+    }
+
+    @Override
+    public void disconnectRequested(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        enqueueAndFlush(ctx, e);
+    }
+
+    private void enqueueAndFlush(ChannelHandlerContext ctx, ChannelEvent e) {
+        synchronized (this) {
+            pending.add(e);
+        }
+        flush(ctx);
+    }
+
+    /**
+     * Schedules a flush on the channel's I/O thread.  Always runs the flush
+     * later, even when called from the I/O thread, so the writes made while
+     * it handles the current event (e.g. responses returned by the session
+     * handler) are batched together.
+     */
+    private void scheduleFlush(final ChannelHandlerContext ctx) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (SmppSessionWriteCoalescer.this) {
+                    flushScheduled = false;
+                }
+                flush(ctx);
+            }
+        };
+        if (ctx.getChannel() instanceof NioSocketChannel) {
+            ((NioSocketChannel)ctx.getChannel()).getWorker().executeInIoThread(task, true);
+        } else {
+            ctx.getPipeline().execute(task);
+        }
+    }
+
+    /**
+     * Writes every pending PDU downstream, consecutive PDUs coalesced into a
+     * single write.  Events are passed downstream outside of the lock; only
+     * one thread at a time does so (others just leave their events for it)
+     * which keeps them in order.
+     */
+    public void flush(ChannelHandlerContext ctx) {
+        synchronized (this) {
+            if (flushing) {
+                // the thread already flushing will pick up our events
+                return;
+            }
+            flushing = true;
+        }
+        try {
+            while (true) {
+                List<ChannelEvent> events = null;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        flushing = false;
+                        return;
+                    }
+                    events = new ArrayList<ChannelEvent>(pending);
+                    clearPending();
+                }
+                sendDownstream(ctx, events);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                flushing = false;
+            }
+            throw e;
+        }
+    }
+
+    private void sendDownstream(ChannelHandlerContext ctx, List<ChannelEvent> events) {
+        List<MessageEvent> batch = new ArrayList<MessageEvent>();
+        int batchBytes = 0;
+        for (ChannelEvent e : events) {
+            if (e instanceof MessageEvent && ((MessageEvent)e).getMessage() instanceof ChannelBuffer) {
+                batch.add((MessageEvent)e);
+                batchBytes += ((ChannelBuffer)((MessageEvent)e).getMessage()).readableBytes();
+                if (batch.size() >= maxBatchSize || batchBytes >= maxBatchBytes) {
+                    writeBatch(ctx, batch);
+                    batch.clear();
+                    batchBytes = 0;
+                }
+            } else {
+                writeBatch(ctx, batch);
+                batch.clear();
+                batchBytes = 0;
+                ctx.sendDownstream(e);
+            }
+        }
+        writeBatch(ctx, batch);
+    }
+
+    private void writeBatch(ChannelHandlerContext ctx, List<MessageEvent> batch) {
+        int size = batch.size();
+        if (size == 0) {
+            return;
+        }
+
+        this.batchCount.incrementAndGet();
+        this.pduCount.addAndGet(size);
+        long max = this.maxObservedBatchSize.get();
+        while (size > max && !this.maxObservedBatchSize.compareAndSet(max, size)) {
+            max = this.maxObservedBatchSize.get();
+        }
+
+        if (size == 1) {
+            // nothing to coalesce
+            ctx.sendDownstream(batch.get(0));
+            return;
+        }
+
+        ChannelBuffer[] buffers = new ChannelBuffer[size];
+        final ChannelFuture[] futures = new ChannelFuture[size];
+        for (int i = 0; i < size; i++) {
+            MessageEvent e = batch.get(i);
+            buffers[i] = (ChannelBuffer)e.getMessage();
+            futures[i] = e.getFuture();
+        }
+
+        ChannelFuture batchFuture = Channels.future(ctx.getChannel());
+        batchFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                for (ChannelFuture f : futures) {
+                    if (future.isSuccess()) {
+                        f.setSuccess();
+                    } else {
+                        f.setFailure(future.getCause());
+                    }
+                }
+            }
+        });
+
+        Channels.write(ctx, batchFuture, ChannelBuffers.wrappedBuffer(buffers));
+    }
+
+    private void clearPending() {
+        pending.clear();
+        pendingBufferCount = 0;
+        pendingBytes = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder to = new StringBuilder();
+        to.append("[batches=");
+        to.append(getBatchCount());
+        to.append(" pdus=");
+        to.append(getPduCount());
+        to.append(" maxBatchSize=");
+        to.append(getMaxObservedBatchSize());
+        to.append("]");
+        return to.toString();
+    }
+}
@@ -0,0 +1,199 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.PduResponseFuture;
+import com.cloudhopper.smpp.PduResponseListener;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.util.SmppSessionUtil;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Default implementation of a PduResponseFuture.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class DefaultPduResponseFuture<R extends PduResponse> implements PduResponseFuture<R> {
+    private static final Logger logger = LoggerFactory.getLogger(DefaultPduResponseFuture.class);
+
+    private final PduRequest<R> request;
+    // set by the first thread to complete, fail or cancel this future
+    private final AtomicBoolean finishing;
+    private final CountDownLatch doneLatch;
+    private volatile boolean done;
+    private volatile PduAsyncResponse asyncResponse;
+    private volatile Throwable cause;
+    private volatile boolean cancelled;
+    // guarded by "this", null once done and the listeners were called
+    private ArrayList<PduResponseListener<R>> listeners;
+
+    public DefaultPduResponseFuture(PduRequest<R> request) {
+        this.request = request;
+        this.finishing = new AtomicBoolean(false);
+        this.doneLatch = new CountDownLatch(1);
+        this.listeners = new ArrayList<PduResponseListener<R>>(1);
+    }
+
+    /**
+     * Completes this future with the response matched to the request.  If
+     * the response isn't of the expected type (e.g. a generic_nack), this
+     * future fails instead.
+     * @param asyncResponse The response
+     * @return True if this call completed the future
+     */
+    public boolean complete(PduAsyncResponse asyncResponse) {
+        try {
+            SmppSessionUtil.assertExpectedResponse(this.request, asyncResponse.getResponse());
+        } catch (Exception e) {
+            return finish(null, e, false);
+        }
+        return finish(asyncResponse, null, false);
+    }
+
+    /**
+     * Fails this future.
+     * @param cause The reason
+     * @return True if this call failed the future
+     */
+    public boolean fail(Throwable cause) {
+        return finish(null, cause, false);
+    }
+
+    private boolean finish(PduAsyncResponse asyncResponse, Throwable cause, boolean cancelled) {
+        if (!this.finishing.compareAndSet(false, true)) {
+            return false;
+        }
+        this.asyncResponse = asyncResponse;
+        this.cause = cause;
+        this.cancelled = cancelled;
+        this.done = true;
+        this.doneLatch.countDown();
+        ArrayList<PduResponseListener<R>> toNotify = null;
+        synchronized (this) {
+            toNotify = this.listeners;
+            this.listeners = null;
+        }
+        for (PduResponseListener<R> listener : toNotify) {
+            notifyListener(listener);
+        }
+        return true;
+    }
+
+    private void notifyListener(PduResponseListener<R> listener) {
+        try {
+            listener.operationComplete(this);
+        } catch (Throwable t) {
+            logger.warn("Listener of response future for [{}] threw an exception: {}", this.request.getName(), t);
+        }
+    }
+
+    @Override
+    public PduResponseFuture<R> addListener(PduResponseListener<R> listener) {
+        synchronized (this) {
+            if (this.listeners != null) {
+                this.listeners.add(listener);
+                return this;
+            }
+        }
+        notifyListener(listener);
+        return this;
+    }
+
+    @Override
+    public PduRequest<R> getRequest() {
+        return this.request;
+    }
+
+    @Override
+    public PduAsyncResponse getAsyncResponse() {
+        return this.asyncResponse;
+    }
+
+    @Override
+    public boolean isSuccess() {
+        return (this.done && this.asyncResponse != null);
+    }
+
+    @Override
+    public Throwable getCause() {
+        return this.cause;
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.done;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Cancels this future.  The request stays in the send window of the
+     * session (a response to it is ignored).
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return finish(null, new CancellationException(), true);
+    }
+
+    @Override
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        return this.doneLatch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public R get() throws InterruptedException, ExecutionException {
+        this.doneLatch.await();
+        return getNow();
+    }
+
+    @Override
+    public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!this.doneLatch.await(timeout, unit)) {
+            throw new TimeoutException("No response to [" + this.request.getName() + "] within [" + unit.toMillis(timeout) + " ms]");
+        }
+        return getNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private R getNow() throws ExecutionException {
+        if (this.cancelled) {
+            throw new CancellationException();
+        }
+        if (this.cause != null) {
+            throw new ExecutionException(this.cause);
+        }
+        return (R)this.asyncResponse.getResponse();
+    }
+
+}
@@ -34,6 +34,7 @@ import com.cloudhopper.smpp.channel.SmppSessionPduDecoder;
 import com.cloudhopper.smpp.channel.SmppSessionLogger;
 import com.cloudhopper.smpp.channel.SmppSessionWrapper;
 import com.cloudhopper.smpp.channel.SmppSessionThreadRenamer;
+import com.cloudhopper.smpp.channel.SmppSessionWriteCoalescer;
 import com.cloudhopper.smpp.pdu.BaseBind;
 import com.cloudhopper.smpp.pdu.BaseBindResp;
 import com.cloudhopper.smpp.pdu.BindReceiver;
@@ -45,6 +46,7 @@ import com.cloudhopper.smpp.type.RecoverablePduException;
 import com.cloudhopper.smpp.type.SmppBindException;
 import com.cloudhopper.smpp.type.SmppChannelConnectException;
 import com.cloudhopper.smpp.type.SmppChannelConnectTimeoutException;
+import com.cloudhopper.smpp.type.SmppConnectionConfiguration;
 import com.cloudhopper.smpp.type.UnrecoverablePduException;
 import java.net.InetSocketAddress;
 import java.util.concurrent.ExecutorService;
@@ -77,8 +79,10 @@ public class DefaultSmppClient implements SmppClient {
     private ClientSocketChannelFactory channelFactory;
     private ClientBootstrap clientBootstrap;
     private ScheduledExecutorService monitorExecutor;
-    // shared instance of a timer for writeTimeout timing
+    // shared instance of a timer for writeTimeout, keepalive and request expiry timing
     private final org.jboss.netty.util.Timer writeTimeoutTimer;
+    // if not null, the threads and timer above are owned by it (not this client)
+    private final SmppRuntime runtime;
 
     /**
      * Creates a new default SmppClient. Window monitoring and automatic
@@ -144,7 +148,27 @@ public class DefaultSmppClient implements SmppClient {
         this.clientBootstrap.getPipeline().addLast(SmppChannelConstants.PIPELINE_CLIENT_CONNECTOR_NAME, this.clientConnector);
         this.monitorExecutor = monitorExecutor;
 	// a shared instance of a timer for session writeTimeout timing
-	this.writeTimeoutTimer = new org.jboss.netty.util.HashedWheelTimer();
+	this.writeTimeoutTimer = SmppRuntime.newTimer();
+        this.runtime = null;
+    }
+
+    /**
+     * Creates a new default SmppClient that shares the I/O threads, timer and
+     * monitor executor of a runtime (with any other client or server created
+     * with it).  Destroying this client only closes its own channels.
+     * @param runtime The shared runtime
+     */
+    public DefaultSmppClient(SmppRuntime runtime) {
+        this.channels = new DefaultChannelGroup();
+        this.executors = runtime.getExecutor();
+        this.channelFactory = new NioClientSocketChannelFactory(runtime.getClientBossPool(), runtime.getWorkerPool());
+        this.clientBootstrap = new ClientBootstrap(channelFactory);
+        // we use the same default pipeline for all new channels - no need for a factory
+        this.clientConnector = new SmppClientConnector(this.channels);
+        this.clientBootstrap.getPipeline().addLast(SmppChannelConstants.PIPELINE_CLIENT_CONNECTOR_NAME, this.clientConnector);
+        this.monitorExecutor = runtime.getMonitorExecutor();
+        this.writeTimeoutTimer = runtime.getTimer();
+        this.runtime = runtime;
     }
     
     public int getConnectionSize() {
@@ -155,6 +179,10 @@ public class DefaultSmppClient implements SmppClient {
     public void destroy() {
         // close all channels still open within this session "bootstrap"
         this.channels.close().awaitUninterruptibly();
+        if (this.runtime != null) {
+            // the threads and timer are shared, the runtime releases them
+            return;
+        }
         // clean up all external resources
         this.clientBootstrap.releaseExternalResources();
 	// stop the writeTimeout timer 
@@ -220,14 +248,15 @@ public class DefaultSmppClient implements SmppClient {
     }
 
     protected DefaultSmppSession doOpen(SmppSessionConfiguration config, SmppSessionHandler sessionHandler) throws SmppTimeoutException, SmppChannelException, InterruptedException {
-        // create and connect a channel to the remote host
-        Channel channel = createConnectedChannel(config.getHost(), config.getPort(), config.getConnectTimeout());
+        // create and connect a channel to the remote host (socket options must
+        // be set before connecting, buffer sizes affect the handshake)
+        Channel channel = createConnectedChannel(config, config.getHost(), config.getPort(), config.getConnectTimeout());
         // tie this new opened channel with a new session
         return createSession(channel, config, sessionHandler);
     }
 
     protected DefaultSmppSession createSession(Channel channel, SmppSessionConfiguration config, SmppSessionHandler sessionHandler) throws SmppTimeoutException, SmppChannelException, InterruptedException {
-        DefaultSmppSession session = new DefaultSmppSession(SmppSession.Type.CLIENT, config, channel, sessionHandler, monitorExecutor);
+        DefaultSmppSession session = new DefaultSmppSession(SmppSession.Type.CLIENT, config, channel, sessionHandler, monitorExecutor, writeTimeoutTimer);
 
 	// add SSL handler 
         if (config.isUseSsl()) {
@@ -260,6 +289,12 @@ public class DefaultSmppClient implements SmppClient {
 	    channel.getPipeline().addLast(SmppChannelConstants.PIPELINE_SESSION_WRITE_TIMEOUT_NAME, writeTimeoutHandler);
 	}
 
+        // add a write coalescer after the writeTimeout (so a batch is timed as one write)
+        if (config.isWriteCoalescingEnabled()) {
+            SmppSessionWriteCoalescer writeCoalescer = new SmppSessionWriteCoalescer(config.getWriteCoalescingMaxPdus(), config.getWriteCoalescingMaxBytes());
+            channel.getPipeline().addLast(SmppChannelConstants.PIPELINE_SESSION_WRITE_COALESCER_NAME, writeCoalescer);
+        }
+
         // add a new instance of a decoder (that takes care of handling frames)
         channel.getPipeline().addLast(SmppChannelConstants.PIPELINE_SESSION_PDU_DECODER_NAME, new SmppSessionPduDecoder(session.getTranscoder()));
 
@@ -269,15 +304,41 @@ public class DefaultSmppClient implements SmppClient {
         return session;
     }
 
+    protected void setSocketOptions(SmppConnectionConfiguration config) {
+        this.clientBootstrap.setOption("tcpNoDelay", config.isTcpNoDelay());
+        this.clientBootstrap.setOption("keepAlive", config.isKeepAlive());
+        // a null value removes the option (system default)
+        this.clientBootstrap.setOption("sendBufferSize", (config.getSendBufferSize() > 0 ? config.getSendBufferSize() : null));
+        this.clientBootstrap.setOption("receiveBufferSize", (config.getReceiveBufferSize() > 0 ? config.getReceiveBufferSize() : null));
+    }
+
     protected Channel createConnectedChannel(String host, int port, long connectTimeoutMillis) throws SmppTimeoutException, SmppChannelException, InterruptedException {
+        return createConnectedChannel(null, host, port, connectTimeoutMillis);
+    }
+
+    /**
+     * Connects a new channel to the remote host with the socket options of
+     * a configuration.  The bootstrap is shared by every session this client
+     * opens and copies its options to the new channel within connect(), so
+     * setting the options and starting the connect are done as one step
+     * (the wait for the connection to complete is not serialized).
+     * @param config The configuration to take the socket options from or
+     *      null to keep the options already set on the bootstrap
+     */
+    protected Channel createConnectedChannel(SmppConnectionConfiguration config, String host, int port, long connectTimeoutMillis) throws SmppTimeoutException, SmppChannelException, InterruptedException {
         // a socket address used to "bind" to the remote system
         InetSocketAddress socketAddr = new InetSocketAddress(host, port);
 
-	// set the timeout
-	this.clientBootstrap.setOption("connectTimeoutMillis", connectTimeoutMillis);
-
-        // attempt to connect to the remote system
-        ChannelFuture connectFuture = this.clientBootstrap.connect(socketAddr);
+        ChannelFuture connectFuture = null;
+        synchronized (this.clientBootstrap) {
+            if (config != null) {
+                setSocketOptions(config);
+            }
+            // set the timeout
+            this.clientBootstrap.setOption("connectTimeoutMillis", connectTimeoutMillis);
+            // attempt to connect to the remote system
+            connectFuture = this.clientBootstrap.connect(socketAddr);
+        }
         
         // wait until the connection is made successfully
 	// boolean timeout = !connectFuture.await(connectTimeoutMillis);
@@ -0,0 +1,177 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.windowing.DuplicateKeyException;
+import com.cloudhopper.commons.util.windowing.OfferTimeoutException;
+import com.cloudhopper.commons.util.windowing.Window;
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.commons.util.windowing.WindowListener;
+import com.cloudhopper.smpp.SmppSendWindow;
+import com.cloudhopper.smpp.SmppSendWindowFactory;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+
+/**
+ * Default send window backed by a ch-commons-util Window.  Used by a session
+ * unless another SmppSendWindowFactory is configured.  If an expiry timer is
+ * set, each request with an expire timeout gets a timeout on that timer
+ * (which is cancelled once its response is received, or the session releases
+ * the request after cancelling or failing it) instead of the Window being
+ * periodically scanned by a monitor.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class DefaultSmppSendWindow implements SmppSendWindow {
+
+    static public final SmppSendWindowFactory FACTORY = new SmppSendWindowFactory() {
+        @Override
+        public SmppSendWindow createSendWindow(SmppSessionConfiguration configuration, ScheduledExecutorService monitorExecutor, Timer expiryTimer, WindowListener<Integer,PduRequest,PduResponse> listener) {
+            // different ways to construct the window if monitoring is enabled
+            if (expiryTimer != null && configuration.isRequestExpiryTimerEnabled()) {
+                return new DefaultSmppSendWindow(new Window<Integer,PduRequest,PduResponse>(configuration.getWindowSize()), expiryTimer, listener);
+            } else if (monitorExecutor != null && configuration.getWindowMonitorInterval() > 0) {
+                return new DefaultSmppSendWindow(new Window<Integer,PduRequest,PduResponse>(configuration.getWindowSize(), monitorExecutor, configuration.getWindowMonitorInterval(), listener, configuration.getName() + ".Monitor"));
+            } else {
+                return new DefaultSmppSendWindow(new Window<Integer,PduRequest,PduResponse>(configuration.getWindowSize()));
+            }
+        }
+    };
+
+    private final Window<Integer,PduRequest,PduResponse> window;
+    private final Timer expiryTimer;
+    private final WindowListener<Integer,PduRequest,PduResponse> listener;
+    // timeouts of pending requests (only if an expiry timer is set)
+    private final ConcurrentHashMap<Integer,Timeout> expiryTimeouts;
+
+    public DefaultSmppSendWindow(Window<Integer,PduRequest,PduResponse> window) {
+        this(window, null, null);
+    }
+
+    /**
+     * Creates a new send window whose requests expire on a timer.
+     * @param window The window (should not be monitored)
+     * @param expiryTimer The timer to expire requests on or null to disable
+     * @param listener The listener notified of expired requests
+     */
+    public DefaultSmppSendWindow(Window<Integer,PduRequest,PduResponse> window, Timer expiryTimer, WindowListener<Integer,PduRequest,PduResponse> listener) {
+        this.window = window;
+        this.expiryTimer = expiryTimer;
+        this.listener = listener;
+        this.expiryTimeouts = (expiryTimer == null ? null : new ConcurrentHashMap<Integer,Timeout>());
+    }
+
+    public Window<Integer,PduRequest,PduResponse> getWindow() {
+        return this.window;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return this.window.getMaxSize();
+    }
+
+    @Override
+    public int getSize() {
+        return this.window.getSize();
+    }
+
+    @Override
+    public WindowFuture<Integer,PduRequest,PduResponse> offer(int sequenceNumber, PduRequest request, long offerTimeoutMillis, long expireTimeoutMillis, boolean callerWaitingHint) throws DuplicateKeyException, OfferTimeoutException, InterruptedException {
+        // Window.offer returns a raw WindowFuture
+        @SuppressWarnings("unchecked")
+        WindowFuture<Integer,PduRequest,PduResponse> future = this.window.offer(sequenceNumber, request, offerTimeoutMillis, expireTimeoutMillis, callerWaitingHint);
+        if (this.expiryTimer != null && expireTimeoutMillis > 0) {
+            Timeout timeout = this.expiryTimer.newTimeout(new ExpiryTask(future), expireTimeoutMillis, TimeUnit.MILLISECONDS);
+            this.expiryTimeouts.put(sequenceNumber, timeout);
+            // a response may have completed it before the timeout was put,
+            // in which case complete() found nothing to cancel
+            if (future.isDone()) {
+                release(future);
+            }
+        }
+        return future;
+    }
+
+    @Override
+    public WindowFuture<Integer,PduRequest,PduResponse> complete(int sequenceNumber, PduResponse response) throws InterruptedException {
+        WindowFuture<Integer,PduRequest,PduResponse> future = this.window.complete(sequenceNumber, response);
+        if (future != null) {
+            release(future);
+        }
+        return future;
+    }
+
+    @Override
+    public void release(WindowFuture<Integer,PduRequest,PduResponse> future) {
+        if (this.expiryTimer == null) {
+            return;
+        }
+        Timeout timeout = this.expiryTimeouts.get(future.getKey());
+        // the sequence number may already be reused by another request
+        if (timeout != null && ((ExpiryTask)timeout.getTask()).future == future && this.expiryTimeouts.remove(future.getKey(), timeout)) {
+            timeout.cancel();
+        }
+    }
+
+    @Override
+    public Map<Integer,WindowFuture<Integer,PduRequest,PduResponse>> createSortedSnapshot() {
+        return this.window.createSortedSnapshot();
+    }
+
+    @Override
+    public void destroy() {
+        if (this.expiryTimer != null) {
+            for (Timeout timeout : this.expiryTimeouts.values()) {
+                timeout.cancel();
+            }
+            this.expiryTimeouts.clear();
+        }
+        this.window.destroy();
+    }
+
+    private class ExpiryTask implements TimerTask {
+        private final WindowFuture<Integer,PduRequest,PduResponse> future;
+
+        public ExpiryTask(WindowFuture<Integer,PduRequest,PduResponse> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            expiryTimeouts.remove(this.future.getKey(), timeout);
+            if (!timeout.isCancelled() && !this.future.isDone()) {
+                this.future.cancel();
+                if (listener != null) {
+                    listener.expired(this.future);
+                }
+            }
+        }
+    }
+
+}
@@ -30,6 +30,7 @@ import com.cloudhopper.smpp.channel.SmppChannelConstants;
 import com.cloudhopper.smpp.channel.SmppServerConnector;
 import com.cloudhopper.smpp.channel.SmppSessionLogger;
 import com.cloudhopper.smpp.channel.SmppSessionThreadRenamer;
+import com.cloudhopper.smpp.channel.SmppSessionWriteCoalescer;
 import com.cloudhopper.smpp.channel.SmppSessionWrapper;
 import com.cloudhopper.smpp.jmx.DefaultSmppServerMXBean;
 import com.cloudhopper.smpp.pdu.BaseBind;
@@ -43,7 +44,6 @@ import com.cloudhopper.smpp.type.SmppProcessingException;
 import com.cloudhopper.smpp.util.DaemonExecutors;
 import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
-import java.util.Timer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -79,10 +79,13 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
     private ChannelFactory channelFactory;
     private ServerBootstrap serverBootstrap;
     private Channel serverChannel; 
-    // shared instance of a timer for session writeTimeout timing
+    // shared instance of a timer for session writeTimeout, keepalive and request expiry timing
+    // (also used to close channels not bound in time)
     private final org.jboss.netty.util.Timer writeTimeoutTimer;
-    // shared instance of a timer background thread to close unbound channels
-    private final Timer bindTimer;
+    // if not null, the threads and timer above are owned by it (not this server)
+    private final SmppRuntime runtime;
+    // legacy timer only created if getBindTimer() is called (bind timeouts use the timer above)
+    private java.util.Timer bindTimer;
    // shared instance of a session id generator (an atomic long)
     private final AtomicLong sessionIdSequence;
     // shared instance for monitor executors
@@ -109,7 +112,7 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
      *      and creating/destroying sessions.
      * @param executor The executor that IO workers will be executed with. An
      *      Executors.newCachedDaemonThreadPool() is recommended. The max threads
-     *      will never grow more than configuration.getMaxConnections() if NIO
+     *      will never grow more than configuration.getIoWorkerCount() if NIO
      *      sockets are used.
      */
     public DefaultSmppServer(final SmppServerConfiguration configuration, SmppServerHandler serverHandler, ExecutorService executor) {
@@ -123,25 +126,54 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
      *      and creating/destroying sessions.
      * @param executor The executor that IO workers will be executed with. An
      *      Executors.newCachedDaemonThreadPool() is recommended. The max threads
-     *      will never grow more than configuration.getMaxConnections() if NIO
+     *      will never grow more than configuration.getIoWorkerCount() if NIO
      *      sockets are used.
      * @param monitorExecutor The scheduled executor that all sessions will share
      *      to monitor themselves and expire requests. If null monitoring will
      *      be disabled.
      */
     public DefaultSmppServer(final SmppServerConfiguration configuration, SmppServerHandler serverHandler, ExecutorService executor, ScheduledExecutorService monitorExecutor) {
+        this(configuration, serverHandler, executor, monitorExecutor, null);
+    }
+
+    /**
+     * Creates a new default SmppServer that shares the I/O threads, timer and
+     * monitor executor of a runtime (with any other client or server created
+     * with it).  The I/O worker count of the configuration is ignored, the
+     * runtime's worker pool is used instead.  Destroying this server only
+     * closes its own channels.
+     * @param configuration The server configuration to create this server with
+     * @param serverHandler The handler implementation for handling bind requests
+     *      and creating/destroying sessions.
+     * @param runtime The shared runtime
+     */
+    public DefaultSmppServer(final SmppServerConfiguration configuration, SmppServerHandler serverHandler, SmppRuntime runtime) {
+        this(configuration, serverHandler, runtime.getExecutor(), runtime.getMonitorExecutor(), runtime);
+    }
+
+    private DefaultSmppServer(final SmppServerConfiguration configuration, SmppServerHandler serverHandler, ExecutorService executor, ScheduledExecutorService monitorExecutor, SmppRuntime runtime) {
         this.configuration = configuration;
         // the same group we'll put every server channel
         this.channels = new DefaultChannelGroup();
         this.serverHandler = serverHandler;
-        // we'll put the "boss" worker for a server in its own pool
-        this.bossThreadPool = Executors.newCachedThreadPool();
+        this.runtime = runtime;
         
         // a factory for creating channels (connections)
-        if (configuration.isNonBlockingSocketsEnabled()) {
-            this.channelFactory = new NioServerSocketChannelFactory(this.bossThreadPool, executor, configuration.getMaxConnectionSize());
+        if (runtime != null) {
+            // the runtime owns the boss and worker threads
+            if (configuration.isNonBlockingSocketsEnabled()) {
+                this.channelFactory = new NioServerSocketChannelFactory(runtime.getServerBossPool(), runtime.getWorkerPool());
+            } else {
+                this.channelFactory = new OioServerSocketChannelFactory(executor, executor);
+            }
         } else {
-            this.channelFactory = new OioServerSocketChannelFactory(this.bossThreadPool, executor);
+            // we'll put the "boss" worker for a server in its own pool
+            this.bossThreadPool = Executors.newCachedThreadPool();
+            if (configuration.isNonBlockingSocketsEnabled()) {
+                this.channelFactory = new NioServerSocketChannelFactory(this.bossThreadPool, executor, configuration.getIoWorkerCount());
+            } else {
+                this.channelFactory = new OioServerSocketChannelFactory(this.bossThreadPool, executor);
+            }
         }
         
         // tie the server bootstrap to this server socket channel factory
@@ -149,16 +181,30 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
         
         // set options for the server socket that are useful
         this.serverBootstrap.setOption("reuseAddress", configuration.isReuseAddress());
+        if (configuration.getBacklog() > 0) {
+            this.serverBootstrap.setOption("backlog", configuration.getBacklog());
+        }
+        if (configuration.getReceiveBufferSize() > 0) {
+            // accepted sockets inherit it from the server socket (before the handshake)
+            this.serverBootstrap.setOption("receiveBufferSize", configuration.getReceiveBufferSize());
+            this.serverBootstrap.setOption("child.receiveBufferSize", configuration.getReceiveBufferSize());
+        }
+        if (configuration.getSendBufferSize() > 0) {
+            this.serverBootstrap.setOption("child.sendBufferSize", configuration.getSendBufferSize());
+        }
+        // and for each accepted connection (channel)
+        this.serverBootstrap.setOption("child.tcpNoDelay", configuration.isTcpNoDelay());
+        this.serverBootstrap.setOption("child.keepAlive", configuration.isKeepAlive());
         
         // we use the same default pipeline for all new channels - no need for a factory
         this.serverConnector = new SmppServerConnector(channels, this);
         this.serverBootstrap.getPipeline().addLast(SmppChannelConstants.PIPELINE_SERVER_CONNECTOR_NAME, this.serverConnector);
-	// a shared instance of a timer for session writeTimeout timing
-	this.writeTimeoutTimer = new org.jboss.netty.util.HashedWheelTimer();
-        // a shared timer used to make sure new channels are bound within X milliseconds
-        this.bindTimer = new Timer(configuration.getName() + "-BindTimer0", true);
+	// a shared instance of a timer for session writeTimeout and bind timeout timing
+	this.writeTimeoutTimer = (runtime != null ? runtime.getTimer() : SmppRuntime.newTimer());
         // NOTE: this would permit us to customize the "transcoding" context for a server if needed
-        this.transcoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext());
+        DefaultPduTranscoder defaultTranscoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext());
+        defaultTranscoder.setZeroCopyDecodeEnabled(configuration.isZeroCopyDecodeEnabled());
+        this.transcoder = defaultTranscoder;
         this.sessionIdSequence = new AtomicLong(0);        
         this.monitorExecutor = monitorExecutor;
         this.counters = new DefaultSmppServerCounters();
@@ -217,7 +263,29 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
         return this.counters;
     }
 
-    public Timer getBindTimer() {
+    /**
+     * Gets the timer used to make sure new channels are bound within the bind
+     * timeout.  A hashed wheel timer, so scheduling and cancelling a timeout
+     * for every accepted channel is O(1) even during a storm of connections.
+     * @return The bind timeout timer
+     */
+    public org.jboss.netty.util.Timer getBindTimeoutTimer() {
+        return this.writeTimeoutTimer;
+    }
+
+    /**
+     * Gets a java.util.Timer named "-BindTimer0" that is cancelled when this
+     * server is destroyed.  Bind timeouts are no longer scheduled on it, it
+     * is only created (with its thread) the first time this is called.
+     * @return The legacy bind timer
+     * @deprecated May be removed in a future version
+     *      Please use getBindTimeoutTimer()
+     */
+    @Deprecated
+    public synchronized java.util.Timer getBindTimer() {
+        if (this.bindTimer == null) {
+            this.bindTimer = new java.util.Timer(configuration.getName() + "-BindTimer0", true);
+        }
         return this.bindTimer;
     }
     
@@ -266,11 +334,18 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
     
     @Override
     public void destroy() {
-        this.bindTimer.cancel();
+        synchronized (this) {
+            if (this.bindTimer != null) {
+                this.bindTimer.cancel();
+            }
+        }
         stop();
-        this.serverBootstrap.releaseExternalResources();
+        if (this.runtime == null) {
+            this.serverBootstrap.releaseExternalResources();
+            this.writeTimeoutTimer.stop();
+        }
+        // otherwise the threads and timer are shared, the runtime releases them
         this.serverBootstrap = null;
-	this.writeTimeoutTimer.stop();
         unregisterMBean();
         logger.info("{} destroyed on SMPP port [{}]", configuration.getName(), configuration.getPort());
     }
@@ -330,7 +405,7 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
         byte interfaceVersion = this.autoNegotiateInterfaceVersion(config.getInterfaceVersion());
 
         // create a new server session associated with this server
-        DefaultSmppSession session = new DefaultSmppSession(SmppSession.Type.SERVER, config, channel, this, sessionId, preparedBindResponse, interfaceVersion, monitorExecutor);
+        DefaultSmppSession session = new DefaultSmppSession(SmppSession.Type.SERVER, config, channel, this, sessionId, preparedBindResponse, interfaceVersion, monitorExecutor, writeTimeoutTimer);
 
         // replace name of thread used for renaming
         SmppSessionThreadRenamer threadRenamer = (SmppSessionThreadRenamer)channel.getPipeline().get(SmppChannelConstants.PIPELINE_SESSION_THREAD_RENAMER_NAME);
@@ -346,17 +421,18 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
 	    channel.getPipeline().addAfter(SmppChannelConstants.PIPELINE_SESSION_LOGGER_NAME, SmppChannelConstants.PIPELINE_SESSION_WRITE_TIMEOUT_NAME, writeTimeoutHandler);
 	}
 
+        // add a write coalescer just before the decoder (coalescing relies on NIO I/O threads)
+        if (config.isWriteCoalescingEnabled() && this.configuration.isNonBlockingSocketsEnabled()) {
+            SmppSessionWriteCoalescer writeCoalescer = new SmppSessionWriteCoalescer(config.getWriteCoalescingMaxPdus(), config.getWriteCoalescingMaxBytes());
+            channel.getPipeline().addBefore(SmppChannelConstants.PIPELINE_SESSION_PDU_DECODER_NAME, SmppChannelConstants.PIPELINE_SESSION_WRITE_COALESCER_NAME, writeCoalescer);
+        }
+
         // decoder in pipeline is ok (keep it)
 
         // create a new wrapper around a session to pass the pdu up the chain
         channel.getPipeline().remove(SmppChannelConstants.PIPELINE_SESSION_WRAPPER_NAME);
         channel.getPipeline().addLast(SmppChannelConstants.PIPELINE_SESSION_WRAPPER_NAME, new SmppSessionWrapper(session));
         
-        // check if the # of channels exceeds maxConnections
-        if (this.channels.size() > this.configuration.getMaxConnectionSize()) {
-            logger.warn("The current connection size [{}] exceeds the configured max connection size [{}]", this.channels.size(), this.configuration.getMaxConnectionSize());
-        }
-        
         // session created, now pass it upstream
         counters.incrementSessionCreatedAndGet();
         incrementSessionSizeCounters(session);
@@ -463,6 +539,11 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
         return this.configuration.isReuseAddress();
     }
 
+    @Override
+    public int getIoWorkerCount() {
+        return this.configuration.getIoWorkerCount();
+    }
+
     @Override
     public int getChannelConnects() {
         return this.getCounters().getChannelConnects();
@@ -473,6 +554,11 @@ public class DefaultSmppServer implements SmppServer, DefaultSmppServerMXBean {
         return this.getCounters().getChannelDisconnects();
     }
 
+    @Override
+    public int getChannelRejects() {
+        return this.getCounters().getChannelRejects();
+    }
+
     @Override
     public int getBindTimeouts() {
         return this.getCounters().getBindTimeouts();
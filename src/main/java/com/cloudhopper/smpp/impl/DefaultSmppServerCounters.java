@@ -32,6 +32,7 @@ public class DefaultSmppServerCounters implements SmppServerCounters {
     
     private AtomicInteger channelConnects;
     private AtomicInteger channelDisconnects;
+    private AtomicInteger channelRejects;
     private AtomicInteger bindTimeouts;
     private AtomicInteger bindRequested;
     private AtomicInteger sessionCreated;
@@ -44,6 +45,7 @@ public class DefaultSmppServerCounters implements SmppServerCounters {
     public DefaultSmppServerCounters() {
         this.channelConnects = new AtomicInteger(0);
         this.channelDisconnects = new AtomicInteger(0);
+        this.channelRejects = new AtomicInteger(0);
         this.bindTimeouts = new AtomicInteger(0);
         this.bindRequested = new AtomicInteger(0);
         this.sessionCreated = new AtomicInteger(0);
@@ -58,6 +60,7 @@ public class DefaultSmppServerCounters implements SmppServerCounters {
     public void reset() {
         this.channelConnects.set(0);
         this.channelDisconnects.set(0);
+        this.channelRejects.set(0);
         this.bindTimeouts.set(0);
         this.bindRequested.set(0);
         this.sessionCreated.set(0);
@@ -91,6 +94,15 @@ public class DefaultSmppServerCounters implements SmppServerCounters {
         return this.channelDisconnects.incrementAndGet();
     }
 
+    @Override
+    public int getChannelRejects() {
+        return this.channelRejects.get();
+    }
+    
+    public int incrementChannelRejectsAndGet() {
+        return this.channelRejects.incrementAndGet();
+    }
+
     @Override
     public int getBindTimeouts() {
         return this.bindTimeouts.get();
@@ -186,6 +198,8 @@ public class DefaultSmppServerCounters implements SmppServerCounters {
         to.append(getChannelConnects());
         to.append(" channelDisconnects=");
         to.append(getChannelDisconnects());
+        to.append(" channelRejects=");
+        to.append(getChannelRejects());
         to.append(" bindTimeouts=");
         to.append(getBindTimeouts());
         to.append(" bindRequested=");
@@ -27,17 +27,26 @@ import com.cloudhopper.commons.util.windowing.OfferTimeoutException;
 import com.cloudhopper.commons.util.windowing.Window;
 import com.cloudhopper.commons.util.windowing.WindowFuture;
 import com.cloudhopper.commons.util.windowing.WindowListener;
+import com.cloudhopper.smpp.AsyncSmppSession;
+import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.PduResponseFuture;
 import com.cloudhopper.smpp.SmppBindType;
 import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSendWindow;
+import com.cloudhopper.smpp.SmppSendWindowFactory;
 import com.cloudhopper.smpp.SmppServerSession;
+import com.cloudhopper.smpp.channel.SmppChannelConstants;
+import com.cloudhopper.smpp.channel.SmppSessionWriteCoalescer;
 import com.cloudhopper.smpp.type.SmppChannelException;
 import com.cloudhopper.smpp.SmppSessionConfiguration;
 import com.cloudhopper.smpp.SmppSessionCounters;
 import com.cloudhopper.smpp.SmppSessionHandler;
 import com.cloudhopper.smpp.SmppSessionListener;
+import com.cloudhopper.smpp.SmppSessionReadyListener;
 import com.cloudhopper.smpp.type.SmppTimeoutException;
 import com.cloudhopper.smpp.pdu.BaseBind;
 import com.cloudhopper.smpp.pdu.BaseBindResp;
+import com.cloudhopper.smpp.pdu.BaseSm;
 import com.cloudhopper.smpp.pdu.EnquireLink;
 import com.cloudhopper.smpp.pdu.EnquireLinkResp;
 import com.cloudhopper.smpp.pdu.Pdu;
@@ -54,20 +63,34 @@ import com.cloudhopper.smpp.transcoder.PduTranscoder;
 import com.cloudhopper.smpp.type.RecoverablePduException;
 import com.cloudhopper.smpp.type.SmppBindException;
 import com.cloudhopper.smpp.type.UnrecoverablePduException;
+import com.cloudhopper.smpp.util.AdaptiveWindowSize;
+import com.cloudhopper.smpp.util.OrderedExecutor;
 import com.cloudhopper.smpp.util.SequenceNumber;
 import com.cloudhopper.smpp.util.SmppSessionUtil;
 import com.cloudhopper.smpp.util.SmppUtil;
+import com.cloudhopper.smpp.util.TokenBucketRateLimiter;
 import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
+import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.management.ObjectName;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,7 +99,7 @@ import org.slf4j.LoggerFactory;
  * 
  * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
  */
-public class DefaultSmppSession implements SmppServerSession, SmppSessionChannelListener, WindowListener<Integer,PduRequest,PduResponse>, DefaultSmppSessionMXBean {
+public class DefaultSmppSession implements SmppServerSession, AsyncSmppSession, SmppSessionChannelInterestListener, WindowListener<Integer,PduRequest,PduResponse>, DefaultSmppSessionMXBean {
     private static final Logger logger = LoggerFactory.getLogger(DefaultSmppSession.class);
 
     // are we an "esme" or "smsc" session type?
@@ -87,10 +110,18 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
     private final AtomicLong boundTime;
     private final SmppSessionConfiguration configuration;
     private final Channel channel;
-    private SmppSessionHandler sessionHandler;
+    // volatile since callbacks may run on a handler executor (and destroy() clears it)
+    private volatile SmppSessionHandler sessionHandler;
     private final SequenceNumber sequenceNumber;
     private final PduTranscoder transcoder;
-    private final Window<Integer,PduRequest,PduResponse> sendWindow;
+    private final SmppSendWindow sendWindow;
+    // if not null, the number of pending requests is limited to its size
+    private final AdaptiveWindowSize adaptiveWindowSize;
+    // if not null, then submit_sm, deliver_sm and data_sm are paced by this
+    private final TokenBucketRateLimiter sendRateLimiter;
+    // moving average of the time to receive a response, scaled by 8, or -1
+    // until the first response (only written by the I/O thread)
+    private volatile long scaledRecentResponseTime = -1;
     private byte interfaceVersion;
     // only for server sessions
     private DefaultSmppServer server;
@@ -100,12 +131,48 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
     private BaseBindResp preparedBindResponse;
     private ScheduledExecutorService monitorExecutor;
     private DefaultSmppSessionCounters counters;
+    // if not null, session handler callbacks for received PDUs run under this
+    private final Executor handlerExecutor;
+    // the timestamp when a PDU was last received (only written by the I/O thread)
+    private volatile long lastReceivedTime;
+    // shared wheel timer for the enquire_link keepalive (and optionally request expiry)
+    private final Timer timer;
+    private volatile EnquireLinkKeepalive keepalive;
+    // set once the keepalive gave up on the remote endpoint (the channel
+    // closing is then reported as unexpected)
+    private volatile boolean closingUnresponsive;
+    // received requests (or bytes) queued on the handler executor but not yet processed
+    private final Object inboundLock = new Object();
+    private long inboundPending;
+    private boolean readPaused;
+    private long readPauseStartTime;
+    // number of reasons reading from the channel is deliberately suspended
+    // (the inbound watermarks, a request publisher without demand)
+    private final Object readSuspendLock = new Object();
+    private volatile int readSuspensions;
+    // the timestamp reading was last resumed after a deliberate suspension
+    private volatile long readResumedTime;
+    // notified when the session changes from ready to not ready (or back)
+    private final CopyOnWriteArrayList<SmppSessionReadyListener> readyListeners = new CopyOnWriteArrayList<SmppSessionReadyListener>();
+    // guards the fields below, never held while calling a listener
+    private final Object readyLock = new Object();
+    private boolean lastReady;
+    // a thread is notifying the listeners (and another change may be pending)
+    private boolean readyNotifying;
+    private boolean readyChangePending;
 
     /**
      * Creates an SmppSession for a server-based session.
      */
     public DefaultSmppSession(Type localType, SmppSessionConfiguration configuration, Channel channel, DefaultSmppServer server, Long serverSessionId, BaseBindResp preparedBindResponse, byte interfaceVersion, ScheduledExecutorService monitorExecutor) {
-        this(localType, configuration, channel, (SmppSessionHandler)null, monitorExecutor);
+        this(localType, configuration, channel, server, serverSessionId, preparedBindResponse, interfaceVersion, monitorExecutor, null);
+    }
+
+    /**
+     * Creates an SmppSession for a server-based session.
+     */
+    public DefaultSmppSession(Type localType, SmppSessionConfiguration configuration, Channel channel, DefaultSmppServer server, Long serverSessionId, BaseBindResp preparedBindResponse, byte interfaceVersion, ScheduledExecutorService monitorExecutor, Timer timer) {
+        this(localType, configuration, channel, (SmppSessionHandler)null, monitorExecutor, timer);
         // default state for a server session is that it's binding
         this.state.set(STATE_BINDING);
         this.server = server;
@@ -145,6 +212,26 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
      *      will be disabled.
      */
     public DefaultSmppSession(Type localType, SmppSessionConfiguration configuration, Channel channel, SmppSessionHandler sessionHandler, ScheduledExecutorService monitorExecutor) {
+        this(localType, configuration, channel, sessionHandler, monitorExecutor, null);
+    }
+
+    /**
+     * Creates an SmppSession for a client-based session. It is <b>NOT</b> 
+     * recommended that this constructor is called directly.  The recommended
+     * way to construct a session is either via a DefaultSmppClient or
+     * DefaultSmppServer. 
+     * @param localType The type of local endpoint (ESME vs. SMSC)
+     * @param configuration The session configuration
+     * @param channel The channel associated with this session. The channel
+     *      needs to already be opened.
+     * @param sessionHandler The handler for session events
+     * @param executor The executor that window monitoring and potentially
+     *      statistics will be periodically executed under.  If null, monitoring
+     *      will be disabled.
+     * @param timer The (shared) wheel timer the enquire_link keepalive and, if
+     *      enabled, request expiry run under.  If null, both are disabled.
+     */
+    public DefaultSmppSession(Type localType, SmppSessionConfiguration configuration, Channel channel, SmppSessionHandler sessionHandler, ScheduledExecutorService monitorExecutor, Timer timer) {
         this.localType = localType;
         this.state = new AtomicInteger(STATE_OPEN);
         this.configuration = configuration;
@@ -153,15 +240,38 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         this.sessionHandler = (sessionHandler == null ? new DefaultSmppSessionHandler(logger) : sessionHandler);
         this.sequenceNumber = new SequenceNumber();
         // always "wrap" the custom pdu transcoder context with a default one
-        this.transcoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext(this.sessionHandler));
+        DefaultPduTranscoder defaultTranscoder = null;
+        if (configuration.getDirectBufferArenaSize() > 0) {
+            // each session encodes into its own arena of direct buffers
+            ChannelBufferFactory bufferFactory = new DirectChannelBufferFactory(ByteOrder.BIG_ENDIAN, configuration.getDirectBufferArenaSize());
+            defaultTranscoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext(this.sessionHandler), bufferFactory);
+        } else {
+            defaultTranscoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext(this.sessionHandler));
+        }
+        defaultTranscoder.setZeroCopyDecodeEnabled(configuration.isZeroCopyDecodeEnabled());
+        this.transcoder = defaultTranscoder;
         this.monitorExecutor = monitorExecutor;
+        this.timer = timer;
         
-        // different ways to construct the window if monitoring is enabled
-        if (monitorExecutor != null && configuration.getWindowMonitorInterval() > 0) {
-            // enable send window monitoring, verify if the monitoringInterval has been set
-            this.sendWindow = new Window<Integer,PduRequest,PduResponse>(configuration.getWindowSize(), monitorExecutor, configuration.getWindowMonitorInterval(), this, configuration.getName() + ".Monitor");
+        // the factory enables window monitoring if an executor and monitor interval are set
+        // (or expiry on the timer if the request expiry timer is enabled)
+        SmppSendWindowFactory sendWindowFactory = configuration.getSendWindowFactory();
+        if (sendWindowFactory == null) {
+            sendWindowFactory = DefaultSmppSendWindow.FACTORY;
+        }
+        this.sendWindow = sendWindowFactory.createSendWindow(configuration, monitorExecutor, timer, this);
+        if (configuration.isAdaptiveWindowEnabled()) {
+            this.adaptiveWindowSize = new AdaptiveWindowSize(configuration.getAdaptiveWindowMinSize(), configuration.getWindowSize(), configuration.getAdaptiveWindowLatencyThreshold());
+        } else {
+            this.adaptiveWindowSize = null;
+        }
+        if (configuration.getSendRateLimit() > 0 || configuration.getThrottleBackoffTime() > 0) {
+            this.sendRateLimiter = new TokenBucketRateLimiter(configuration.getSendRateLimit(), configuration.getSendRateBurst());
+            if (monitorExecutor == null && timer == null) {
+                logger.warn("Session [{}] is send rate limited but has neither a monitor executor nor a timer, requests that would need to be delayed will fail", configuration.getName());
+            }
         } else {
-            this.sendWindow = new Window<Integer,PduRequest,PduResponse>(configuration.getWindowSize());
+            this.sendRateLimiter = null;
         }
         
         // these server-only items are null
@@ -171,6 +281,14 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         if (configuration.isCountersEnabled()) {
             this.counters = new DefaultSmppSessionCounters();
         }
+        if (configuration.getHandlerExecutor() == null) {
+            this.handlerExecutor = null;
+        } else if (configuration.isHandlerExecutorOrdered()) {
+            // each session gets its own ordered "view" of the shared executor
+            this.handlerExecutor = new OrderedExecutor(configuration.getHandlerExecutor());
+        } else {
+            this.handlerExecutor = configuration.getHandlerExecutor();
+        }
     }
     
     public void registerMBean(String objectName) {
@@ -217,6 +335,61 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
     protected void setBound() {
         this.state.set(STATE_BOUND);
         this.boundTime.set(System.currentTimeMillis());
+        this.lastReceivedTime = this.boundTime.get();
+        if (this.timer != null && configuration.getEnquireLinkInterval() > 0) {
+            this.keepalive = new EnquireLinkKeepalive(this, this.timer, configuration.getEnquireLinkInterval(), configuration.getEnquireLinkMaxMissed());
+            this.keepalive.start();
+        }
+        updateReady();
+    }
+
+    /**
+     * Gets the timestamp when a PDU was last received from the remote endpoint
+     * (or when the session was bound if nothing was received since).
+     * @return The timestamp in milliseconds
+     */
+    public long getLastReceivedTime() {
+        return this.lastReceivedTime;
+    }
+
+    /**
+     * Deliberately suspends reading from the channel (backpressure).  Each
+     * call must be matched by a call to resumeReading and reading only
+     * resumes once nothing wants it suspended anymore.  While suspended, the
+     * enquire_link keepalive doesn't count missed enquire links since no
+     * response could be read anyway.
+     */
+    public void suspendReading() {
+        synchronized (this.readSuspendLock) {
+            if (this.readSuspensions++ == 0) {
+                this.channel.setReadable(false);
+            }
+        }
+    }
+
+    /**
+     * Resumes reading from the channel suspended by suspendReading.
+     */
+    public void resumeReading() {
+        synchronized (this.readSuspendLock) {
+            if (this.readSuspensions > 0 && --this.readSuspensions == 0) {
+                this.readResumedTime = System.currentTimeMillis();
+                this.channel.setReadable(true);
+            }
+        }
+    }
+
+    public boolean isReadingSuspended() {
+        return (this.readSuspensions > 0);
+    }
+
+    /**
+     * Gets the timestamp reading from the channel was last resumed after
+     * being deliberately suspended.
+     * @return The timestamp or 0 if reading was never suspended
+     */
+    public long getReadResumedTime() {
+        return this.readResumedTime;
     }
 
     @Override
@@ -297,6 +470,14 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
 
     @Override
     public Window<Integer,PduRequest,PduResponse> getSendWindow() {
+        if (this.sendWindow instanceof DefaultSmppSendWindow) {
+            return ((DefaultSmppSendWindow)this.sendWindow).getWindow();
+        }
+        throw new IllegalStateException("Send window [" + this.sendWindow.getClass().getName() + "] is not a ch-commons-util Window; use getSmppSendWindow() instead");
+    }
+
+    @Override
+    public SmppSendWindow getSmppSendWindow() {
         return this.sendWindow;
     }
     
@@ -407,6 +588,10 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
 
     @Override
     public void close(long timeoutInMillis) {
+        EnquireLinkKeepalive k = this.keepalive;
+        if (k != null) {
+            k.stop();
+        }
         if (channel.isConnected()) {
             // temporarily set to "unbinding" for now
             this.state.set(STATE_UNBINDING);
@@ -420,6 +605,34 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         this.state.set(STATE_CLOSED);
     }
     
+    /**
+     * Closes a session whose remote endpoint stopped responding.  Unlike
+     * close(), this never waits for the channel to close (it's called on the
+     * shared timer thread) and the session handler is told the channel
+     * unexpectedly closed, from the I/O thread like any other closed channel.
+     */
+    protected void closeUnresponsive() {
+        EnquireLinkKeepalive k = this.keepalive;
+        if (k != null) {
+            k.stop();
+        }
+        this.closingUnresponsive = true;
+        if (!channel.isConnected()) {
+            // already closed (and reported)
+            this.state.set(STATE_CLOSED);
+            return;
+        }
+        channel.close().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    logger.warn("Unable to cleanly close channel of unresponsive session");
+                }
+                state.set(STATE_CLOSED);
+            }
+        });
+    }
+
     @Override
     public void destroy() {
         close();
@@ -449,6 +662,182 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         return (SubmitSmResp)response;
     }
     
+    @Override
+    public PduResponseFuture<SubmitSmResp> submitAsync(SubmitSm request, long timeoutMillis) {
+        return sendRequestAsync(request, timeoutMillis);
+    }
+
+    @Override
+    public <R extends PduResponse> PduResponseFuture<R> sendRequestAsync(PduRequest<R> request, long timeoutMillis) {
+        DefaultPduResponseFuture<R> responseFuture = new DefaultPduResponseFuture<R>(request);
+        // must be set before sending so a response can't beat it
+        request.setResponseFuture(responseFuture);
+        try {
+            assertValidRequest(request);
+            // never wait on the write, the caller only expects to wait for a slot
+            WindowFuture<Integer,PduRequest,PduResponse> future = sendRequestPdu(request, timeoutMillis, false, true);
+            if (future.isCancelled()) {
+                // discarded by an SmppSessionListener
+                clearResponseFuture(request, responseFuture);
+                responseFuture.cancel(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            clearResponseFuture(request, responseFuture);
+            responseFuture.fail(e);
+        } catch (Exception e) {
+            clearResponseFuture(request, responseFuture);
+            responseFuture.fail(e);
+        }
+        return responseFuture;
+    }
+
+    @Override
+    public <R extends PduResponse> PduResponseFuture<R> trySendRequestAsync(PduRequest<R> request) {
+        if (!isReady()) {
+            return null;
+        }
+        // a zero timeout fails the future rather than waiting if another
+        // thread took the last slot in the meantime
+        return sendRequestAsync(request, 0);
+    }
+
+    @Override
+    public boolean isReady() {
+        return isBound()
+            && this.channel.isConnected()
+            && this.channel.isWritable()
+            && this.sendWindow.getSize() < getEffectiveWindowSize();
+    }
+
+    @Override
+    public void addReadyListener(SmppSessionReadyListener listener) {
+        boolean ready = isReady();
+        synchronized (this.readyLock) {
+            if (this.readyListeners.isEmpty() && !this.readyNotifying) {
+                // not tracked without listeners
+                this.lastReady = ready;
+            }
+            this.readyListeners.add(listener);
+        }
+    }
+
+    @Override
+    public void removeReadyListener(SmppSessionReadyListener listener) {
+        this.readyListeners.remove(listener);
+    }
+
+    /**
+     * Notifies the ready listeners if the session changed from ready to not
+     * ready (or back) since the last call.  Called on anything that can change
+     * either window occupancy or channel writability.  Only one thread
+     * notifies at a time (others just flag a pending change for it), so the
+     * listeners see the changes in order and are never called with a lock
+     * held.
+     */
+    private void updateReady() {
+        if (this.readyListeners.isEmpty()) {
+            return;
+        }
+        synchronized (this.readyLock) {
+            if (this.readyNotifying) {
+                this.readyChangePending = true;
+                return;
+            }
+            this.readyNotifying = true;
+        }
+        while (true) {
+            boolean ready = isReady();
+            boolean changed = false;
+            synchronized (this.readyLock) {
+                this.readyChangePending = false;
+                changed = (ready != this.lastReady);
+                this.lastReady = ready;
+            }
+            if (changed) {
+                for (SmppSessionReadyListener listener : this.readyListeners) {
+                    try {
+                        listener.fireSessionReadyChanged(this, ready);
+                    } catch (Throwable t) {
+                        logger.warn("Ready listener threw an exception: {}", t);
+                    }
+                }
+            }
+            synchronized (this.readyLock) {
+                if (!this.readyChangePending) {
+                    this.readyNotifying = false;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when a request left the send window without a response or
+     * expiring (cancelled, failed to write or the channel closed).
+     * @param future The future of the request or null if several were removed
+     *      (and already released)
+     */
+    private void requestRemoved(WindowFuture<Integer,PduRequest,PduResponse> future) {
+        if (future != null) {
+            this.sendWindow.release(future);
+        }
+        if (this.adaptiveWindowSize != null) {
+            this.adaptiveWindowSize.requestRemoved();
+        }
+        updateReady();
+    }
+
+    /**
+     * Completes the response future of a request sent with sendRequestAsync.
+     * @return True if the request had a response future
+     */
+    private boolean completeResponseFuture(WindowFuture<Integer,PduRequest,PduResponse> future) {
+        final DefaultPduResponseFuture responseFuture = (DefaultPduResponseFuture)future.getRequest().getResponseFuture();
+        if (responseFuture == null) {
+            return false;
+        }
+        clearResponseFuture(future.getRequest(), responseFuture);
+        final PduAsyncResponse asyncResponse = new DefaultPduAsyncResponse(future);
+        if (this.handlerExecutor == null) {
+            responseFuture.complete(asyncResponse);
+        } else {
+            // listeners are just like session handler callbacks
+            executeHandlerTask(new Runnable() {
+                @Override
+                public void run() {
+                    responseFuture.complete(asyncResponse);
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Fails the response future of a request sent with sendRequestAsync.
+     * @return True if the request had a response future
+     */
+    private boolean failResponseFuture(PduRequest request, Throwable cause) {
+        DefaultPduResponseFuture responseFuture = (DefaultPduResponseFuture)request.getResponseFuture();
+        if (responseFuture == null) {
+            return false;
+        }
+        clearResponseFuture(request, responseFuture);
+        responseFuture.fail(cause);
+        return true;
+    }
+
+    /**
+     * Clears the response future of a request once the request is done so
+     * the request doesn't keep it (and its response) reachable and can be
+     * reused, unless the request was already sent again with a new future.
+     */
+    private void clearResponseFuture(PduRequest<?> request, PduResponseFuture<?> responseFuture) {
+        if (request.getResponseFuture() == responseFuture) {
+            request.setResponseFuture(null);
+        }
+    }
+
     protected void assertValidRequest(PduRequest request) throws NullPointerException, RecoverablePduException, UnrecoverablePduException {
         if (request == null) {
             throw new NullPointerException("PDU request cannot be null");
@@ -468,6 +857,7 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
             // since this is a "synchronous" request and it timed out, we don't
             // want it eating up valuable window space - cancel it before returning exception
             future.cancel();
+            requestRemoved(future);
             throw new SmppTimeoutException("Unable to get response within [" + timeoutInMillis + " ms]");
         }
         
@@ -488,9 +878,21 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public WindowFuture<Integer,PduRequest,PduResponse> sendRequestPdu(PduRequest pdu, long timeoutMillis, boolean synchronous) throws RecoverablePduException, UnrecoverablePduException, SmppTimeoutException, SmppChannelException, InterruptedException {
+        return sendRequestPdu(pdu, timeoutMillis, synchronous, configuration.isNonBlockingWritesEnabled());
+    }
+
+    /**
+     * Sends a request like sendRequestPdu(PduRequest, long, boolean), but with
+     * a non-blocking write regardless of the session configuration if asked
+     * to.  Internal senders that must never block on the write (e.g. the
+     * enquire_link keepalive on the shared timer thread) use this.
+     * @param nonBlockingWrite True to write without waiting for the write to
+     *      complete (a failed write then fails the future), false to wait
+     */
+    @SuppressWarnings("unchecked")
+    protected WindowFuture<Integer,PduRequest,PduResponse> sendRequestPdu(PduRequest pdu, long timeoutMillis, boolean synchronous, boolean nonBlockingWrite) throws RecoverablePduException, UnrecoverablePduException, SmppTimeoutException, SmppChannelException, InterruptedException {
         // assign the next PDU sequence # if its not yet assigned
         if (!pdu.hasSequenceNumberAssigned()) {
             pdu.setSequenceNumber(this.sequenceNumber.next());
@@ -499,6 +901,11 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         // encode the pdu into a buffer
         ChannelBuffer buffer = transcoder.encode(pdu);
 
+        // wait for the number of pending requests to drop under the effective window size
+        if (this.adaptiveWindowSize != null && !this.adaptiveWindowSize.awaitFreeSlot(this.sendWindow, timeoutMillis)) {
+            throw new SmppTimeoutException("Unable to accept offer within [" + timeoutMillis + " ms] (adaptive window of size [" + this.adaptiveWindowSize.getSize() + "] full)");
+        }
+
         WindowFuture<Integer,PduRequest,PduResponse> future = null;
         try {
             future = sendWindow.offer(pdu.getSequenceNumber(), pdu, timeoutMillis, configuration.getRequestExpiryTimeout(), synchronous);
@@ -507,15 +914,30 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         } catch (OfferTimeoutException e) {
             throw new SmppTimeoutException(e.getMessage(), e);
         }
+        // the window may be full now
+        updateReady();
         
         if(this.sessionHandler instanceof SmppSessionListener) {
             if(!((SmppSessionListener)this.sessionHandler).firePduDispatch(pdu)) {
                 logger.info("dispatched request PDU discarded: {}", pdu);
                 future.cancel(); //@todo probably throwing exception here is better solution?
+                requestRemoved(future);
                 return future;
             }
         }
 
+        // pace messages to the send rate limit (or a throttle backoff) -- the
+        // permit is only reserved once the request has its slot in the window
+        long rateLimitWaitNanos = 0;
+        if (this.sendRateLimiter != null && pdu instanceof BaseSm) {
+            rateLimitWaitNanos = this.sendRateLimiter.reserve(TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMillis)));
+            if (rateLimitWaitNanos < 0) {
+                future.cancel();
+                requestRemoved(future);
+                throw new SmppTimeoutException("Unable to send within [" + timeoutMillis + " ms] (send rate limited)");
+            }
+        }
+
         // we need to log the PDU after encoding since some things only happen
         // during the encoding process such as looking up the result message
         if (configuration.getLoggingOptions().isLogPduEnabled()) {
@@ -526,6 +948,25 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
             }
         }
 
+        if (rateLimitWaitNanos > 0) {
+            if (scheduleRequestWrite(pdu, buffer, future, rateLimitWaitNanos)) {
+                // written once its permit is due without the caller waiting
+                // -- the listener will fail the future if the write doesn't succeed
+                return future;
+            }
+            // nothing to schedule the write on, fail fast rather than parking the caller
+            future.cancel();
+            requestRemoved(future);
+            throw new SmppChannelException("Unable to schedule send rate limited request [" + pdu.getName() + "] with seqNum [" + pdu.getSequenceNumber() + "] (no monitor executor or timer available)");
+        }
+
+        if (nonBlockingWrite) {
+            // write the pdu out, but don't wait -- the listener will fail the
+            // future if the write doesn't succeed
+            this.channel.write(buffer).addListener(new RequestWriteListener(pdu, future));
+            return future;
+        }
+
         // write the pdu out & wait timeout amount of time
 	ChannelFuture channelFuture = this.channel.write(buffer).await();
 
@@ -542,7 +983,8 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
 
     /**
      * Asynchronously sends a PDU and does not wait for a response PDU.
-     * This method will wait for the PDU to be written to the underlying channel.
+     * This method will wait for the PDU to be written to the underlying channel
+     * unless non-blocking writes are enabled in the session configuration.
      * @param pdu The PDU to send (can be either a response or request)
      * @throws RecoverablePduEncodingException
      * @throws UnrecoverablePduEncodingException
@@ -572,6 +1014,12 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
             logger.info("send PDU: {}", pdu);
         }
 
+        if (configuration.isNonBlockingWritesEnabled()) {
+            // write the pdu out, but don't wait for it to complete
+            this.channel.write(buffer).addListener(new ResponseWriteListener(pdu));
+            return;
+        }
+
         // write the pdu out & wait timeout amount of time
         ChannelFuture channelFuture = this.channel.write(buffer).await();
 
@@ -582,9 +1030,124 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         }
     }
 
+    /**
+     * Completes a request written with a non-blocking write.  If the write
+     * failed, the window future is failed with the cause so a waiting caller
+     * wakes up immediately.  If no caller is waiting, the session handler is
+     * notified instead.
+     */
+    private final class RequestWriteListener implements ChannelFutureListener {
+        private final PduRequest pdu;
+        private final WindowFuture<Integer,PduRequest,PduResponse> future;
+
+        public RequestWriteListener(PduRequest pdu, WindowFuture<Integer,PduRequest,PduResponse> future) {
+            this.pdu = pdu;
+            this.future = future;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture channelFuture) throws Exception {
+            if (channelFuture.isSuccess()) {
+                countSendRequestPdu(pdu);
+                return;
+            }
+            Throwable cause = channelFuture.getCause();
+            boolean callerWaiting = future.isCallerWaiting();
+            try {
+                future.fail(cause);
+            } catch (Exception e) {
+                // e.g. the future already completed (a response beat the failure)
+                logger.debug("Unable to fail future of request PDU [{}] with seqNum [{}]: {}", pdu.getName(), pdu.getSequenceNumber(), e);
+            }
+            requestRemoved(future);
+            if (failResponseFuture(pdu, new SmppChannelException("Unable to write request PDU [" + pdu.getName() + "] with seqNum [" + pdu.getSequenceNumber() + "]", cause))) {
+                return;
+            }
+            if (!callerWaiting) {
+                fireExceptionThrown(new SmppChannelException("Unable to write request PDU [" + pdu.getName() + "] with seqNum [" + pdu.getSequenceNumber() + "]", cause));
+            }
+        }
+    }
+
+    /**
+     * Schedules the non-blocking write of a rate limited request for when its
+     * permit is due.  The monitor executor is preferred over the wheel timer
+     * since its delays aren't rounded up to a tick.
+     * @return True if scheduled, false if there is nothing to schedule it on
+     */
+    private boolean scheduleRequestWrite(PduRequest pdu, ChannelBuffer buffer, WindowFuture<Integer,PduRequest,PduResponse> future, long delayNanos) {
+        DelayedRequestWrite write = new DelayedRequestWrite(pdu, buffer, future);
+        try {
+            if (this.monitorExecutor != null) {
+                this.monitorExecutor.schedule(write, delayNanos, TimeUnit.NANOSECONDS);
+                return true;
+            } else if (this.timer != null) {
+                this.timer.newTimeout(write, delayNanos, TimeUnit.NANOSECONDS);
+                return true;
+            }
+        } catch (RejectedExecutionException e) {
+            logger.debug("Unable to schedule write of rate limited request PDU [{}] with seqNum [{}]: {}", pdu.getName(), pdu.getSequenceNumber(), e);
+        } catch (IllegalStateException e) {
+            // the timer was stopped
+            logger.debug("Unable to schedule write of rate limited request PDU [{}] with seqNum [{}]: {}", pdu.getName(), pdu.getSequenceNumber(), e);
+        }
+        return false;
+    }
+
+    /**
+     * Writes a rate limited request once its permit is due, unless it was
+     * completed (e.g. cancelled or expired) in the meantime.
+     */
+    private final class DelayedRequestWrite implements Runnable, TimerTask {
+        private final PduRequest pdu;
+        private final ChannelBuffer buffer;
+        private final WindowFuture<Integer,PduRequest,PduResponse> future;
+
+        public DelayedRequestWrite(PduRequest pdu, ChannelBuffer buffer, WindowFuture<Integer,PduRequest,PduResponse> future) {
+            this.pdu = pdu;
+            this.buffer = buffer;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                logger.debug("Rate limited request PDU [{}] with seqNum [{}] completed before it was written, skipping it", pdu.getName(), pdu.getSequenceNumber());
+                return;
+            }
+            channel.write(buffer).addListener(new RequestWriteListener(pdu, future));
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            run();
+        }
+    }
+
+    /**
+     * Reports a response written with a non-blocking write that failed.
+     */
+    private final class ResponseWriteListener implements ChannelFutureListener {
+        private final PduResponse pdu;
+
+        public ResponseWriteListener(PduResponse pdu) {
+            this.pdu = pdu;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture channelFuture) throws Exception {
+            if (!channelFuture.isSuccess()) {
+                fireExceptionThrown(new SmppChannelException("Unable to write response PDU [" + pdu.getName() + "] with seqNum [" + pdu.getSequenceNumber() + "]", channelFuture.getCause()));
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void firePduReceived(Pdu pdu) {
+        // anything received shows the remote endpoint is alive
+        this.lastReceivedTime = System.currentTimeMillis();
+
         if (configuration.getLoggingOptions().isLogPduEnabled()) {
             logger.info("received PDU: {}", pdu);
         }
@@ -598,28 +1161,39 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
 
         if (pdu instanceof PduRequest) {
             // process this request and allow the handler to return a result
-            PduRequest requestPdu = (PduRequest)pdu;
+            final PduRequest requestPdu = (PduRequest)pdu;
             
             this.countReceiveRequestPdu(requestPdu);
             
-            long startTime = System.currentTimeMillis();
-            PduResponse responsePdu = this.sessionHandler.firePduRequestReceived(requestPdu);
-            
-            // if the handler returned a non-null object, then we need to send it back on the channel
-            if (responsePdu != null) {
-                try {
-                    long responseTime = System.currentTimeMillis() - startTime;
-                    this.countSendResponsePdu(responsePdu, responseTime, responseTime);
-                    
-                    this.sendResponsePdu(responsePdu);
-                } catch (Exception e) {
-                    logger.error("Unable to cleanly return response PDU: {}", e);
-                }
+            if (this.handlerExecutor == null) {
+                processPduRequest(requestPdu);
+            } else {
+                final int weight = inboundAcquire(requestPdu);
+                executeHandlerTask(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            // may have been queued behind others while the session was closed
+                            if (isClosed() || sessionHandler == null) {
+                                logger.info("Session closed before the handler executor ran, dropping received request: {}", requestPdu);
+                                return;
+                            }
+                            processPduRequest(requestPdu);
+                        } finally {
+                            inboundRelease(weight);
+                        }
+                    }
+                });
             }
         } else {
             // this is a response -- we need to check if its "expected" or "unexpected"
             PduResponse responsePdu = (PduResponse)pdu;
             int receivedPduSeqNum = pdu.getSequenceNumber();
+
+            if (this.sendRateLimiter != null && configuration.getThrottleBackoffTime() > 0 && responsePdu.getCommandStatus() == SmppConstants.STATUS_THROTTLED) {
+                logger.debug("Throttled by remote endpoint, backing off for [{} ms]", configuration.getThrottleBackoffTime());
+                this.sendRateLimiter.pause(configuration.getThrottleBackoffTime());
+            }
             
             try {
                 // see if a correlating request exists in the window
@@ -627,6 +1201,18 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
                 if (future != null) {
                     logger.trace("Found a future in the window for seqNum [{}]", receivedPduSeqNum);
                     this.countReceiveResponsePdu(responsePdu, future.getOfferToAcceptTime(), future.getAcceptToDoneTime(), (future.getAcceptToDoneTime() / future.getWindowSize()));
+                    // exponentially weighted (1/8) like TCP's smoothed round trip time,
+                    // starting from the first sample rather than from zero
+                    if (this.scaledRecentResponseTime < 0) {
+                        this.scaledRecentResponseTime = (future.getAcceptToDoneTime() << 3);
+                    } else {
+                        this.scaledRecentResponseTime += future.getAcceptToDoneTime() - (this.scaledRecentResponseTime >> 3);
+                    }
+                    if (this.adaptiveWindowSize != null) {
+                        this.adaptiveWindowSize.responseReceived(future.getAcceptTimestamp(), future.getAcceptToDoneTime(), responsePdu.getCommandStatus());
+                    }
+                    // a slot in the window was freed
+                    updateReady();
                     
                     // if this isn't null, we found a match to a request
                     int callerStateHint = future.getCallerStateHint();
@@ -637,19 +1223,27 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
                         return;
                     } else if (callerStateHint == WindowFuture.CALLER_NOT_WAITING) {
                         logger.trace("Caller not waiting for request: {}", future.getRequest()); 
+                        if (this.keepalive != null && this.keepalive.isKeepaliveRequest(future.getRequest())) {
+                            // our own enquire_link
+                            return;
+                        }
+                        if (completeResponseFuture(future)) {
+                            // sent with sendRequestAsync
+                            return;
+                        }
                         // this was an "expected" response - wrap it into an async response
-                        this.sessionHandler.fireExpectedPduResponseReceived(new DefaultPduAsyncResponse(future));
+                        fireExpectedPduResponseReceived(new DefaultPduAsyncResponse(future));
                         return;
                     } else {
                         logger.trace("Caller timed out waiting for request: {}", future.getRequest());
                         // we send the request, but caller gave up on it awhile ago
-                        this.sessionHandler.fireUnexpectedPduResponseReceived(responsePdu);
+                        fireUnexpectedPduResponseReceived(responsePdu);
                     }
                 } else {
                     this.countReceiveResponsePdu(responsePdu, 0, 0, 0);
                     
                     // original request either expired OR was completely unexpected
-                    this.sessionHandler.fireUnexpectedPduResponseReceived(responsePdu);
+                    fireUnexpectedPduResponseReceived(responsePdu);
                 }
             } catch (InterruptedException e) {
                 logger.warn("Interrupted while attempting to process response PDU and match it to a request via requesWindow: ", e);
@@ -658,6 +1252,127 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         }
     }
 
+    private void processPduRequest(PduRequest requestPdu) {
+        SmppSessionHandler handler = this.sessionHandler;
+        if (handler == null) {
+            // destroyed
+            logger.info("Session destroyed, dropping received request: {}", requestPdu);
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        PduResponse responsePdu = handler.firePduRequestReceived(requestPdu);
+
+        // if the handler returned a non-null object, then we need to send it back on the channel
+        if (responsePdu != null) {
+            try {
+                long responseTime = System.currentTimeMillis() - startTime;
+                this.countSendResponsePdu(responsePdu, responseTime, responseTime);
+
+                this.sendResponsePdu(responsePdu);
+            } catch (Exception e) {
+                logger.error("Unable to cleanly return response PDU: {}", e);
+            }
+        }
+    }
+
+    private void fireExpectedPduResponseReceived(final PduAsyncResponse pduAsyncResponse) {
+        if (this.handlerExecutor == null) {
+            this.sessionHandler.fireExpectedPduResponseReceived(pduAsyncResponse);
+        } else {
+            executeHandlerTask(new Runnable() {
+                @Override
+                public void run() {
+                    SmppSessionHandler handler = sessionHandler;
+                    if (handler == null) {
+                        logger.info("Session destroyed, dropping expected response: {}", pduAsyncResponse.getResponse());
+                        return;
+                    }
+                    handler.fireExpectedPduResponseReceived(pduAsyncResponse);
+                }
+            });
+        }
+    }
+
+    private void fireUnexpectedPduResponseReceived(final PduResponse responsePdu) {
+        if (this.handlerExecutor == null) {
+            this.sessionHandler.fireUnexpectedPduResponseReceived(responsePdu);
+        } else {
+            executeHandlerTask(new Runnable() {
+                @Override
+                public void run() {
+                    SmppSessionHandler handler = sessionHandler;
+                    if (handler == null) {
+                        logger.info("Session destroyed, dropping unexpected response: {}", responsePdu);
+                        return;
+                    }
+                    handler.fireUnexpectedPduResponseReceived(responsePdu);
+                }
+            });
+        }
+    }
+
+    /**
+     * Accounts for a received request handed off to the handler executor and
+     * pauses reading from the channel once the inbound high watermark is
+     * reached.  Since the handler executor usually has an unbounded queue,
+     * this is what keeps a fast remote endpoint from exhausting memory; once
+     * reading stops, TCP flow control pushes back on the sender.
+     * @return The weight to pass to inboundRelease once processed (0 if
+     *      watermarks are disabled)
+     */
+    private int inboundAcquire(PduRequest requestPdu) {
+        int high = configuration.getInboundHighWatermark();
+        if (high <= 0) {
+            return 0;
+        }
+        int weight = (configuration.isInboundWatermarkBytes() ? Math.max(requestPdu.getCommandLength(), 1) : 1);
+        synchronized (inboundLock) {
+            inboundPending += weight;
+            if (!readPaused && inboundPending >= high) {
+                logger.debug("Inbound high watermark [{}] reached, pausing reads", high);
+                readPaused = true;
+                readPauseStartTime = System.currentTimeMillis();
+                suspendReading();
+                if (hasCounters()) {
+                    counters.incrementReadPausesAndGet();
+                }
+            }
+        }
+        return weight;
+    }
+
+    private void inboundRelease(int weight) {
+        if (weight <= 0) {
+            return;
+        }
+        int high = configuration.getInboundHighWatermark();
+        int low = configuration.getInboundLowWatermark();
+        if (low < 0 || low >= high) {
+            low = high / 2;
+        }
+        synchronized (inboundLock) {
+            inboundPending -= weight;
+            if (readPaused && inboundPending <= low) {
+                logger.debug("Inbound low watermark [{}] reached, resuming reads", low);
+                readPaused = false;
+                if (hasCounters()) {
+                    counters.addReadPauseTimeAndGet(System.currentTimeMillis() - readPauseStartTime);
+                }
+                resumeReading();
+            }
+        }
+    }
+
+    private void executeHandlerTask(Runnable task) {
+        try {
+            this.handlerExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // better to process it on the I/O thread than to silently drop it
+            logger.warn("Handler executor rejected task, running it on the I/O thread instead: {}", e.getMessage());
+            task.run();
+        }
+    }
+
     @Override
     public void fireExceptionThrown(Throwable t) {
         if (t instanceof UnrecoverablePduException) {
@@ -692,19 +1407,29 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
             Map<Integer,WindowFuture<Integer,PduRequest,PduResponse>> requests = this.sendWindow.createSortedSnapshot();
             Throwable cause = new ClosedChannelException();
             for (WindowFuture<Integer,PduRequest,PduResponse> future : requests.values()) {
+                // was it sent with sendRequestAsync?
+                if (future.getRequest().getResponseFuture() != null) {
+                    try {
+                        future.fail(cause);
+                    } catch (Exception e) { }
+                    this.sendWindow.release(future);
+                    failResponseFuture(future.getRequest(), new SmppChannelException("Channel closed before a response was received", cause));
                 // is the caller waiting?
-                if (future.isCallerWaiting()) {
+                } else if (future.isCallerWaiting()) {
                     logger.debug("Caller waiting on request [{}], cancelling it with a channel closed exception", future.getKey());
                     try {
                         future.fail(cause);
                     } catch (Exception e) { }
+                    this.sendWindow.release(future);
                 }
             }
         }
 
+        requestRemoved(null);
+
         // we need to check if this "unexpected" or "expected" based on whether
         // this session's unbind() or close() methods triggered a close request
-        if (isUnbinding() || isClosed()) {
+        if ((isUnbinding() || isClosed()) && !this.closingUnresponsive) {
             // do nothing -- ignore it
             logger.debug("Unbind/close was requested, ignoring channelClosed event");
         } else {
@@ -713,9 +1438,50 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
     }
 
     @Override
-    public void expired(WindowFuture<Integer, PduRequest, PduResponse> future) {
+    public void fireChannelInterestChanged() {
+        // the channel may have become writable (or not)
+        updateReady();
+    }
+
+    @Override
+    public void expired(final WindowFuture<Integer, PduRequest, PduResponse> future) {
+        if (this.adaptiveWindowSize != null) {
+            this.adaptiveWindowSize.requestExpired(future.getAcceptTimestamp());
+        }
         this.countSendRequestPduExpired(future.getRequest());
-        this.sessionHandler.firePduRequestExpired(future.getRequest());
+        updateReady();
+        if (this.keepalive != null && this.keepalive.isKeepaliveRequest(future.getRequest())) {
+            // our own enquire_link, the keepalive counts it as missed
+            return;
+        }
+        // this may be the (shared) expiry timer thread, so user code such as
+        // the session handler and response listeners never runs on it
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (failResponseFuture(future.getRequest(), new SmppTimeoutException("Request [" + future.getRequest().getName() + "] with seqNum [" + future.getKey() + "] expired"))) {
+                    return;
+                }
+                SmppSessionHandler handler = sessionHandler;
+                if (handler == null) {
+                    logger.info("Session destroyed, dropping expired request: {}", future.getRequest());
+                    return;
+                }
+                handler.firePduRequestExpired(future.getRequest());
+            }
+        };
+        if (this.handlerExecutor != null) {
+            executeHandlerTask(task);
+        } else if (this.monitorExecutor != null) {
+            try {
+                this.monitorExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Monitor executor rejected expired request, firing it on this thread instead: {}", e.getMessage());
+                task.run();
+            }
+        } else {
+            task.run();
+        }
     }
 
     private void countSendRequestPdu(PduRequest pdu) {
@@ -960,6 +1726,33 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         return this.sendWindow.getMaxSize();
     }
 
+    /**
+     * Gets a moving average of the time between a request being accepted
+     * into the send window and its response being received.  Recent responses
+     * are weighted more, so it tracks changes in latency within about a dozen
+     * responses.
+     * @return The recent response time in milliseconds or -1 if no response
+     *      has been received yet
+     */
+    @Override
+    public long getRecentResponseTime() {
+        long scaled = this.scaledRecentResponseTime;
+        return (scaled < 0 ? -1 : (scaled >> 3));
+    }
+
+    @Override
+    public boolean isAdaptiveWindowEnabled() {
+        return (this.adaptiveWindowSize != null);
+    }
+
+    @Override
+    public int getEffectiveWindowSize() {
+        if (this.adaptiveWindowSize != null) {
+            return this.adaptiveWindowSize.getSize();
+        }
+        return this.sendWindow.getMaxSize();
+    }
+
     @Override
     public int getWindowSize() {
         return this.sendWindow.getSize();
@@ -1022,6 +1815,12 @@ public class DefaultSmppSession implements SmppServerSession, SmppSessionChannel
         return hasCounters() ? this.counters.getTxSubmitSM().toString() : null;
     }
     
+    @Override
+    public String getWriteCoalescingCounter() {
+        SmppSessionWriteCoalescer writeCoalescer = (SmppSessionWriteCoalescer)this.channel.getPipeline().get(SmppChannelConstants.PIPELINE_SESSION_WRITE_COALESCER_NAME);
+        return (writeCoalescer != null ? writeCoalescer.toString() : null);
+    }
+    
     @Override
     public void enableLogBytes() {
         this.configuration.getLoggingOptions().setLogBytes(true);
@@ -23,6 +23,7 @@ package com.cloudhopper.smpp.impl;
 import com.cloudhopper.smpp.SmppSessionCounters;
 import com.cloudhopper.smpp.util.ConcurrentCommandCounter;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Default implementation of a SmppServerCounters interface.
@@ -39,6 +40,8 @@ public class DefaultSmppSessionCounters implements SmppSessionCounters {
     private ConcurrentCommandCounter rxDeliverSM;
     private ConcurrentCommandCounter rxEnquireLink;
     private ConcurrentCommandCounter rxDataSM;
+    private AtomicInteger readPauses;
+    private AtomicLong readPauseTime;
     
     public DefaultSmppSessionCounters() {
         this.txSubmitSM = new ConcurrentCommandCounter();
@@ -49,6 +52,8 @@ public class DefaultSmppSessionCounters implements SmppSessionCounters {
         this.rxDeliverSM = new ConcurrentCommandCounter();
         this.rxEnquireLink = new ConcurrentCommandCounter();
         this.rxDataSM = new ConcurrentCommandCounter();
+        this.readPauses = new AtomicInteger(0);
+        this.readPauseTime = new AtomicLong(0);
     }
     
     @Override
@@ -61,6 +66,8 @@ public class DefaultSmppSessionCounters implements SmppSessionCounters {
         this.rxDeliverSM.reset();
         this.rxEnquireLink.reset();
         this.rxDataSM.reset();
+        this.readPauses.set(0);
+        this.readPauseTime.set(0);
     }
 
     @Override
@@ -102,4 +109,22 @@ public class DefaultSmppSessionCounters implements SmppSessionCounters {
     public ConcurrentCommandCounter getTxSubmitSM() {
         return txSubmitSM;
     }
+
+    @Override
+    public int getReadPauses() {
+        return this.readPauses.get();
+    }
+
+    public int incrementReadPausesAndGet() {
+        return this.readPauses.incrementAndGet();
+    }
+
+    @Override
+    public long getReadPauseTime() {
+        return this.readPauseTime.get();
+    }
+
+    public long addReadPauseTimeAndGet(long time) {
+        return this.readPauseTime.addAndGet(time);
+    }
 }
@@ -0,0 +1,156 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a bound session alive by sending an enquire_link whenever nothing was
+ * received from the remote endpoint for the enquire link interval.  Each
+ * check is a single timeout on a (shared) hashed wheel timer, so thousands of
+ * sessions don't need thousands of threads or scheduled executor tasks.  The
+ * enquire_link is sent asynchronously through the send window with a
+ * non-blocking write (regardless of the session configuration, so the timer
+ * thread never waits on a write or a window slot) and its response is
+ * consumed here, not passed on to the session handler.  If
+ * nothing was received for the max number of missed enquire links in a row,
+ * the session is closed and its handler told the channel unexpectedly closed.
+ * Nothing is counted as missed while reading is deliberately suspended.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class EnquireLinkKeepalive implements TimerTask {
+    private static final Logger logger = LoggerFactory.getLogger(EnquireLinkKeepalive.class);
+
+    private final DefaultSmppSession session;
+    private final Timer timer;
+    private final long interval;
+    private final int maxMissed;
+    // the enquire_link sent and not yet answered by anything
+    private PduRequest pendingRequest;
+    private int missed;
+    private volatile Timeout timeout;
+    private volatile boolean stopped;
+
+    public EnquireLinkKeepalive(DefaultSmppSession session, Timer timer, long interval, int maxMissed) {
+        this.session = session;
+        this.timer = timer;
+        this.interval = interval;
+        this.maxMissed = Math.max(1, maxMissed);
+        this.pendingRequest = null;
+        this.missed = 0;
+        this.timeout = null;
+        this.stopped = false;
+    }
+
+    public void start() {
+        schedule(this.interval);
+    }
+
+    public void stop() {
+        this.stopped = true;
+        Timeout t = this.timeout;
+        if (t != null) {
+            t.cancel();
+        }
+    }
+
+    /**
+     * Checks whether the request was sent by this keepalive (its response or
+     * expiry is then none of the session handler's business).
+     * @param request The request
+     * @return True if its an enquire_link sent by this keepalive
+     */
+    public boolean isKeepaliveRequest(PduRequest request) {
+        return (request != null && request.getReferenceObject() == this);
+    }
+
+    public int getMissedCount() {
+        return this.missed;
+    }
+
+    private void schedule(long delay) {
+        if (!this.stopped) {
+            this.timeout = this.timer.newTimeout(this, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void run(Timeout timeout) throws Exception {
+        if (this.stopped || timeout.isCancelled() || !this.session.isBound()) {
+            return;
+        }
+
+        if (this.session.isReadingSuspended()) {
+            // reads are deliberately paused (backpressure), so nothing can be
+            // received and a quiet channel says nothing about the remote endpoint
+            this.missed = 0;
+            this.pendingRequest = null;
+            schedule(this.interval);
+            return;
+        }
+
+        // idle since the last PDU received or since reading resumed
+        long lastActivity = Math.max(this.session.getLastReceivedTime(), this.session.getReadResumedTime());
+        long idleTime = System.currentTimeMillis() - lastActivity;
+        if (idleTime < this.interval) {
+            // traffic flowed recently, no need to ping (check again once idle long enough)
+            this.missed = 0;
+            this.pendingRequest = null;
+            schedule(this.interval - idleTime);
+            return;
+        }
+
+        // nothing received since the last enquire_link (or the window was full)
+        boolean windowFull = (this.session.getSmppSendWindow().getSize() >= this.session.getEffectiveWindowSize());
+        if (this.pendingRequest != null || windowFull) {
+            this.missed++;
+            if (this.missed >= this.maxMissed) {
+                logger.warn("Session [{}] missed [{}] enquire_link responses in a row, closing it", this.session.getConfiguration().getName(), this.missed);
+                this.stopped = true;
+                this.session.closeUnresponsive();
+                return;
+            }
+        }
+
+        // never block the timer thread on a full window
+        if (!windowFull) {
+            EnquireLink request = new EnquireLink();
+            request.setReferenceObject(this);
+            this.pendingRequest = request;
+            try {
+                // no waiting for a window slot or the write
+                this.session.sendRequestPdu(request, 0, false, true);
+            } catch (Exception e) {
+                logger.warn("Unable to send enquire_link on session [{}]: {}", this.session.getConfiguration().getName(), e.getMessage());
+            }
+        }
+        schedule(this.interval);
+    }
+
+}
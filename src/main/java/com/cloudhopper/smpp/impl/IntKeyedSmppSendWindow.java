@@ -0,0 +1,538 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.windowing.DuplicateKeyException;
+import com.cloudhopper.commons.util.windowing.OfferTimeoutException;
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.commons.util.windowing.WindowListener;
+import com.cloudhopper.smpp.SmppSendWindow;
+import com.cloudhopper.smpp.SmppSendWindowFactory;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Send window keyed directly by the int sequence number.  Pending requests are
+ * stored in a power of two sized array of slots indexed by
+ * (sequenceNumber % capacity), so no Integer keys or map nodes are allocated
+ * per request.  The capacity is at least twice the max window size, so with
+ * sequence numbers handed out in order, each slot almost always holds at most
+ * one request (the rare collision is chained in the same slot).  Slots are
+ * guarded by a small set of striped locks rather than one lock for the whole
+ * window, so offers from producer threads and completions on the I/O thread
+ * rarely contend.  Free slots are tracked with a semaphore.
+ * <p>
+ * Expired requests are either found by periodically scanning the window on a
+ * monitor executor, or (with an expiry timer) each request with an expire
+ * timeout gets its own timeout on a wheel timer that is cancelled as soon as
+ * the request is done, so only requests that actually expire cost anything.
+ * <p>
+ * To use it, set IntKeyedSmppSendWindow.FACTORY as the send window factory
+ * of the session configuration.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class IntKeyedSmppSendWindow implements SmppSendWindow {
+    private static final Logger logger = LoggerFactory.getLogger(IntKeyedSmppSendWindow.class);
+
+    static public final SmppSendWindowFactory FACTORY = new SmppSendWindowFactory() {
+        @Override
+        public SmppSendWindow createSendWindow(SmppSessionConfiguration configuration, ScheduledExecutorService monitorExecutor, Timer expiryTimer, WindowListener<Integer,PduRequest,PduResponse> listener) {
+            if (expiryTimer != null && configuration.isRequestExpiryTimerEnabled()) {
+                return new IntKeyedSmppSendWindow(configuration.getWindowSize(), expiryTimer, listener);
+            } else if (monitorExecutor != null && configuration.getWindowMonitorInterval() > 0) {
+                return new IntKeyedSmppSendWindow(configuration.getWindowSize(), monitorExecutor, configuration.getWindowMonitorInterval(), listener);
+            } else {
+                return new IntKeyedSmppSendWindow(configuration.getWindowSize());
+            }
+        }
+    };
+
+    static private final int STRIPES = 16;
+
+    private final int maxSize;
+    private final SlotFuture[] slots;
+    private final int mask;
+    private final Object[] locks;
+    private final Semaphore freeSlots;
+    private final AtomicInteger size;
+    private final WindowListener<Integer,PduRequest,PduResponse> listener;
+    private final ScheduledFuture<?> monitorHandle;
+    private final Timer expiryTimer;
+    private volatile boolean destroyed;
+
+    public IntKeyedSmppSendWindow(int maxSize) {
+        this(maxSize, null, 0, null, null);
+    }
+
+    /**
+     * Creates a new window whose requests expire on a timer.
+     * @param maxSize The max number of pending requests
+     * @param expiryTimer The timer to expire requests on
+     * @param listener The listener notified of expired requests
+     */
+    public IntKeyedSmppSendWindow(int maxSize, Timer expiryTimer, WindowListener<Integer,PduRequest,PduResponse> listener) {
+        this(maxSize, null, 0, expiryTimer, listener);
+    }
+
+    /**
+     * Creates a new window that is monitored for expired requests.
+     * @param maxSize The max number of pending requests
+     * @param monitorExecutor The executor to check for expired requests under
+     *      or null to disable monitoring
+     * @param monitorInterval The interval in milliseconds between checks
+     * @param listener The listener notified of expired requests
+     */
+    public IntKeyedSmppSendWindow(int maxSize, ScheduledExecutorService monitorExecutor, long monitorInterval, WindowListener<Integer,PduRequest,PduResponse> listener) {
+        this(maxSize, monitorExecutor, monitorInterval, null, listener);
+    }
+
+    private IntKeyedSmppSendWindow(int maxSize, ScheduledExecutorService monitorExecutor, long monitorInterval, Timer expiryTimer, WindowListener<Integer,PduRequest,PduResponse> listener) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be > 0");
+        }
+        this.maxSize = maxSize;
+        int capacity = STRIPES;
+        while (capacity < (maxSize << 1)) {
+            capacity <<= 1;
+        }
+        this.slots = new SlotFuture[capacity];
+        this.mask = capacity - 1;
+        this.locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.locks[i] = new Object();
+        }
+        this.freeSlots = new Semaphore(maxSize);
+        this.size = new AtomicInteger(0);
+        this.listener = listener;
+        this.expiryTimer = expiryTimer;
+        if (monitorExecutor != null && monitorInterval > 0) {
+            this.monitorHandle = monitorExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    expirePending();
+                }
+            }, monitorInterval, monitorInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.monitorHandle = null;
+        }
+    }
+
+    private Object lockFor(int index) {
+        return this.locks[index & (STRIPES - 1)];
+    }
+
+    @Override
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size.get();
+    }
+
+    @Override
+    public WindowFuture<Integer,PduRequest,PduResponse> offer(int sequenceNumber, PduRequest request, long offerTimeoutMillis, long expireTimeoutMillis, boolean callerWaitingHint) throws DuplicateKeyException, OfferTimeoutException, InterruptedException {
+        long offerTimestamp = System.currentTimeMillis();
+        if (!this.freeSlots.tryAcquire(offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new OfferTimeoutException("Unable to accept offer within [" + offerTimeoutMillis + " ms] (window full)");
+        }
+        if (this.destroyed) {
+            // pass the slot on so any other pending offer wakes up too
+            this.freeSlots.release();
+            throw new OfferTimeoutException("Unable to accept offer (window destroyed)");
+        }
+        long acceptTimestamp = System.currentTimeMillis();
+        long expireTimestamp = (expireTimeoutMillis > 0 ? acceptTimestamp + expireTimeoutMillis : 0);
+        int index = sequenceNumber & this.mask;
+        SlotFuture future = null;
+        synchronized (lockFor(index)) {
+            for (SlotFuture f = this.slots[index]; f != null; f = f.next) {
+                if (f.sequenceNumber == sequenceNumber) {
+                    this.freeSlots.release();
+                    throw new DuplicateKeyException("The key [" + sequenceNumber + "] already exists in the window");
+                }
+            }
+            int windowSize = this.size.incrementAndGet();
+            future = new SlotFuture(this, sequenceNumber, request, (callerWaitingHint ? WindowFuture.CALLER_WAITING : WindowFuture.CALLER_NOT_WAITING), offerTimeoutMillis, windowSize, offerTimestamp, acceptTimestamp, expireTimestamp);
+            future.next = this.slots[index];
+            this.slots[index] = future;
+        }
+        if (this.expiryTimer != null && expireTimeoutMillis > 0) {
+            future.setExpiryTimeout(this.expiryTimer.newTimeout(future, expireTimeoutMillis, TimeUnit.MILLISECONDS));
+        }
+        return future;
+    }
+
+    @Override
+    public WindowFuture<Integer,PduRequest,PduResponse> complete(int sequenceNumber, PduResponse response) throws InterruptedException {
+        SlotFuture future = remove(sequenceNumber);
+        if (future != null) {
+            future.finish(response, null, false, System.currentTimeMillis());
+        }
+        return future;
+    }
+
+    private SlotFuture remove(int sequenceNumber) {
+        int index = sequenceNumber & this.mask;
+        synchronized (lockFor(index)) {
+            SlotFuture prev = null;
+            for (SlotFuture f = this.slots[index]; f != null; f = f.next) {
+                if (f.sequenceNumber == sequenceNumber) {
+                    unlink(index, prev, f);
+                    return f;
+                }
+                prev = f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the exact future (not just one with the same key) if its still
+     * pending.  Used when a future is completed, failed or cancelled directly.
+     */
+    boolean remove(SlotFuture future) {
+        int index = future.sequenceNumber & this.mask;
+        synchronized (lockFor(index)) {
+            SlotFuture prev = null;
+            for (SlotFuture f = this.slots[index]; f != null; f = f.next) {
+                if (f == future) {
+                    unlink(index, prev, f);
+                    return true;
+                }
+                prev = f;
+            }
+        }
+        return false;
+    }
+
+    // must be called while holding the lock of the slot
+    private void unlink(int index, SlotFuture prev, SlotFuture f) {
+        if (prev == null) {
+            this.slots[index] = f.next;
+        } else {
+            prev.next = f.next;
+        }
+        f.next = null;
+        this.size.decrementAndGet();
+        this.freeSlots.release();
+    }
+
+    private ArrayList<SlotFuture> removeAll(boolean expiredOnly, long now) {
+        ArrayList<SlotFuture> removed = new ArrayList<SlotFuture>();
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (this.locks[stripe]) {
+                for (int index = stripe; index < this.slots.length; index += STRIPES) {
+                    SlotFuture prev = null;
+                    SlotFuture f = this.slots[index];
+                    while (f != null) {
+                        SlotFuture next = f.next;
+                        if (!expiredOnly || (f.expireTimestamp > 0 && f.expireTimestamp <= now)) {
+                            unlink(index, prev, f);
+                            removed.add(f);
+                        } else {
+                            prev = f;
+                        }
+                        f = next;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void expirePending() {
+        try {
+            long now = System.currentTimeMillis();
+            for (SlotFuture future : removeAll(true, now)) {
+                future.finish(null, null, true, now);
+                if (this.listener != null) {
+                    this.listener.expired(future);
+                }
+            }
+        } catch (Throwable t) {
+            // never let an exception cancel the scheduled monitor
+            logger.error("Unable to expire requests in window: {}", t);
+        }
+    }
+
+    // called by the expiry timer
+    void expire(SlotFuture future) {
+        long now = System.currentTimeMillis();
+        if (remove(future) && future.finish(null, null, true, now) && this.listener != null) {
+            this.listener.expired(future);
+        }
+    }
+
+    @Override
+    public void release(WindowFuture<Integer,PduRequest,PduResponse> future) {
+        // noop: a future cancels its own expiry timeout once done
+    }
+
+    @Override
+    public Map<Integer,WindowFuture<Integer,PduRequest,PduResponse>> createSortedSnapshot() {
+        TreeMap<Integer,WindowFuture<Integer,PduRequest,PduResponse>> snapshot = new TreeMap<Integer,WindowFuture<Integer,PduRequest,PduResponse>>();
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            synchronized (this.locks[stripe]) {
+                for (int index = stripe; index < this.slots.length; index += STRIPES) {
+                    for (SlotFuture f = this.slots[index]; f != null; f = f.next) {
+                        snapshot.put(f.sequenceNumber, f);
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void destroy() {
+        this.destroyed = true;
+        if (this.monitorHandle != null) {
+            this.monitorHandle.cancel(false);
+        }
+        long now = System.currentTimeMillis();
+        for (SlotFuture future : removeAll(false, now)) {
+            future.finish(null, null, true, now);
+        }
+        // wakes up a pending offer, which passes it on to the next one
+        this.freeSlots.release();
+    }
+
+    /**
+     * Future of a request pending in an IntKeyedSmppSendWindow.  The "next"
+     * field chains futures sharing the same slot and is guarded by the lock of
+     * that slot.  Also the task run by the expiry timer (if any).
+     */
+    static final class SlotFuture implements WindowFuture<Integer,PduRequest,PduResponse>, TimerTask {
+        private final IntKeyedSmppSendWindow window;
+        private final int sequenceNumber;
+        private final PduRequest request;
+        private final AtomicInteger callerStateHint;
+        private final long originalOfferTimeoutMillis;
+        private final int windowSize;
+        private final long offerTimestamp;
+        private final long acceptTimestamp;
+        private final long expireTimestamp;
+        // set by the first thread to complete, fail or cancel this future
+        private final AtomicBoolean finishing;
+        private final CountDownLatch doneLatch;
+        private volatile boolean done;
+        private volatile PduResponse response;
+        private volatile Throwable cause;
+        private volatile boolean cancelled;
+        private volatile long doneTimestamp;
+        private volatile Timeout expiryTimeout;
+        private SlotFuture next;
+
+        SlotFuture(IntKeyedSmppSendWindow window, int sequenceNumber, PduRequest request, int callerStateHint, long originalOfferTimeoutMillis, int windowSize, long offerTimestamp, long acceptTimestamp, long expireTimestamp) {
+            this.window = window;
+            this.sequenceNumber = sequenceNumber;
+            this.request = request;
+            this.callerStateHint = new AtomicInteger(callerStateHint);
+            this.originalOfferTimeoutMillis = originalOfferTimeoutMillis;
+            this.windowSize = windowSize;
+            this.offerTimestamp = offerTimestamp;
+            this.acceptTimestamp = acceptTimestamp;
+            this.expireTimestamp = expireTimestamp;
+            this.finishing = new AtomicBoolean(false);
+            this.doneLatch = new CountDownLatch(1);
+        }
+
+        /**
+         * Marks this future as done.  Only the first call has any effect.
+         */
+        boolean finish(PduResponse response, Throwable cause, boolean cancelled, long doneTimestamp) {
+            if (!this.finishing.compareAndSet(false, true)) {
+                return false;
+            }
+            this.response = response;
+            this.cause = cause;
+            this.cancelled = cancelled;
+            this.doneTimestamp = doneTimestamp;
+            this.done = true;
+            this.doneLatch.countDown();
+            Timeout t = this.expiryTimeout;
+            if (t != null) {
+                t.cancel();
+            }
+            return true;
+        }
+
+        void setExpiryTimeout(Timeout expiryTimeout) {
+            this.expiryTimeout = expiryTimeout;
+            // may have been done before the timeout was set
+            if (this.done) {
+                expiryTimeout.cancel();
+            }
+        }
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            if (!timeout.isCancelled()) {
+                this.window.expire(this);
+            }
+        }
+
+        public Integer getKey() {
+            return this.sequenceNumber;
+        }
+
+        public PduRequest getRequest() {
+            return this.request;
+        }
+
+        public PduResponse getResponse() {
+            return this.response;
+        }
+
+        public Throwable getCause() {
+            return this.cause;
+        }
+
+        public int getCallerStateHint() {
+            return this.callerStateHint.get();
+        }
+
+        public void setCallerStateHint(int callerState) {
+            this.callerStateHint.set(callerState);
+        }
+
+        public boolean isCallerWaiting() {
+            return (this.callerStateHint.get() == CALLER_WAITING);
+        }
+
+        public int getWindowSize() {
+            return this.windowSize;
+        }
+
+        public long getOriginalOfferTimeoutMillis() {
+            return this.originalOfferTimeoutMillis;
+        }
+
+        public boolean hasExpireTimestamp() {
+            return (this.expireTimestamp > 0);
+        }
+
+        public long getExpireTimestamp() {
+            return this.expireTimestamp;
+        }
+
+        public long getOfferTimestamp() {
+            return this.offerTimestamp;
+        }
+
+        public long getAcceptTimestamp() {
+            return this.acceptTimestamp;
+        }
+
+        public long getOfferToAcceptTime() {
+            return (this.acceptTimestamp - this.offerTimestamp);
+        }
+
+        public boolean hasDoneTimestamp() {
+            return this.done;
+        }
+
+        public long getDoneTimestamp() {
+            return this.doneTimestamp;
+        }
+
+        public long getAcceptToDoneTime() {
+            return (this.done ? this.doneTimestamp - this.acceptTimestamp : -1);
+        }
+
+        public long getOfferToDoneTime() {
+            return (this.done ? this.doneTimestamp - this.offerTimestamp : -1);
+        }
+
+        public boolean isDone() {
+            return this.done;
+        }
+
+        public boolean isSuccess() {
+            return (this.done && this.response != null);
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        public void complete(PduResponse response) {
+            complete(response, System.currentTimeMillis());
+        }
+
+        public void complete(PduResponse response, long doneTimestamp) {
+            this.window.remove(this);
+            finish(response, null, false, doneTimestamp);
+        }
+
+        public void fail(Throwable t) {
+            fail(t, System.currentTimeMillis());
+        }
+
+        public void fail(Throwable t, long doneTimestamp) {
+            this.window.remove(this);
+            finish(null, t, false, doneTimestamp);
+        }
+
+        public void cancel() {
+            cancel(System.currentTimeMillis());
+        }
+
+        public void cancel(long doneTimestamp) {
+            this.window.remove(this);
+            finish(null, null, true, doneTimestamp);
+        }
+
+        public boolean await() throws InterruptedException {
+            return await(this.originalOfferTimeoutMillis);
+        }
+
+        public boolean await(long timeoutMillis) throws InterruptedException {
+            // if someone calls this method, make sure the caller is flagged as waiting
+            this.callerStateHint.compareAndSet(CALLER_NOT_WAITING, CALLER_WAITING);
+            if (this.doneLatch.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            this.callerStateHint.set(CALLER_WAITING_TIMEOUT);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,329 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.PduRequestSubscriber;
+import com.cloudhopper.smpp.PduRequestSubscription;
+import com.cloudhopper.smpp.SmppSessionHandler;
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.type.RecoverablePduException;
+import com.cloudhopper.smpp.type.SmppChannelException;
+import com.cloudhopper.smpp.type.UnrecoverablePduException;
+import java.util.ArrayDeque;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session handler that publishes the requests received by a session (e.g.
+ * deliver_sm) to a subscriber as fast as the subscriber asks for them.
+ * Rather than buffering requests the subscriber isn't ready for, reading
+ * from the channel is suspended (DefaultSmppSession.suspendReading()) as soon as
+ * there's no more demand, so a slow subscriber pushes back on the remote
+ * endpoint via the TCP window.  Only the few requests already decoded from
+ * the last read are buffered.
+ * <p>
+ * Enquire links are answered right away.  Every other request is published
+ * and the subscriber must send back its response.  All other session events
+ * are passed on to the delegate handler.  Use it as the session handler when
+ * binding, then call setSession with the bound session and subscribe.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class PduRequestPublisher implements SmppSessionHandler {
+    private static final Logger logger = LoggerFactory.getLogger(PduRequestPublisher.class);
+
+    private final SmppSessionHandler delegate;
+    // guards all the fields below
+    private final Object lock;
+    private final ArrayDeque<PduRequest> buffer;
+    private DefaultSmppSession session;
+    private PduRequestSubscriber subscriber;
+    private long demand;
+    private boolean draining;
+    private boolean paused;
+    private boolean cancelled;
+    private boolean completed;
+    private Throwable error;
+
+    public PduRequestPublisher() {
+        this(null);
+    }
+
+    /**
+     * Creates a new publisher.
+     * @param delegate The handler for all other session events or null for
+     *      a default handler
+     */
+    public PduRequestPublisher(SmppSessionHandler delegate) {
+        this.delegate = (delegate == null ? new DefaultSmppSessionHandler(logger) : delegate);
+        this.lock = new Object();
+        this.buffer = new ArrayDeque<PduRequest>();
+        this.session = null;
+        this.subscriber = null;
+        this.demand = 0;
+        this.draining = false;
+        this.paused = false;
+        this.cancelled = false;
+        this.completed = false;
+        this.error = null;
+    }
+
+    /**
+     * Sets the session whose channel reads are suspended while there's no
+     * demand.  Requests received before this is set are buffered.
+     * @param session The session this is the handler of
+     */
+    public void setSession(DefaultSmppSession session) {
+        synchronized (this.lock) {
+            this.session = session;
+        }
+        drain();
+    }
+
+    /**
+     * Subscribes to the requests received by the session.  Only one
+     * subscriber is permitted.
+     * @param subscriber The subscriber
+     * @throws IllegalStateException If already subscribed to
+     */
+    public void subscribe(PduRequestSubscriber subscriber) {
+        synchronized (this.lock) {
+            if (this.subscriber != null || this.cancelled) {
+                throw new IllegalStateException("Only one subscriber is permitted");
+            }
+            this.subscriber = subscriber;
+        }
+        subscriber.onSubscribe(new Subscription());
+        Throwable t = null;
+        synchronized (this.lock) {
+            t = this.error;
+        }
+        if (t != null) {
+            subscriber.onError(t);
+        }
+    }
+
+    /**
+     * Completes the publisher (e.g. once the session is unbound).  The
+     * subscriber's onComplete is called once it has received all the requests
+     * still buffered.
+     */
+    public void complete() {
+        synchronized (this.lock) {
+            this.completed = true;
+        }
+        drain();
+    }
+
+    /**
+     * Gets the number of received requests waiting for demand.
+     * @return The number of buffered requests
+     */
+    public int getBufferedCount() {
+        synchronized (this.lock) {
+            return this.buffer.size();
+        }
+    }
+
+    public boolean isPaused() {
+        synchronized (this.lock) {
+            return this.paused;
+        }
+    }
+
+    /**
+     * Passes buffered requests on to the subscriber while there's demand, then
+     * suspends or resumes reading.  Only one thread drains at a time (a
+     * request(n) from within onNext just adds to the demand).
+     */
+    private void drain() {
+        synchronized (this.lock) {
+            if (this.draining) {
+                return;
+            }
+            this.draining = true;
+        }
+        while (true) {
+            PduRequest request = null;
+            PduRequestSubscriber s = null;
+            synchronized (this.lock) {
+                s = this.subscriber;
+                if (s != null && this.demand > 0 && !this.buffer.isEmpty()) {
+                    request = this.buffer.poll();
+                    if (this.demand != Long.MAX_VALUE) {
+                        this.demand--;
+                    }
+                } else if (this.cancelled && !this.buffer.isEmpty()) {
+                    request = this.buffer.poll();
+                } else {
+                    updateReadable();
+                    this.draining = false;
+                    if (s != null && this.completed && this.buffer.isEmpty()) {
+                        // signal it just once
+                        this.subscriber = null;
+                    } else {
+                        return;
+                    }
+                }
+            }
+            if (request == null) {
+                s.onComplete();
+                return;
+            }
+            if (s != null) {
+                try {
+                    s.onNext(request);
+                } catch (Throwable t) {
+                    logger.warn("Subscriber threw an exception in onNext: {}", t);
+                }
+            } else {
+                // cancelled, hand it to the delegate (and send back its response)
+                passToDelegate(request);
+            }
+        }
+    }
+
+    // must be called while holding the lock
+    private void updateReadable() {
+        boolean wanted = (this.cancelled || (this.subscriber != null && this.demand > 0));
+        if (this.session == null || this.paused == !wanted) {
+            return;
+        }
+        this.paused = !wanted;
+        logger.debug("{} reading from channel", (this.paused ? "Suspending" : "Resuming"));
+        if (wanted) {
+            this.session.resumeReading();
+        } else {
+            this.session.suspendReading();
+        }
+    }
+
+    private void passToDelegate(PduRequest request) {
+        PduResponse response = this.delegate.firePduRequestReceived(request);
+        DefaultSmppSession s = null;
+        synchronized (this.lock) {
+            s = this.session;
+        }
+        if (response != null && s != null) {
+            try {
+                s.sendResponsePdu(response);
+            } catch (Exception e) {
+                logger.error("Unable to cleanly return response PDU: {}", e);
+            }
+        }
+    }
+
+    @Override
+    public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+        if (pduRequest instanceof EnquireLink) {
+            return pduRequest.createResponse();
+        }
+        synchronized (this.lock) {
+            if (this.cancelled && this.buffer.isEmpty()) {
+                // nothing to keep in order with
+                return this.delegate.firePduRequestReceived(pduRequest);
+            }
+            this.buffer.add(pduRequest);
+        }
+        drain();
+        return null;
+    }
+
+    @Override
+    public void fireChannelUnexpectedlyClosed() {
+        PduRequestSubscriber s = null;
+        Throwable t = new SmppChannelException("Channel unexpectedly closed");
+        synchronized (this.lock) {
+            this.error = t;
+            s = this.subscriber;
+        }
+        if (s != null) {
+            s.onError(t);
+        }
+        this.delegate.fireChannelUnexpectedlyClosed();
+    }
+
+    @Override
+    public void firePduRequestExpired(PduRequest pduRequest) {
+        this.delegate.firePduRequestExpired(pduRequest);
+    }
+
+    @Override
+    public void fireExpectedPduResponseReceived(PduAsyncResponse pduAsyncResponse) {
+        this.delegate.fireExpectedPduResponseReceived(pduAsyncResponse);
+    }
+
+    @Override
+    public void fireUnexpectedPduResponseReceived(PduResponse pduResponse) {
+        this.delegate.fireUnexpectedPduResponseReceived(pduResponse);
+    }
+
+    @Override
+    public void fireUnrecoverablePduException(UnrecoverablePduException e) {
+        this.delegate.fireUnrecoverablePduException(e);
+    }
+
+    @Override
+    public void fireRecoverablePduException(RecoverablePduException e) {
+        this.delegate.fireRecoverablePduException(e);
+    }
+
+    @Override
+    public void fireUnknownThrowable(Throwable t) {
+        this.delegate.fireUnknownThrowable(t);
+    }
+
+    @Override
+    public String lookupResultMessage(int commandStatus) {
+        return this.delegate.lookupResultMessage(commandStatus);
+    }
+
+    @Override
+    public String lookupTlvTagName(short tag) {
+        return this.delegate.lookupTlvTagName(tag);
+    }
+
+    private class Subscription implements PduRequestSubscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Number of requested PDUs must be > 0");
+            }
+            synchronized (lock) {
+                demand = (demand + n < 0 ? Long.MAX_VALUE : demand + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (lock) {
+                cancelled = true;
+                subscriber = null;
+            }
+            drain();
+        }
+    }
+
+}
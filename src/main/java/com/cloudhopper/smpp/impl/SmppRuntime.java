@@ -0,0 +1,179 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.util.DaemonExecutors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.channel.socket.nio.NioClientBossPool;
+import org.jboss.netty.channel.socket.nio.NioServerBossPool;
+import org.jboss.netty.channel.socket.nio.NioWorkerPool;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.ThreadNameDeterminer;
+import org.jboss.netty.util.Timer;
+
+/**
+ * Threads and timers that any number of DefaultSmppClient and
+ * DefaultSmppServer instances can share, so the total number of threads
+ * scales with the number of cores rather than the number of clients/servers.
+ * Holds a single pool of NIO workers (every connection is assigned to one of
+ * them), the boss threads that connect and accept, one wheel timer (write
+ * timeouts, enquire_link keepalive, request expiry, bind and connect
+ * timeouts) and an optional monitor executor.
+ * <br>
+ * Clients and servers created with a runtime don't release any of these
+ * when they are destroyed; call destroy() on the runtime once all of them
+ * are.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class SmppRuntime {
+
+    // tick of the wheel timers (a timeout fires up to about 2 ticks late, so
+    // Netty's default 100 ms tick is too coarse for short bind timeouts)
+    static public final long TIMER_TICK_MILLIS = 10;
+
+    private final ExecutorService executor;
+    private final NioWorkerPool workerPool;
+    private final Timer timer;
+    private final ScheduledExecutorService monitorExecutor;
+    // created on first use (each starts a thread)
+    private NioClientBossPool clientBossPool;
+    private NioServerBossPool serverBossPool;
+    private boolean destroyed;
+
+    /**
+     * Creates a new runtime with 2x the number of available processors as
+     * I/O workers and monitoring disabled.
+     */
+    public SmppRuntime() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Creates a new runtime with monitoring disabled.
+     * @param workerCount The number of NIO worker threads shared by every
+     *      connection
+     */
+    public SmppRuntime(int workerCount) {
+        this(DaemonExecutors.newCachedDaemonThreadPool(), workerCount, null);
+    }
+
+    /**
+     * Creates a new runtime.
+     * @param executor The executor that boss and I/O worker threads will be
+     *      executed with. An Executors.newCachedDaemonThreadPool() is
+     *      recommended. It's shut down when the runtime is destroyed.
+     * @param workerCount The number of NIO worker threads shared by every
+     *      connection
+     * @param monitorExecutor The scheduled executor that all sessions will
+     *      share to monitor themselves and expire requests. If null monitoring
+     *      will be disabled.
+     */
+    public SmppRuntime(ExecutorService executor, int workerCount, ScheduledExecutorService monitorExecutor) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be >= 1");
+        }
+        this.executor = executor;
+        this.workerPool = new NioWorkerPool(executor, workerCount);
+        this.timer = newTimer();
+        this.monitorExecutor = monitorExecutor;
+    }
+
+    /**
+     * Creates a new wheel timer with a tick of TIMER_TICK_MILLIS, as used by
+     * a runtime and by clients and servers created without one.
+     * @return The new timer
+     */
+    static public Timer newTimer() {
+        return new HashedWheelTimer(TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    public NioWorkerPool getWorkerPool() {
+        return this.workerPool;
+    }
+
+    /**
+     * Gets the shared wheel timer for write timeouts, enquire_link keepalive,
+     * request expiry, bind and connect timeouts.
+     * @return The timer
+     */
+    public Timer getTimer() {
+        return this.timer;
+    }
+
+    public ScheduledExecutorService getMonitorExecutor() {
+        return this.monitorExecutor;
+    }
+
+    public synchronized NioClientBossPool getClientBossPool() {
+        assertNotDestroyed();
+        if (this.clientBossPool == null) {
+            this.clientBossPool = new NioClientBossPool(this.executor, 1, this.timer, ThreadNameDeterminer.PROPOSED);
+        }
+        return this.clientBossPool;
+    }
+
+    public synchronized NioServerBossPool getServerBossPool() {
+        assertNotDestroyed();
+        if (this.serverBossPool == null) {
+            // a single boss accepts for every server socket
+            this.serverBossPool = new NioServerBossPool(this.executor, 1);
+        }
+        return this.serverBossPool;
+    }
+
+    public synchronized boolean isDestroyed() {
+        return this.destroyed;
+    }
+
+    /**
+     * Stops every thread and the timer.  Any client or server still using
+     * this runtime stops working.
+     */
+    public synchronized void destroy() {
+        if (this.destroyed) {
+            return;
+        }
+        this.destroyed = true;
+        if (this.clientBossPool != null) {
+            this.clientBossPool.shutdown();
+        }
+        if (this.serverBossPool != null) {
+            this.serverBossPool.shutdown();
+        }
+        // also shuts down the executor
+        this.workerPool.releaseExternalResources();
+        this.timer.stop();
+    }
+
+    private void assertNotDestroyed() {
+        if (this.destroyed) {
+            throw new IllegalStateException("SmppRuntime is destroyed");
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * An SmppSessionChannelListener that is also told when the Channel's interest
+ * ops change.  Kept apart from SmppSessionChannelListener so existing
+ * implementations of that interface don't need to change.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface SmppSessionChannelInterestListener extends SmppSessionChannelListener {
+
+    /**
+     * Fired when the Channel's interest ops changed (it became writable or
+     * not, or reading was suspended or resumed).
+     */
+    public void fireChannelInterestChanged();
+
+}
@@ -0,0 +1,265 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.smpp.AsyncSmppSession;
+import com.cloudhopper.smpp.SmppClient;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.SmppSessionHandler;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.type.RecoverablePduException;
+import com.cloudhopper.smpp.type.SmppBindException;
+import com.cloudhopper.smpp.type.SmppChannelException;
+import com.cloudhopper.smpp.type.SmppTimeoutException;
+import com.cloudhopper.smpp.type.UnrecoverablePduException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A group of sessions bound to the same remote endpoint (e.g. several
+ * transmitter or transceiver binds of the same SMSC account) that are used
+ * as one logical link.  Each request sent via the group goes to the bind with
+ * the fewest pending requests in its send window, or the one expected to
+ * respond soonest given its recent response time and pending requests.  Sessions that are no longer bound (closed or
+ * unbinding) are dropped from the group the next time one is selected.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class SmppSessionGroup {
+    private static final Logger logger = LoggerFactory.getLogger(SmppSessionGroup.class);
+
+    /**
+     * How a session is selected for each request.
+     */
+    public enum Selection {
+        /** the session with the fewest requests pending in its send window */
+        LEAST_PENDING,
+        /**
+         * the session with the lowest recent response time times the number
+         * of requests that would be pending with this one (then fewest
+         * pending).  A session without a response yet is assumed to be as
+         * fast as the average of the others, or if none of them has one
+         * either, sessions are selected by fewest pending.
+         */
+        LOWEST_LATENCY
+    }
+
+    private final Selection selection;
+    private final CopyOnWriteArrayList<SmppSession> sessions;
+    // rotates where the search starts so ties are spread over all sessions
+    private final AtomicInteger nextStart;
+
+    public SmppSessionGroup() {
+        this(Selection.LEAST_PENDING);
+    }
+
+    public SmppSessionGroup(Selection selection) {
+        this.selection = selection;
+        this.sessions = new CopyOnWriteArrayList<SmppSession>();
+        this.nextStart = new AtomicInteger(0);
+    }
+
+    public Selection getSelection() {
+        return this.selection;
+    }
+
+    /**
+     * Binds new sessions with the client and adds them to this group.  If a
+     * bind fails, the exception is thrown and sessions bound so far remain in
+     * the group.
+     * @param client The client to bind with
+     * @param configuration The configuration of every session
+     * @param sessionHandler The handler of every session (must be thread safe
+     *      if shared)
+     * @param count The number of sessions to bind
+     */
+    public void bind(SmppClient client, SmppSessionConfiguration configuration, SmppSessionHandler sessionHandler, int count) throws SmppTimeoutException, SmppChannelException, SmppBindException, UnrecoverablePduException, InterruptedException {
+        for (int i = 0; i < count; i++) {
+            add(client.bind(configuration, sessionHandler));
+        }
+    }
+
+    /**
+     * Adds a bound session to this group.
+     * @param session The session
+     */
+    public void add(SmppSession session) {
+        this.sessions.addIfAbsent(session);
+    }
+
+    /**
+     * Removes a session from this group (does not close it).
+     * @param session The session
+     * @return True if removed, false if it wasn't in the group
+     */
+    public boolean remove(SmppSession session) {
+        return this.sessions.remove(session);
+    }
+
+    /**
+     * Gets the number of sessions in this group.
+     * @return The number of sessions
+     */
+    public int getSize() {
+        return this.sessions.size();
+    }
+
+    /**
+     * Gets a snapshot of the sessions in this group.
+     * @return The sessions
+     */
+    public List<SmppSession> getSessions() {
+        return new ArrayList<SmppSession>(this.sessions);
+    }
+
+    static private int getPendingRequests(SmppSession session) {
+        if (session instanceof AsyncSmppSession) {
+            return ((AsyncSmppSession)session).getSmppSendWindow().getSize();
+        }
+        return session.getSendWindow().getSize();
+    }
+
+    static private long getRecentResponseTime(SmppSession session) {
+        if (session instanceof AsyncSmppSession) {
+            return ((AsyncSmppSession)session).getRecentResponseTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Selects the session the next request should be sent on.  Sessions no
+     * longer bound are removed from the group.
+     * @return The session or null if no session in the group is bound
+     */
+    public SmppSession select() {
+        Object[] snapshot = this.sessions.toArray();
+        if (snapshot.length == 0) {
+            return null;
+        }
+        int start = (this.nextStart.getAndIncrement() & Integer.MAX_VALUE) % snapshot.length;
+        // bound sessions (in search order) with their pending requests and response times
+        SmppSession[] bound = new SmppSession[snapshot.length];
+        int[] pending = new int[snapshot.length];
+        long[] responseTime = new long[snapshot.length];
+        int boundCount = 0;
+        long knownResponseTimeSum = 0;
+        int knownResponseTimeCount = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            SmppSession session = (SmppSession)snapshot[(start + i) % snapshot.length];
+            if (!session.isBound()) {
+                if (this.sessions.remove(session)) {
+                    logger.info("Removed session [{}] from group since its state is [{}]", session.getConfiguration().getName(), session.getStateName());
+                }
+                continue;
+            }
+            bound[boundCount] = session;
+            pending[boundCount] = getPendingRequests(session);
+            if (this.selection == Selection.LOWEST_LATENCY) {
+                responseTime[boundCount] = getRecentResponseTime(session);
+                if (responseTime[boundCount] >= 0) {
+                    knownResponseTimeSum += responseTime[boundCount];
+                    knownResponseTimeCount++;
+                }
+            }
+            boundCount++;
+        }
+
+        // a session without a response yet is as fast as the others on average
+        long unknownResponseTime = (knownResponseTimeCount > 0 ? knownResponseTimeSum / knownResponseTimeCount : 0);
+        SmppSession best = null;
+        int bestPending = Integer.MAX_VALUE;
+        long bestScore = Long.MAX_VALUE;
+        for (int i = 0; i < boundCount; i++) {
+            long score = 0;
+            if (this.selection == Selection.LOWEST_LATENCY) {
+                // the time until a response to this request if the pending
+                // ones ahead of it are answered at the recent response time
+                long time = (responseTime[i] >= 0 ? responseTime[i] : unknownResponseTime);
+                score = Math.max(1, time) * (pending[i] + 1);
+            }
+            if (score < bestScore || (score == bestScore && pending[i] < bestPending)) {
+                best = bound[i];
+                bestPending = pending[i];
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private SmppSession selectOrThrow() throws SmppChannelException {
+        SmppSession session = select();
+        if (session == null) {
+            throw new SmppChannelException("No bound session available in group");
+        }
+        return session;
+    }
+
+    /**
+     * Synchronously submits a message on the selected session.
+     * @see SmppSession#submit(com.cloudhopper.smpp.pdu.SubmitSm, long)
+     * @throws SmppChannelException If no session in the group is bound or
+     *      the write failed
+     */
+    public SubmitSmResp submit(SubmitSm request, long timeoutMillis) throws RecoverablePduException, UnrecoverablePduException, SmppTimeoutException, SmppChannelException, InterruptedException {
+        return selectOrThrow().submit(request, timeoutMillis);
+    }
+
+    /**
+     * Sends a request on the selected session.
+     * @see SmppSession#sendRequestPdu(com.cloudhopper.smpp.pdu.PduRequest, long, boolean)
+     * @throws SmppChannelException If no session in the group is bound or
+     *      the write failed
+     */
+    public WindowFuture<Integer,PduRequest,PduResponse> sendRequestPdu(PduRequest request, long timeoutMillis, boolean synchronous) throws RecoverablePduException, UnrecoverablePduException, SmppTimeoutException, SmppChannelException, InterruptedException {
+        return selectOrThrow().sendRequestPdu(request, timeoutMillis, synchronous);
+    }
+
+    /**
+     * Unbinds every session in the group and removes them from the group.
+     * @param timeoutMillis The time to wait for each unbind response
+     */
+    public void unbind(long timeoutMillis) {
+        for (SmppSession session : this.sessions) {
+            this.sessions.remove(session);
+            session.unbind(timeoutMillis);
+        }
+    }
+
+    /**
+     * Destroys every session in the group and removes them from the group.
+     */
+    public void destroy() {
+        for (SmppSession session : this.sessions) {
+            this.sessions.remove(session);
+            session.destroy();
+        }
+    }
+
+}
@@ -0,0 +1,509 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.SmppClient;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.SmppSessionHandler;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.type.RecoverablePduException;
+import com.cloudhopper.smpp.type.SmppChannelException;
+import com.cloudhopper.smpp.type.SmppTimeoutException;
+import com.cloudhopper.smpp.type.UnrecoverablePduException;
+import com.cloudhopper.smpp.util.DaemonExecutors;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A client session that is kept bound.  Whenever the underlying session is
+ * lost (the channel unexpectedly closes, or it's found to be no longer bound
+ * when sending), a rebind is scheduled.  The first attempt happens right away,
+ * failed attempts are retried with an exponential backoff (starting at the
+ * reconnect delay, doubling up to the reconnect max delay) with jitter so a
+ * fleet of clients doesn't reconnect in lock-step.  The backoff is timed by
+ * a scheduled executor that can be shared by any number of supervised
+ * sessions, but the (blocking) connect and bind, as well as sending the
+ * requests on the hand-off queue, run on a separate bind executor so they
+ * never hold up the scheduler.
+ * <p>
+ * Requests sent asynchronously while not bound are put on a bounded hand-off
+ * queue and sent as soon as the session is rebound (their responses are
+ * passed to the session handler as usual).  Requests sent synchronously wait
+ * up to their timeout for the session to be rebound.
+ * <p>
+ * The session handler is wrapped, so a handler implementing
+ * SmppSessionListener won't see its extra callbacks.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class SupervisedSmppSession {
+    private static final Logger logger = LoggerFactory.getLogger(SupervisedSmppSession.class);
+
+    private final SmppClient client;
+    private final SmppSessionConfiguration configuration;
+    private final SmppSessionHandler sessionHandler;
+    private final ScheduledExecutorService scheduler;
+    private final Executor bindExecutor;
+    // if not null, the bind executor was created by (and is shut down with) this session
+    private final ExecutorService ownedBindExecutor;
+    private final BlockingQueue<PduRequest> handOffQueue;
+    private final Random random;
+    // guards the fields below and is notified when (re)bound
+    private final Object lock;
+    private volatile SmppSession session;
+    private volatile boolean stopped;
+    private boolean rebindScheduled;
+    private int failedAttempts;
+    // incremented on every bind attempt so events of old sessions are ignored
+    private final AtomicInteger generation;
+    private final AtomicLong rebindCount;
+    private final AtomicBoolean flushing;
+
+    /**
+     * Creates a new supervised session.  Call start() to bind it.
+     * @param client The client to bind with
+     * @param configuration The session configuration (incl. the reconnect
+     *      delay, reconnect max delay and reconnect queue size)
+     * @param sessionHandler The handler for session events or null for a
+     *      default handler
+     * @param scheduler The executor the backoff between binds is timed with
+     *      (can be shared by many supervised sessions)
+     */
+    public SupervisedSmppSession(SmppClient client, SmppSessionConfiguration configuration, SmppSessionHandler sessionHandler, ScheduledExecutorService scheduler) {
+        this(client, configuration, sessionHandler, scheduler, null);
+    }
+
+    /**
+     * Creates a new supervised session.  Call start() to bind it.
+     * @param client The client to bind with
+     * @param configuration The session configuration (incl. the reconnect
+     *      delay, reconnect max delay and reconnect queue size)
+     * @param sessionHandler The handler for session events or null for a
+     *      default handler
+     * @param scheduler The executor the backoff between binds is timed with
+     *      (can be shared by many supervised sessions)
+     * @param bindExecutor The executor binds and sending of queued requests
+     *      run under (can be shared by many supervised sessions, its size
+     *      bounds how many bind at once), or null for a single daemon thread
+     *      of this session that only exists while binding or sending
+     */
+    public SupervisedSmppSession(SmppClient client, SmppSessionConfiguration configuration, SmppSessionHandler sessionHandler, ScheduledExecutorService scheduler, Executor bindExecutor) {
+        this.client = client;
+        this.configuration = configuration;
+        this.sessionHandler = (sessionHandler == null ? new DefaultSmppSessionHandler(logger) : sessionHandler);
+        this.scheduler = scheduler;
+        if (bindExecutor == null) {
+            this.ownedBindExecutor = DaemonExecutors.newBoundedDaemonThreadPool(1, 60000);
+            this.bindExecutor = this.ownedBindExecutor;
+        } else {
+            this.ownedBindExecutor = null;
+            this.bindExecutor = bindExecutor;
+        }
+        this.handOffQueue = new ArrayBlockingQueue<PduRequest>(Math.max(1, configuration.getReconnectQueueSize()));
+        this.random = new Random();
+        this.lock = new Object();
+        this.session = null;
+        this.stopped = false;
+        this.rebindScheduled = false;
+        this.failedAttempts = 0;
+        this.generation = new AtomicInteger(0);
+        this.rebindCount = new AtomicLong(0);
+        this.flushing = new AtomicBoolean(false);
+    }
+
+    public SmppSessionConfiguration getConfiguration() {
+        return this.configuration;
+    }
+
+    /**
+     * Starts binding the session (returns immediately).
+     */
+    public void start() {
+        scheduleRebind();
+    }
+
+    /**
+     * Gets the current session if it is bound.
+     * @return The bound session or null if not bound (e.g. rebinding)
+     */
+    public SmppSession getSession() {
+        SmppSession s = this.session;
+        return (s != null && s.isBound() ? s : null);
+    }
+
+    public boolean isBound() {
+        return (getSession() != null);
+    }
+
+    /**
+     * Gets the number of times the session was successfully (re)bound.
+     * @return The number of binds
+     */
+    public long getRebindCount() {
+        return this.rebindCount.get();
+    }
+
+    /**
+     * Gets the number of requests waiting on the hand-off queue to be sent
+     * once the session is rebound.
+     * @return The number of queued requests
+     */
+    public int getHandOffQueueSize() {
+        return this.handOffQueue.size();
+    }
+
+    /**
+     * Waits for the session to be bound.
+     * @param timeoutMillis The max time to wait
+     * @return The bound session or null if not bound within the timeout
+     * @throws InterruptedException
+     */
+    public SmppSession awaitBound(long timeoutMillis) throws InterruptedException {
+        SmppSession s = getSession();
+        if (s != null) {
+            return s;
+        }
+        checkSession();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this.lock) {
+            while ((s = getSession()) == null && !this.stopped) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                this.lock.wait(remaining);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Synchronously submits a message, waiting up to the timeout for the
+     * session to be rebound if needed.
+     * @see SmppSession#submit(com.cloudhopper.smpp.pdu.SubmitSm, long)
+     */
+    public SubmitSmResp submit(SubmitSm request, long timeoutMillis) throws RecoverablePduException, UnrecoverablePduException, SmppTimeoutException, SmppChannelException, InterruptedException {
+        SmppSession s = awaitBound(timeoutMillis);
+        if (s == null) {
+            throw new SmppTimeoutException("Session not bound within [" + timeoutMillis + " ms]");
+        }
+        return s.submit(request, timeoutMillis);
+    }
+
+    /**
+     * Sends a request on the session.  If the session isn't bound, a
+     * synchronous request waits up to the timeout for it to be rebound, and
+     * an asynchronous request is put on the hand-off queue.
+     * @see SmppSession#sendRequestPdu(com.cloudhopper.smpp.pdu.PduRequest, long, boolean)
+     * @return The future of the request or null if it was queued until the
+     *      session is rebound (its response will be passed to the session
+     *      handler, or firePduRequestExpired if it could not be sent)
+     * @throws SmppChannelException If the hand-off queue is full
+     */
+    public WindowFuture<Integer,PduRequest,PduResponse> sendRequestPdu(PduRequest request, long timeoutMillis, boolean synchronous) throws RecoverablePduException, UnrecoverablePduException, SmppTimeoutException, SmppChannelException, InterruptedException {
+        SmppSession s = getSession();
+        if (s == null) {
+            if (synchronous) {
+                s = awaitBound(timeoutMillis);
+                if (s == null) {
+                    throw new SmppTimeoutException("Session not bound within [" + timeoutMillis + " ms]");
+                }
+            } else {
+                checkSession();
+                if (!this.handOffQueue.offer(request)) {
+                    throw new SmppChannelException("Session not bound and hand-off queue full [" + this.handOffQueue.size() + " requests]");
+                }
+                // may have been rebound in the meantime
+                if (getSession() != null) {
+                    scheduleFlush();
+                }
+                return null;
+            }
+        }
+        return s.sendRequestPdu(request, timeoutMillis, synchronous);
+    }
+
+    /**
+     * Stops supervising, unbinds the session and destroys it.  Requests still
+     * on the hand-off queue are passed to firePduRequestExpired.
+     * @param timeoutMillis The time to wait for the unbind response
+     */
+    public void unbind(long timeoutMillis) {
+        this.stopped = true;
+        SmppSession s = this.session;
+        if (s != null) {
+            s.unbind(timeoutMillis);
+        }
+        destroy();
+    }
+
+    /**
+     * Stops supervising and destroys the session.  Requests still on the
+     * hand-off queue are passed to firePduRequestExpired.
+     */
+    public void destroy() {
+        SmppSession s = null;
+        synchronized (this.lock) {
+            this.stopped = true;
+            s = this.session;
+            this.session = null;
+            this.lock.notifyAll();
+        }
+        if (s != null) {
+            s.destroy();
+        }
+        if (this.ownedBindExecutor != null) {
+            // a bind in progress finishes and destroys its session since stopped
+            this.ownedBindExecutor.shutdown();
+        }
+        PduRequest request = null;
+        while ((request = this.handOffQueue.poll()) != null) {
+            this.sessionHandler.firePduRequestExpired(request);
+        }
+    }
+
+    private void checkSession() {
+        SmppSession s = this.session;
+        if (s == null || s.isClosed() || s.isUnbinding()) {
+            scheduleRebind();
+        }
+    }
+
+    private void scheduleRebind() {
+        synchronized (this.lock) {
+            if (this.stopped || this.rebindScheduled) {
+                return;
+            }
+            this.rebindScheduled = true;
+            long delay = getRebindDelay(this.failedAttempts);
+            logger.info("Scheduling bind of session [{}] in [{} ms]", configuration.getName(), delay);
+            final Runnable rebindTask = new Runnable() {
+                @Override
+                public void run() {
+                    rebind();
+                }
+            };
+            if (delay <= 0) {
+                executeOnBindExecutor(rebindTask);
+            } else {
+                // the scheduler only times the backoff, the bind itself blocks
+                this.scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        executeOnBindExecutor(rebindTask);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void executeOnBindExecutor(Runnable task) {
+        try {
+            this.bindExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // destroyed (or the shared executor was shut down)
+            logger.warn("Unable to run bind task of session [{}]: {}", configuration.getName(), e.getMessage());
+            synchronized (this.lock) {
+                this.rebindScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the delay is fixed,
+     * the other half is random.
+     */
+    long getRebindDelay(int attempts) {
+        if (attempts <= 0) {
+            return 0;
+        }
+        long delay = Math.max(1, this.configuration.getReconnectDelay());
+        for (int i = 1; i < attempts && delay < this.configuration.getReconnectMaxDelay(); i++) {
+            delay <<= 1;
+        }
+        delay = Math.min(delay, Math.max(1, this.configuration.getReconnectMaxDelay()));
+        long half = delay / 2;
+        return half + (long)(this.random.nextDouble() * (delay - half));
+    }
+
+    private void rebind() {
+        int currentGeneration = this.generation.incrementAndGet();
+        SmppSession old = this.session;
+        this.session = null;
+        if (old != null) {
+            old.destroy();
+        }
+        if (this.stopped) {
+            return;
+        }
+
+        SmppSession newSession = null;
+        try {
+            newSession = this.client.bind(this.configuration, new SupervisingHandler(currentGeneration));
+        } catch (Exception e) {
+            logger.warn("Unable to bind session [{}]: {}", configuration.getName(), e.getMessage());
+        }
+
+        synchronized (this.lock) {
+            this.rebindScheduled = false;
+            if (newSession == null) {
+                this.failedAttempts++;
+            } else if (this.stopped) {
+                newSession.destroy();
+                return;
+            } else {
+                this.failedAttempts = 0;
+                this.session = newSession;
+                this.rebindCount.incrementAndGet();
+                this.lock.notifyAll();
+            }
+        }
+
+        if (newSession == null) {
+            scheduleRebind();
+        } else {
+            logger.info("Session [{}] bound", configuration.getName());
+            flushHandOffQueue();
+        }
+    }
+
+    private void scheduleFlush() {
+        // sending may block (e.g. on a full window), so not on the scheduler
+        try {
+            this.bindExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushHandOffQueue();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Unable to send queued requests of session [{}]: {}", configuration.getName(), e.getMessage());
+        }
+    }
+
+    private void flushHandOffQueue() {
+        if (!this.flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            SmppSession s = null;
+            PduRequest request = null;
+            while ((s = getSession()) != null && (request = this.handOffQueue.poll()) != null) {
+                try {
+                    s.sendRequestPdu(request, this.configuration.getWindowWaitTimeout(), false);
+                } catch (Exception e) {
+                    logger.warn("Unable to send queued request [{}]: {}", request.getName(), e.getMessage());
+                    this.sessionHandler.firePduRequestExpired(request);
+                }
+            }
+        } finally {
+            this.flushing.set(false);
+        }
+        // something may have been queued right as we finished
+        if (getSession() != null && !this.handOffQueue.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Passes every event on to the session handler and triggers a rebind if
+     * the channel of the current session unexpectedly closes.
+     */
+    private class SupervisingHandler implements SmppSessionHandler {
+        private final int sessionGeneration;
+
+        public SupervisingHandler(int sessionGeneration) {
+            this.sessionGeneration = sessionGeneration;
+        }
+
+        @Override
+        public void fireChannelUnexpectedlyClosed() {
+            sessionHandler.fireChannelUnexpectedlyClosed();
+            if (this.sessionGeneration == generation.get()) {
+                logger.info("Session [{}] unexpectedly closed, rebinding", configuration.getName());
+                scheduleRebind();
+            }
+        }
+
+        @Override
+        public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+            return sessionHandler.firePduRequestReceived(pduRequest);
+        }
+
+        @Override
+        public void firePduRequestExpired(PduRequest pduRequest) {
+            sessionHandler.firePduRequestExpired(pduRequest);
+        }
+
+        @Override
+        public void fireExpectedPduResponseReceived(PduAsyncResponse pduAsyncResponse) {
+            sessionHandler.fireExpectedPduResponseReceived(pduAsyncResponse);
+        }
+
+        @Override
+        public void fireUnexpectedPduResponseReceived(PduResponse pduResponse) {
+            sessionHandler.fireUnexpectedPduResponseReceived(pduResponse);
+        }
+
+        @Override
+        public void fireUnrecoverablePduException(UnrecoverablePduException e) {
+            sessionHandler.fireUnrecoverablePduException(e);
+        }
+
+        @Override
+        public void fireRecoverablePduException(RecoverablePduException e) {
+            sessionHandler.fireRecoverablePduException(e);
+        }
+
+        @Override
+        public void fireUnknownThrowable(Throwable t) {
+            sessionHandler.fireUnknownThrowable(t);
+        }
+
+        @Override
+        public String lookupResultMessage(int commandStatus) {
+            return sessionHandler.lookupResultMessage(commandStatus);
+        }
+
+        @Override
+        public String lookupTlvTagName(short tag) {
+            return sessionHandler.lookupTlvTagName(tag);
+        }
+    }
+
+}
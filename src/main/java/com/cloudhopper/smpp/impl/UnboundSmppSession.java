@@ -28,10 +28,12 @@ import com.cloudhopper.smpp.pdu.*;
 import com.cloudhopper.smpp.type.LoggingOptions;
 import com.cloudhopper.smpp.type.SmppChannelException;
 import com.cloudhopper.smpp.type.SmppProcessingException;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,7 +51,7 @@ public class UnboundSmppSession implements SmppSessionChannelListener {
     // the channel that's not "bound" yet as an SMPP session
     private final String channelName;
     private final Channel channel;
-    private final BindTimeoutTask bindTimeoutTask;
+    private final Timeout bindTimeout;
     private final DefaultSmppServer server;
 
     public UnboundSmppSession(String channelName, Channel channel, DefaultSmppServer server) {
@@ -57,8 +59,7 @@ public class UnboundSmppSession implements SmppSessionChannelListener {
         this.channel = channel;
         this.server = server;
         // schedule the timer to close the channel after X milliseconds
-        this.bindTimeoutTask = new BindTimeoutTask();
-        this.server.getBindTimer().schedule(bindTimeoutTask, this.server.getConfiguration().getBindTimeout());
+        this.bindTimeout = this.server.getBindTimeoutTimer().newTimeout(new BindTimeoutTask(), this.server.getConfiguration().getBindTimeout(), TimeUnit.MILLISECONDS);
     }
 
     // called when a PDU is received and decoded on the channel
@@ -94,7 +95,7 @@ public class UnboundSmppSession implements SmppSessionChannelListener {
 
             // if we got there then 98% "bound" -- we just need to create the
             // new session and tie everything together -- cancel the bind timer
-            this.bindTimeoutTask.cancel();
+            this.bindTimeout.cancel();
 
             // prepare an "OK" bind response that the session will send back once flagged as 'serverReady'
             BaseBindResp preparedBindResponse = server.createBindResponse(bindRequest, SmppConstants.STATUS_OK);
@@ -131,7 +132,7 @@ public class UnboundSmppSession implements SmppSessionChannelListener {
     public void closeChannelAndCancelTimer() {
         // if the channel is being closed, we should always make sure the timer
         // bind task is always cancelled as well
-        this.bindTimeoutTask.cancel();
+        this.bindTimeout.cancel();
         // close the channel
         this.channel.close();
     }
@@ -178,7 +179,26 @@ public class UnboundSmppSession implements SmppSessionChannelListener {
         sessionConfiguration.setWindowWaitTimeout(server.getConfiguration().getDefaultWindowWaitTimeout());
         sessionConfiguration.setWindowMonitorInterval(server.getConfiguration().getDefaultWindowMonitorInterval());
         sessionConfiguration.setRequestExpiryTimeout(server.getConfiguration().getDefaultRequestExpiryTimeout());
+        sessionConfiguration.setRequestExpiryTimerEnabled(server.getConfiguration().isDefaultRequestExpiryTimerEnabled());
         sessionConfiguration.setCountersEnabled(server.getConfiguration().isDefaultSessionCountersEnabled());
+        sessionConfiguration.setNonBlockingWritesEnabled(server.getConfiguration().isDefaultNonBlockingWritesEnabled());
+        sessionConfiguration.setDirectBufferArenaSize(server.getConfiguration().getDefaultDirectBufferArenaSize());
+        sessionConfiguration.setWriteCoalescingMaxPdus(server.getConfiguration().getDefaultWriteCoalescingMaxPdus());
+        sessionConfiguration.setWriteCoalescingMaxBytes(server.getConfiguration().getDefaultWriteCoalescingMaxBytes());
+        sessionConfiguration.setHandlerExecutor(server.getConfiguration().getDefaultHandlerExecutor());
+        sessionConfiguration.setHandlerExecutorOrdered(server.getConfiguration().isDefaultHandlerExecutorOrdered());
+        sessionConfiguration.setSendWindowFactory(server.getConfiguration().getDefaultSendWindowFactory());
+        sessionConfiguration.setAdaptiveWindowEnabled(server.getConfiguration().isDefaultAdaptiveWindowEnabled());
+        sessionConfiguration.setAdaptiveWindowMinSize(server.getConfiguration().getDefaultAdaptiveWindowMinSize());
+        sessionConfiguration.setAdaptiveWindowLatencyThreshold(server.getConfiguration().getDefaultAdaptiveWindowLatencyThreshold());
+        sessionConfiguration.setSendRateLimit(server.getConfiguration().getDefaultSendRateLimit());
+        sessionConfiguration.setSendRateBurst(server.getConfiguration().getDefaultSendRateBurst());
+        sessionConfiguration.setThrottleBackoffTime(server.getConfiguration().getDefaultThrottleBackoffTime());
+        sessionConfiguration.setEnquireLinkInterval(server.getConfiguration().getDefaultEnquireLinkInterval());
+        sessionConfiguration.setEnquireLinkMaxMissed(server.getConfiguration().getDefaultEnquireLinkMaxMissed());
+        sessionConfiguration.setInboundHighWatermark(server.getConfiguration().getDefaultInboundHighWatermark());
+        sessionConfiguration.setInboundLowWatermark(server.getConfiguration().getDefaultInboundLowWatermark());
+        sessionConfiguration.setInboundWatermarkBytes(server.getConfiguration().isDefaultInboundWatermarkBytes());
 
         return sessionConfiguration;
     }
@@ -207,12 +227,14 @@ public class UnboundSmppSession implements SmppSessionChannelListener {
     /**
      * Simple task that closes a channel if its not bound within a certain time.
      */
-    private final class BindTimeoutTask extends TimerTask {
+    private final class BindTimeoutTask implements TimerTask {
         @Override
-        public void run() {
+        public void run(Timeout timeout) {
+            if (timeout.isCancelled()) {
+                return;
+            }
             logger.warn("Channel not bound within [{}] ms, closing connection [{}]", server.getConfiguration().getBindTimeout(), channelName);
             channel.close();
-            this.cancel();
             server.getCounters().incrementBindTimeoutsAndGet();
         }
     }
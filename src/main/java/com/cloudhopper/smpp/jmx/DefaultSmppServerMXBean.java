@@ -63,10 +63,14 @@ public interface DefaultSmppServerMXBean {
     
     public boolean isReuseAddress();
     
+    public int getIoWorkerCount();
+    
     public int getChannelConnects();
     
     public int getChannelDisconnects();
     
+    public int getChannelRejects();
+    
     public int getBindTimeouts();
     
     public int getBindRequested();
@@ -82,6 +82,12 @@ public interface DefaultSmppSessionMXBean {
 
     public int getMaxWindowSize();
 
+    public boolean isAdaptiveWindowEnabled();
+
+    public int getEffectiveWindowSize();
+
+    public long getRecentResponseTime();
+
     public long getWindowWaitTimeout();
     
     // pulled from state objects and counters
@@ -106,6 +112,8 @@ public interface DefaultSmppSessionMXBean {
     public String getTxEnquireLinkCounter();
 
     public String getTxSubmitSMCounter();
+
+    public String getWriteCoalescingCounter();
     
     public void enableLogBytes();
     
@@ -29,6 +29,7 @@ import com.cloudhopper.smpp.type.SmppInvalidArgumentException;
 import com.cloudhopper.smpp.util.ChannelBufferUtil;
 import com.cloudhopper.smpp.util.PduUtil;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 
 /**
  * Base "short message" PDU as a super class for submit_sm, deliver_sm, and
@@ -52,18 +53,41 @@ public abstract class BaseSm<R extends PduResponse> extends PduRequest<R> {
     private byte replaceIfPresent;              // not present in data_sm
     protected byte dataCoding;
     private byte defaultMsgId;                  // not present in data_sm, not used in deliver_sm
-    private byte[] shortMessage;                // not present in data_sm         
+    // volatile since getShortMessage() lazily swaps a retained buffer for a
+    // copy: the copy is always published before the buffer is cleared
+    private volatile byte[] shortMessage;       // not present in data_sm         
+    // if not null, short message is a slice of the buffer this pdu was decoded from
+    private volatile ChannelBuffer shortMessageBuffer;
 
     public BaseSm(int commandId, String name) {
         super(commandId, name);
     }
 
     public int getShortMessageLength() {
-        return (this.shortMessage == null ? 0 : this.shortMessage.length);
+        ChannelBuffer buffer = this.shortMessageBuffer;
+        if (buffer != null) {
+            return buffer.readableBytes();
+        }
+        byte[] bytes = this.shortMessage;
+        return (bytes == null ? 0 : bytes.length);
     }
 
+    /**
+     * Gets the short message as a byte array.  If the short message is
+     * currently retained as a buffer, it's copied into a new byte array first
+     * (and the buffer is no longer retained).
+     * @return The short message
+     */
     public byte[] getShortMessage() {
-        return this.shortMessage;
+        ChannelBuffer buffer = this.shortMessageBuffer;
+        if (buffer == null) {
+            return this.shortMessage;
+        }
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        this.shortMessage = bytes;
+        this.shortMessageBuffer = null;
+        return bytes;
     }
 
     public void setShortMessage(byte[] value) throws SmppInvalidArgumentException {
@@ -71,6 +95,64 @@ public abstract class BaseSm<R extends PduResponse> extends PduRequest<R> {
             throw new SmppInvalidArgumentException("A short message in a PDU can only be a max of 255 bytes [actual=" + value.length + "]; use optional parameter message_payload as an alternative");
         }
         this.shortMessage = value;
+        this.shortMessageBuffer = null;
+    }
+
+    /**
+     * Gets the short message as a buffer without copying it.  The returned
+     * buffer is an independent view of the short message (reading from it
+     * does not change this PDU), but it shares the same underlying bytes.
+     * Routers and proxies can pass it to setShortMessageBuffer() of the PDU
+     * they forward to avoid copying the short message at all.
+     * @return The short message as a buffer or null if not set
+     */
+    public ChannelBuffer getShortMessageBuffer() {
+        ChannelBuffer buffer = this.shortMessageBuffer;
+        if (buffer != null) {
+            return buffer.duplicate();
+        }
+        byte[] bytes = this.shortMessage;
+        return (bytes == null ? null : ChannelBuffers.wrappedBuffer(bytes));
+    }
+
+    /**
+     * Sets the short message to the readable bytes of the buffer without
+     * copying them.  This PDU retains the buffer until it's encoded (or
+     * copyRetainedBuffers() is called), so the buffer must not be modified.
+     * @param value The buffer of the short message
+     * @throws SmppInvalidArgumentException
+     */
+    public void setShortMessageBuffer(ChannelBuffer value) throws SmppInvalidArgumentException {
+        if (value != null && value.readableBytes() > 255) {
+            throw new SmppInvalidArgumentException("A short message in a PDU can only be a max of 255 bytes [actual=" + value.readableBytes() + "]; use optional parameter message_payload as an alternative");
+        }
+        this.shortMessageBuffer = value;
+        this.shortMessage = null;
+    }
+
+    public boolean isShortMessageRetained() {
+        return (this.shortMessageBuffer != null);
+    }
+
+    @Override
+    public boolean hasRetainedBuffers() {
+        return (isShortMessageRetained() || super.hasRetainedBuffers());
+    }
+
+    @Override
+    public void copyRetainedBuffers() {
+        getShortMessage();
+        super.copyRetainedBuffers();
+    }
+
+    private byte[] copyShortMessageBytes() {
+        ChannelBuffer buffer = this.shortMessageBuffer;
+        if (buffer == null) {
+            return this.shortMessage;
+        }
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        return bytes;
     }
 
     public byte getReplaceIfPresent() {
@@ -185,8 +267,13 @@ public abstract class BaseSm<R extends PduResponse> extends PduRequest<R> {
         this.defaultMsgId = buffer.readByte();
         // this is always an unsigned version of the short message length
         short shortMessageLength = buffer.readUnsignedByte();
-        this.shortMessage = new byte[shortMessageLength];
-        buffer.readBytes(this.shortMessage);
+        if (isZeroCopyDecode()) {
+            this.shortMessage = null;
+            this.shortMessageBuffer = buffer.readSlice(shortMessageLength);
+        } else {
+            this.shortMessage = new byte[shortMessageLength];
+            buffer.readBytes(this.shortMessage);
+        }
     }
 
     @Override
@@ -217,9 +304,16 @@ public abstract class BaseSm<R extends PduResponse> extends PduRequest<R> {
         buffer.writeByte(this.replaceIfPresent);
         buffer.writeByte(this.dataCoding);
         buffer.writeByte(this.defaultMsgId);
-        buffer.writeByte((byte)getShortMessageLength());
-        if (this.shortMessage != null) {
-            buffer.writeBytes(this.shortMessage);
+        ChannelBuffer shortMessageValue = this.shortMessageBuffer;
+        byte[] shortMessageBytes = this.shortMessage;
+        if (shortMessageValue != null) {
+            buffer.writeByte((byte)shortMessageValue.readableBytes());
+            buffer.writeBytes(shortMessageValue, shortMessageValue.readerIndex(), shortMessageValue.readableBytes());
+        } else if (shortMessageBytes != null) {
+            buffer.writeByte((byte)shortMessageBytes.length);
+            buffer.writeBytes(shortMessageBytes);
+        } else {
+            buffer.writeByte((byte)0);
         }
     }
 
@@ -240,7 +334,7 @@ public abstract class BaseSm<R extends PduResponse> extends PduRequest<R> {
         buffer.append("] dcs [0x");
         buffer.append(HexUtil.toHexString(this.dataCoding));
         buffer.append("] message [");
-        HexUtil.appendHexString(buffer, this.shortMessage);
+        HexUtil.appendHexString(buffer, copyShortMessageBytes());
         buffer.append("])");
     }
 }
\ No newline at end of file
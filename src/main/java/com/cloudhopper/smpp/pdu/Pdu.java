@@ -25,6 +25,7 @@ import com.cloudhopper.smpp.type.RecoverablePduException;
 import com.cloudhopper.commons.util.HexUtil;
 import com.cloudhopper.smpp.SmppConstants;
 import com.cloudhopper.smpp.tlv.Tlv;
+import com.cloudhopper.smpp.tlv.TlvIndex;
 import com.cloudhopper.smpp.transcoder.PduTranscoderContext;
 import com.cloudhopper.smpp.util.ChannelBufferUtil;
 import java.util.ArrayList;
@@ -39,9 +40,15 @@ public abstract class Pdu {
     private int commandStatus;
     private Integer sequenceNumber;         // we'll know its not assigned yet if null
     // optional parameters (there aren't many, no need for a map)
-    private ArrayList<Tlv> optionalParameters;
+    private OptionalParameterList optionalParameters;
+    // tag -> position index over optionalParameters, built lazily on first lookup
+    private TlvIndex optionalParameterIndex;
+    // modCount of optionalParameters the index is current for
+    private int optionalParameterIndexModCount;
     // a reference object that a caller can attach to this pdu
     private Object referenceObject;
+    // if true, variable length values are decoded as slices of the buffer
+    private boolean zeroCopyDecode;
 
     public Pdu(int commandId, String name, boolean isRequest) {
         this.name = name;
@@ -60,6 +67,52 @@ public abstract class Pdu {
         return this.referenceObject;
     }
 
+    public boolean isZeroCopyDecode() {
+        return this.zeroCopyDecode;
+    }
+
+    /**
+     * Sets if readBody() and readOptionalParameters() should keep variable
+     * length values (e.g. short_message and TLV values) as slices of the
+     * buffer being decoded rather than copying them into new byte arrays.
+     * The slices retain the buffer, so they stay valid for as long as this
+     * PDU does -- call copyRetainedBuffers() to release them (e.g. before
+     * holding onto this PDU for a long time).
+     * @param value True if enabled, otherwise false
+     */
+    public void setZeroCopyDecode(boolean value) {
+        this.zeroCopyDecode = value;
+    }
+
+    /**
+     * Checks if this PDU retains any buffers (values that are slices of the
+     * buffer it was decoded from).
+     * @return True if any buffers are retained, otherwise false
+     */
+    public boolean hasRetainedBuffers() {
+        if (this.optionalParameters != null) {
+            for (Tlv tlv : this.optionalParameters) {
+                if (tlv.isValueRetained()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies any retained buffers into byte arrays owned by this PDU so it no
+     * longer retains the buffer it was decoded from.  A noop if nothing is
+     * retained.
+     */
+    public void copyRetainedBuffers() {
+        if (this.optionalParameters != null) {
+            for (Tlv tlv : this.optionalParameters) {
+                tlv.copyValue();
+            }
+        }
+    }
+
     public String getName() {
         return this.name;
     }
@@ -144,7 +197,10 @@ public abstract class Pdu {
 
     /**
      * Gets the current list of optional parameters.  If no parameters have been
-     * added, this will return null.
+     * added, this will return null.  Parameters should be added, set, or
+     * removed via the methods on this PDU: modifying the list directly is
+     * supported, but the next lookup by tag then reindexes the list (changes
+     * made through a subList view aren't noticed).
      * @return Null if no parameters added yet, or the list of optional parameters.
      */
     public ArrayList<Tlv> getOptionalParameters() {
@@ -159,9 +215,15 @@ public abstract class Pdu {
      */
     public void addOptionalParameter(Tlv tlv) {
         if (this.optionalParameters == null) {
-            this.optionalParameters = new ArrayList<Tlv>();
+            this.optionalParameters = new OptionalParameterList();
         }
+        // only keep the index current if it was current before this add
+        boolean indexCurrent = isOptionalParameterIndexCurrent();
         this.optionalParameters.add(tlv);
+        if (indexCurrent) {
+            this.optionalParameterIndex.add(tlv.getTag());
+            this.optionalParameterIndexModCount = this.optionalParameters.getModCount();
+        }
     }
 
     /**
@@ -176,7 +238,10 @@ public abstract class Pdu {
         if (i < 0) {
             return null;
         } else {
-            return this.optionalParameters.remove(i);
+            // positions after i shift, reindex the remaining parameters
+            Tlv removed = this.optionalParameters.remove(i);
+            rebuildOptionalParameterIndex();
+            return removed;
         }
     }
 
@@ -195,8 +260,11 @@ public abstract class Pdu {
             this.addOptionalParameter(tlv);
             return null;
         } else {
-            // this parameter already exists, replace it, return old
-            return this.optionalParameters.set(i, tlv);
+            // this parameter already exists, replace it, return old (the
+            // same tag at the same position, so the index stays current)
+            Tlv replaced = this.optionalParameters.set(i, tlv);
+            this.optionalParameterIndexModCount = this.optionalParameters.getModCount();
+            return replaced;
         }
     }
 
@@ -213,15 +281,44 @@ public abstract class Pdu {
         if (this.optionalParameters == null) {
             return -1;
         }
-        int i = 0;
-        for (Tlv tlv : this.optionalParameters) {
-            if (tlv.getTag() == tag) {
-                return i;
-            }
-            i++;
+        if (!isOptionalParameterIndexCurrent()) {
+            // first lookup or the list was modified directly
+            rebuildOptionalParameterIndex();
+        }
+        // the index is authoritative, a miss means the tag is absent
+        return this.optionalParameterIndex.get(tag);
+    }
+
+    private boolean isOptionalParameterIndexCurrent() {
+        return (this.optionalParameterIndex != null && this.optionalParameterIndexModCount == this.optionalParameters.getModCount());
+    }
+
+    private void rebuildOptionalParameterIndex() {
+        if (this.optionalParameterIndex == null) {
+            this.optionalParameterIndex = new TlvIndex(this.optionalParameters.size());
+        }
+        this.optionalParameterIndex.rebuild(this.optionalParameters);
+        this.optionalParameterIndexModCount = this.optionalParameters.getModCount();
+    }
+
+    /**
+     * List of optional parameters that counts every modification, including
+     * set() which ArrayList doesn't, so the index by tag knows it's stale.
+     */
+    static private class OptionalParameterList extends ArrayList<Tlv> {
+        private static final long serialVersionUID = 1L;
+        // kept apart from modCount, which would fail iterators calling set()
+        private int setCount;
+
+        public int getModCount() {
+            return this.modCount + this.setCount;
+        }
+
+        @Override
+        public Tlv set(int index, Tlv tlv) {
+            this.setCount++;
+            return super.set(index, tlv);
         }
-        // if we get here, we didn't find the parameter by tag
-        return -1;
     }
 
     /**
@@ -272,7 +369,7 @@ public abstract class Pdu {
     public void readOptionalParameters(ChannelBuffer buffer, PduTranscoderContext context) throws UnrecoverablePduException, RecoverablePduException {
         // if there is any data left, it's part of an optional parameter
         while (buffer.readableBytes() > 0) {
-            Tlv tlv = ChannelBufferUtil.readTlv(buffer);
+            Tlv tlv = ChannelBufferUtil.readTlv(buffer, this.zeroCopyDecode);
             if (tlv.getTagName() == null) {
                 tlv.setTagName(context.lookupTlvTagName(tlv.getTag()));
             }
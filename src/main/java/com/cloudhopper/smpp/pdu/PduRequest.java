@@ -20,12 +20,32 @@ package com.cloudhopper.smpp.pdu;
  * #L%
  */
 
+import com.cloudhopper.smpp.PduResponseFuture;
+
 public abstract class PduRequest<R extends PduResponse> extends Pdu {
 
+    // completed by the session once the response is received (if sent with
+    // sendRequestAsync), cleared once the request is done so it can be reused
+    private PduResponseFuture<R> responseFuture;
+
     public PduRequest(int commandId, String name) {
         super(commandId, name, true);
     }
 
+    public PduResponseFuture<R> getResponseFuture() {
+        return this.responseFuture;
+    }
+
+    /**
+     * Sets the future the session completes once the response to this
+     * request is received.  Set by AsyncSmppSession.sendRequestAsync and cleared
+     * by the session once the request is done.
+     * @param responseFuture The future or null
+     */
+    public void setResponseFuture(PduResponseFuture<R> responseFuture) {
+        this.responseFuture = responseFuture;
+    }
+
     abstract public R createResponse();
 
     abstract public Class<R> getResponseClass();
@@ -23,7 +23,8 @@ package com.cloudhopper.smpp.tlv;
 import com.cloudhopper.commons.util.ByteArrayUtil;
 import com.cloudhopper.commons.util.HexUtil;
 import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 
 /**
  * Tag-Length-Value optional parameter in SMPP.
@@ -33,7 +34,11 @@ import java.util.Arrays;
 public class Tlv {
     
     private final short tag;
-    private final byte[] value;     // length is stored in array
+    // volatile since getValue() lazily swaps a retained buffer for a copy:
+    // the copy is always published before the buffer is cleared
+    private volatile byte[] value;           // length is stored in array
+    // if not null, value is a slice of the buffer this TLV was decoded from
+    private volatile ChannelBuffer valueBuffer;
     private String tagName;      // short description of this tag
 
     public Tlv(short tag, byte[] value) {
@@ -52,6 +57,22 @@ public class Tlv {
         this.tagName = tagName;
     }
 
+    /**
+     * Creates a TLV whose value is backed by a buffer rather than a byte array.
+     * The readable bytes of the buffer are the value.  No bytes are copied,
+     * which means this TLV retains (keeps a reference to) the buffer and
+     * whatever larger buffer it may be a slice of.
+     * @param tag
+     * @param valueBuffer
+     * @param tagName
+     */
+    public Tlv(short tag, ChannelBuffer valueBuffer, String tagName) {
+        this.tag = tag;
+        this.value = null;
+        this.valueBuffer = valueBuffer;
+        this.tagName = tagName;
+    }
+
     public String getTagName() {
         return this.tagName;
     }
@@ -72,15 +93,79 @@ public class Tlv {
      * @return The "unsigned" length of this TLV's value
      */
     public int getUnsignedLength() {
-        return (value == null ? 0 : value.length);
+        ChannelBuffer buffer = this.valueBuffer;
+        if (buffer != null) {
+            return buffer.readableBytes();
+        }
+        byte[] bytes = this.value;
+        return (bytes == null ? 0 : bytes.length);
     }
 
     public short getLength() {
         return (short)getUnsignedLength();
     }
 
+    /**
+     * Gets the value as a byte array.  If the value is currently retained
+     * as a buffer, it's copied into a new byte array first (and the buffer
+     * is no longer retained).
+     * @return The value
+     */
     public byte[] getValue() {
-        return this.value;
+        ChannelBuffer buffer = this.valueBuffer;
+        if (buffer == null) {
+            return this.value;
+        }
+        byte[] bytes = copyBytes(buffer);
+        this.value = bytes;
+        this.valueBuffer = null;
+        return bytes;
+    }
+
+    /**
+     * Gets the value as a buffer without copying it.  The returned buffer
+     * is an independent view of the value (reading from it does not change
+     * this TLV), but it shares the same underlying bytes.
+     * @return The value as a buffer or null if the value is null
+     */
+    public ChannelBuffer getValueBuffer() {
+        ChannelBuffer buffer = this.valueBuffer;
+        if (buffer != null) {
+            return buffer.duplicate();
+        }
+        byte[] bytes = this.value;
+        return (bytes == null ? null : ChannelBuffers.wrappedBuffer(bytes));
+    }
+
+    /**
+     * Checks if this TLV's value is retained as a buffer (e.g. a zero-copy
+     * slice of the buffer it was decoded from) rather than a byte array.
+     * @return True if retained as a buffer, otherwise false
+     */
+    public boolean isValueRetained() {
+        return (this.valueBuffer != null);
+    }
+
+    /**
+     * Copies a value retained as a buffer into a byte array so this TLV no
+     * longer retains the buffer.  A noop if the value isn't retained.
+     */
+    public void copyValue() {
+        getValue();
+    }
+
+    private byte[] copyValueBytes() {
+        ChannelBuffer buffer = this.valueBuffer;
+        if (buffer == null) {
+            return this.value;
+        }
+        return copyBytes(buffer);
+    }
+
+    private static byte[] copyBytes(ChannelBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        return bytes;
     }
 
     /**
@@ -99,23 +184,24 @@ public class Tlv {
     }
 
     public String getValueAsString(String charsetName) throws TlvConvertException {
-        if (this.value == null) {
+        byte[] bytes = getValue();
+        if (bytes == null) {
             return null;
         }
-        if (this.value.length == 0) {
+        if (bytes.length == 0) {
             return "";
         }
         // default the position to be the entire byte array
-        int len = this.value.length;
-        for (int i = 0; i < this.value.length; i++) {
-            if (this.value[i] == 0x00) {
+        int len = bytes.length;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == 0x00) {
                 len = i;
                 break;
             }
         }
 
         try {
-            return new String(this.value, 0, len, charsetName);
+            return new String(bytes, 0, len, charsetName);
         } catch (UnsupportedEncodingException e) {
             throw new TlvConvertException("String", "unsupported charset " + e.getMessage());
         }
@@ -134,7 +220,7 @@ public class Tlv {
         buffer.append(" 0x");
         buffer.append(HexUtil.toHexString((short)getUnsignedLength()));
         buffer.append(" [");
-        HexUtil.appendHexString(buffer, this.value);
+        HexUtil.appendHexString(buffer, copyValueBytes());
         buffer.append("]");
         return buffer.toString();
     }
@@ -150,7 +236,7 @@ public class Tlv {
      */
     public byte getValueAsByte() throws TlvConvertException {
         try {
-            return ByteArrayUtil.toByte(this.value);
+            return ByteArrayUtil.toByte(getValue());
         } catch (IllegalArgumentException e) {
             throw new TlvConvertException("byte", e.getMessage());
         }
@@ -167,7 +253,7 @@ public class Tlv {
      */
     public short getValueAsUnsignedByte() throws TlvConvertException {
         try {
-            return ByteArrayUtil.toUnsignedByte(this.value);
+            return ByteArrayUtil.toUnsignedByte(getValue());
         } catch (IllegalArgumentException e) {
             throw new TlvConvertException("unsigned byte", e.getMessage());
         }
@@ -184,7 +270,7 @@ public class Tlv {
      */
     public short getValueAsShort() throws TlvConvertException {
         try {
-            return ByteArrayUtil.toShort(this.value);
+            return ByteArrayUtil.toShort(getValue());
         } catch (IllegalArgumentException e) {
             throw new TlvConvertException("short", e.getMessage());
         }
@@ -201,7 +287,7 @@ public class Tlv {
      */
     public int getValueAsUnsignedShort() throws TlvConvertException {
         try {
-            return ByteArrayUtil.toUnsignedShort(this.value);
+            return ByteArrayUtil.toUnsignedShort(getValue());
         } catch (IllegalArgumentException e) {
             throw new TlvConvertException("unsigned short", e.getMessage());
         }
@@ -218,7 +304,7 @@ public class Tlv {
      */
     public int getValueAsInt() throws TlvConvertException {
         try {
-            return ByteArrayUtil.toInt(this.value);
+            return ByteArrayUtil.toInt(getValue());
         } catch (IllegalArgumentException e) {
             throw new TlvConvertException("int", e.getMessage());
         }
@@ -235,7 +321,7 @@ public class Tlv {
      */
     public long getValueAsUnsignedInt() throws TlvConvertException {
         try {
-            return ByteArrayUtil.toUnsignedInt(this.value);
+            return ByteArrayUtil.toUnsignedInt(getValue());
         } catch (IllegalArgumentException e) {
             throw new TlvConvertException("unsigned int", e.getMessage());
         }
@@ -252,7 +338,7 @@ public class Tlv {
      */
     public long getValueAsLong() throws TlvConvertException {
         try {
-            return ByteArrayUtil.toLong(this.value);
+            return ByteArrayUtil.toLong(getValue());
         } catch (IllegalArgumentException e) {
             throw new TlvConvertException("long", e.getMessage());
         }
@@ -273,7 +359,16 @@ public class Tlv {
             return true;
         }
         Tlv other = (Tlv) t;
-        return other.tag == this.tag && Arrays.equals(other.value, this.value);
+        if (other.tag != this.tag) {
+            return false;
+        }
+        // compare the contents without copying (and un-retaining) a buffer
+        ChannelBuffer thisValue = this.getValueBuffer();
+        ChannelBuffer otherValue = other.getValueBuffer();
+        if (thisValue == null || otherValue == null) {
+            return (thisValue == otherValue);
+        }
+        return thisValue.equals(otherValue);
     }
 
     /**
@@ -285,7 +380,8 @@ public class Tlv {
     public int hashCode(){
         int hash = 42;
         hash = 31 * hash + ((int) this.tag);
-        hash = 31 * hash + Arrays.hashCode(this.value);
+        ChannelBuffer thisValue = this.getValueBuffer();
+        hash = 31 * hash + (thisValue == null ? 0 : thisValue.hashCode());
         return hash;
     }
 }
@@ -0,0 +1,161 @@
+package com.cloudhopper.smpp.tlv;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open-addressing index from a TLV tag to the position of the first TLV with
+ * that tag in an ordered list of optional parameters.  Keeps lookups by tag
+ * O(1) without changing the order TLVs are encoded in.  Positions are only
+ * ever appended; anything that shifts positions (e.g. a removal) should
+ * rebuild the index from the list.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class TlvIndex {
+
+    static private final int MIN_CAPACITY = 8;
+
+    private short[] tags;
+    private int[] positions;        // -1 marks an empty slot
+    private int mask;
+    private int tagCount;           // number of distinct tags indexed
+    private int indexedCount;       // number of list entries indexed (includes duplicates)
+
+    public TlvIndex() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public TlvIndex(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    static private int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        // keep the load factor at or below 0.5
+        while (capacity < (size << 1)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static private int hash(short tag) {
+        int h = (tag & 0xFFFF) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        this.tags = new short[capacity];
+        this.positions = new int[capacity];
+        Arrays.fill(this.positions, -1);
+        this.mask = capacity - 1;
+        this.tagCount = 0;
+        this.indexedCount = 0;
+    }
+
+    /**
+     * Gets the number of list entries this index currently covers.  If this
+     * does not match the size of the list, the index is stale.
+     * @return The number of list entries indexed
+     */
+    public int getIndexedCount() {
+        return this.indexedCount;
+    }
+
+    /**
+     * Gets the position of the first TLV with the tag.
+     * @param tag The tag to search for
+     * @return The position in the list or -1 if the tag is not indexed
+     */
+    public int get(short tag) {
+        int i = hash(tag) & this.mask;
+        while (this.positions[i] >= 0) {
+            if (this.tags[i] == tag) {
+                return this.positions[i];
+            }
+            i = (i + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Indexes the next entry appended to the list.  If the tag is already
+     * indexed, the earlier position is kept (first match wins).
+     * @param tag The tag of the TLV appended
+     */
+    public void add(short tag) {
+        int position = this.indexedCount++;
+        if ((this.tagCount + 1) << 1 > this.positions.length) {
+            grow();
+        }
+        int i = hash(tag) & this.mask;
+        while (this.positions[i] >= 0) {
+            if (this.tags[i] == tag) {
+                return;
+            }
+            i = (i + 1) & this.mask;
+        }
+        this.tags[i] = tag;
+        this.positions[i] = position;
+        this.tagCount++;
+    }
+
+    private void grow() {
+        short[] oldTags = this.tags;
+        int[] oldPositions = this.positions;
+        int oldIndexedCount = this.indexedCount;
+        allocate(oldPositions.length << 1);
+        for (int j = 0; j < oldPositions.length; j++) {
+            if (oldPositions[j] >= 0) {
+                int i = hash(oldTags[j]) & this.mask;
+                while (this.positions[i] >= 0) {
+                    i = (i + 1) & this.mask;
+                }
+                this.tags[i] = oldTags[j];
+                this.positions[i] = oldPositions[j];
+                this.tagCount++;
+            }
+        }
+        this.indexedCount = oldIndexedCount;
+    }
+
+    /**
+     * Discards the current contents and indexes every TLV in the list.
+     * @param tlvs The ordered list of TLVs to index
+     */
+    public void rebuild(List<Tlv> tlvs) {
+        int size = (tlvs == null ? 0 : tlvs.size());
+        int capacity = capacityFor(size);
+        if (capacity != this.positions.length) {
+            allocate(capacity);
+        } else {
+            Arrays.fill(this.positions, -1);
+            this.tagCount = 0;
+            this.indexedCount = 0;
+        }
+        for (int j = 0; j < size; j++) {
+            add(tlvs.get(j).getTag());
+        }
+    }
+
+}
@@ -25,51 +25,90 @@ import com.cloudhopper.smpp.type.UnknownCommandIdException;
 import com.cloudhopper.smpp.type.RecoverablePduException;
 import com.cloudhopper.commons.util.HexUtil;
 import com.cloudhopper.smpp.SmppConstants;
-import com.cloudhopper.smpp.pdu.AlertNotification;
-import com.cloudhopper.smpp.pdu.BindReceiver;
-import com.cloudhopper.smpp.pdu.BindReceiverResp;
-import com.cloudhopper.smpp.pdu.BindTransceiver;
-import com.cloudhopper.smpp.pdu.BindTransceiverResp;
-import com.cloudhopper.smpp.pdu.BindTransmitter;
-import com.cloudhopper.smpp.pdu.BindTransmitterResp;
-import com.cloudhopper.smpp.pdu.CancelSm;
-import com.cloudhopper.smpp.pdu.CancelSmResp;
-import com.cloudhopper.smpp.pdu.DataSm;
-import com.cloudhopper.smpp.pdu.DataSmResp;
-import com.cloudhopper.smpp.pdu.DeliverSm;
-import com.cloudhopper.smpp.pdu.DeliverSmResp;
-import com.cloudhopper.smpp.pdu.EnquireLink;
-import com.cloudhopper.smpp.pdu.EnquireLinkResp;
-import com.cloudhopper.smpp.pdu.GenericNack;
 import com.cloudhopper.smpp.pdu.PartialPdu;
 import com.cloudhopper.smpp.pdu.PartialPduResp;
 import com.cloudhopper.smpp.pdu.Pdu;
 import com.cloudhopper.smpp.pdu.PduResponse;
-import com.cloudhopper.smpp.pdu.QuerySm;
-import com.cloudhopper.smpp.pdu.QuerySmResp;
-import com.cloudhopper.smpp.pdu.ReplaceSm;
-import com.cloudhopper.smpp.pdu.ReplaceSmResp;
-import com.cloudhopper.smpp.pdu.SubmitSm;
-import com.cloudhopper.smpp.pdu.SubmitSmResp;
-import com.cloudhopper.smpp.pdu.Unbind;
-import com.cloudhopper.smpp.pdu.UnbindResp;
 import com.cloudhopper.smpp.type.NotEnoughDataInBufferException;
 import com.cloudhopper.smpp.util.PduUtil;
 import com.cloudhopper.smpp.util.SequenceNumber;
 
-import org.jboss.netty.buffer.BigEndianHeapChannelBuffer;
+import java.nio.ByteOrder;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
 
 /**
+ * Default transcoder of PDUs.  Encoded PDUs are allocated from a
+ * ChannelBufferFactory which defaults to big endian heap buffers.  Supplying
+ * a DirectChannelBufferFactory encodes PDUs into slices of a preallocated
+ * direct buffer instead, which avoids allocating a byte array per PDU and
+ * avoids Netty copying it into a direct buffer before the socket write.
+ * <br><br>
+ * The PDU to decode into is created by looking up its command id in a
+ * PduFactoryRegistry (a single array index for standard command ids).  Vendor
+ * specific PDUs are supported by registering a PduFactory for their command
+ * id in the registry of this transcoder (its own unless one is supplied to
+ * the constructor).
  * 
  * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
  */
 public class DefaultPduTranscoder implements PduTranscoder {
 
     private final PduTranscoderContext context;
+    private final ChannelBufferFactory bufferFactory;
+    private final PduFactoryRegistry factoryRegistry;
+    private boolean zeroCopyDecodeEnabled;
 
     public DefaultPduTranscoder(PduTranscoderContext context) {
+        this(context, HeapChannelBufferFactory.getInstance(ByteOrder.BIG_ENDIAN));
+    }
+
+    /**
+     * Creates a new transcoder that encodes PDUs into buffers allocated from
+     * the supplied factory.
+     * @param context The context to use for transcoding
+     * @param bufferFactory The factory used to allocate buffers during encoding.
+     *      The factory must create big endian buffers.
+     */
+    public DefaultPduTranscoder(PduTranscoderContext context, ChannelBufferFactory bufferFactory) {
+        this(context, bufferFactory, new PduFactoryRegistry());
+    }
+
+    /**
+     * Creates a new transcoder that encodes PDUs into buffers allocated from
+     * the supplied factory and decodes PDUs created by the supplied registry.
+     * @param context The context to use for transcoding
+     * @param bufferFactory The factory used to allocate buffers during encoding.
+     *      The factory must create big endian buffers.
+     * @param factoryRegistry The registry of PDU factories used during decoding
+     */
+    public DefaultPduTranscoder(PduTranscoderContext context, ChannelBufferFactory bufferFactory, PduFactoryRegistry factoryRegistry) {
         this.context = context;
+        this.bufferFactory = bufferFactory;
+        this.factoryRegistry = factoryRegistry;
+    }
+
+    public ChannelBufferFactory getBufferFactory() {
+        return this.bufferFactory;
+    }
+
+    public PduFactoryRegistry getFactoryRegistry() {
+        return this.factoryRegistry;
+    }
+
+    public boolean isZeroCopyDecodeEnabled() {
+        return this.zeroCopyDecodeEnabled;
+    }
+
+    /**
+     * Sets if decoded PDUs keep their short_message and TLV values as slices
+     * of the buffer they were decoded from rather than copies.
+     * @see Pdu#setZeroCopyDecode(boolean)
+     * @param value True if enabled, otherwise false
+     */
+    public void setZeroCopyDecodeEnabled(boolean value) {
+        this.zeroCopyDecodeEnabled = value;
     }
 
     @Override
@@ -90,7 +129,7 @@ public class DefaultPduTranscoder implements PduTranscoder {
         }
 
         // create the buffer and add the header
-        ChannelBuffer buffer = new BigEndianHeapChannelBuffer(pdu.getCommandLength());
+        ChannelBuffer buffer = this.bufferFactory.getBuffer(ByteOrder.BIG_ENDIAN, pdu.getCommandLength());
 
         buffer.writeInt(pdu.getCommandLength());
         buffer.writeInt(pdu.getCommandId());
@@ -153,81 +192,39 @@ public class DefaultPduTranscoder implements PduTranscoder {
         // this is a major issue if the sequence number is invalid
         SequenceNumber.assertValid(sequenceNumber);
 
-        Pdu pdu = null;
-
-        // any command id with its 31st bit set to true is a response
-        if (PduUtil.isRequestCommandId(commandId)) {
-            if (commandId == SmppConstants.CMD_ID_ENQUIRE_LINK) {
-                pdu = new EnquireLink();
-            } else if (commandId == SmppConstants.CMD_ID_DELIVER_SM) {
-                pdu = new DeliverSm();
-            } else if (commandId == SmppConstants.CMD_ID_SUBMIT_SM) {
-                pdu = new SubmitSm();
-            } else if (commandId == SmppConstants.CMD_ID_DATA_SM) {
-                pdu = new DataSm();
-            } else if (commandId == SmppConstants.CMD_ID_CANCEL_SM) {
-                pdu = new CancelSm();
-            } else if (commandId == SmppConstants.CMD_ID_QUERY_SM) {
-                pdu = new QuerySm();
-            } else if (commandId == SmppConstants.CMD_ID_REPLACE_SM) {
-                pdu = new ReplaceSm();
-            } else if (commandId == SmppConstants.CMD_ID_BIND_TRANSCEIVER) {
-                pdu = new BindTransceiver();
-            } else if (commandId == SmppConstants.CMD_ID_BIND_TRANSMITTER) {
-                pdu = new BindTransmitter();
-            } else if (commandId == SmppConstants.CMD_ID_BIND_RECEIVER) {
-                pdu = new BindReceiver();
-            } else if (commandId == SmppConstants.CMD_ID_UNBIND) {
-                pdu = new Unbind();
-            } else if (commandId == SmppConstants.CMD_ID_ALERT_NOTIFICATION) {
-                pdu = new AlertNotification();
-            } else {
+        PduFactory factory = this.factoryRegistry.lookup(commandId);
+
+        if (factory == null) {
+            // any command id with its 31st bit set to true is a response
+            Pdu pdu = null;
+            String message = null;
+            if (PduUtil.isRequestCommandId(commandId)) {
                 pdu = new PartialPdu(commandId);
-            }
-        } else {
-            if (commandId == SmppConstants.CMD_ID_SUBMIT_SM_RESP) {
-                pdu = new SubmitSmResp();
-            } else if (commandId == SmppConstants.CMD_ID_DELIVER_SM_RESP) {
-                pdu = new DeliverSmResp();
-            } else if (commandId == SmppConstants.CMD_ID_DATA_SM_RESP) {
-                pdu = new DataSmResp();
-            } else if (commandId == SmppConstants.CMD_ID_CANCEL_SM_RESP) {
-                pdu = new CancelSmResp();
-            } else if (commandId == SmppConstants.CMD_ID_QUERY_SM_RESP) {
-                pdu = new QuerySmResp();
-            } else if (commandId == SmppConstants.CMD_ID_REPLACE_SM_RESP) {
-                pdu = new ReplaceSmResp();
-            } else if (commandId == SmppConstants.CMD_ID_ENQUIRE_LINK_RESP) {
-                pdu = new EnquireLinkResp();
-            } else if (commandId == SmppConstants.CMD_ID_BIND_TRANSCEIVER_RESP) {
-                pdu = new BindTransceiverResp();
-            } else if (commandId == SmppConstants.CMD_ID_BIND_RECEIVER_RESP) {
-                pdu = new BindReceiverResp();
-            } else if (commandId == SmppConstants.CMD_ID_BIND_TRANSMITTER_RESP) {
-                pdu = new BindTransmitterResp();
-            } else if (commandId == SmppConstants.CMD_ID_UNBIND_RESP) {
-                pdu = new UnbindResp();
-            } else if (commandId == SmppConstants.CMD_ID_GENERIC_NACK) {
-                pdu = new GenericNack();
+                message = "Unsupported or unknown PDU request commandId [0x" + HexUtil.toHexString(commandId) + "]";
             } else {
                 pdu = new PartialPduResp(commandId);
+                message = "Unsupported or unknown PDU response commandId [0x" + HexUtil.toHexString(commandId) + "]";
             }
+            pdu.setCommandLength(commandLength);
+            pdu.setCommandStatus(commandStatus);
+            pdu.setSequenceNumber(sequenceNumber);
+            throw new UnknownCommandIdException(pdu, message);
         }
 
+        Pdu pdu = factory.createPdu();
+        // a misbehaving (vendor) factory must not break the cast below
+        if (!PduFactoryRegistry.isValidPdu(commandId, pdu)) {
+            throw new UnrecoverablePduException("PDU factory for commandId [0x" + HexUtil.toHexString(commandId) + "] created [" + (pdu == null ? null : pdu.getClass().getName()) + "] which isn't a " + (PduUtil.isRequestCommandId(commandId) ? "request" : "response"));
+        }
+        pdu.setZeroCopyDecode(this.zeroCopyDecodeEnabled);
+
         // set pdu header values
         pdu.setCommandLength(commandLength);
         pdu.setCommandStatus(commandStatus);
         pdu.setSequenceNumber(sequenceNumber);
 
-        // check if we need to throw an exception
-        if (pdu instanceof PartialPdu) {
-            throw new UnknownCommandIdException(pdu, "Unsupported or unknown PDU request commandId [0x" + HexUtil.toHexString(commandId) + "]");
-        } else if (pdu instanceof PartialPduResp) {
-            throw new UnknownCommandIdException(pdu, "Unsupported or unknown PDU response commandId [0x" + HexUtil.toHexString(commandId) + "]");
-        }
-
         // see if we can map the command status into a message
-        if (pdu instanceof PduResponse) {
+        if (pdu.isResponse()) {
             PduResponse response = (PduResponse)pdu;
             response.setResultMessage(context.lookupResultMessage(commandStatus));
         }
@@ -0,0 +1,40 @@
+package com.cloudhopper.smpp.transcoder;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.pdu.Pdu;
+
+/**
+ * Interface for creating a new (empty) PDU instance for a specific command id.
+ * The transcoder creates the PDU via this factory and then decodes the header,
+ * body, and optional parameters into it.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public interface PduFactory {
+
+    /**
+     * Creates a new PDU instance ready to be decoded into.
+     * @return A new PDU instance
+     */
+    public Pdu createPdu();
+
+}
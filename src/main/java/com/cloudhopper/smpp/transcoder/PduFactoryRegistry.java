@@ -0,0 +1,236 @@
+package com.cloudhopper.smpp.transcoder;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.AlertNotification;
+import com.cloudhopper.smpp.pdu.BindReceiver;
+import com.cloudhopper.smpp.pdu.BindReceiverResp;
+import com.cloudhopper.smpp.pdu.BindTransceiver;
+import com.cloudhopper.smpp.pdu.BindTransceiverResp;
+import com.cloudhopper.smpp.pdu.BindTransmitter;
+import com.cloudhopper.smpp.pdu.BindTransmitterResp;
+import com.cloudhopper.smpp.pdu.CancelSm;
+import com.cloudhopper.smpp.pdu.CancelSmResp;
+import com.cloudhopper.smpp.pdu.DataSm;
+import com.cloudhopper.smpp.pdu.DataSmResp;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.pdu.DeliverSmResp;
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import com.cloudhopper.smpp.pdu.EnquireLinkResp;
+import com.cloudhopper.smpp.pdu.GenericNack;
+import com.cloudhopper.smpp.pdu.Pdu;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.QuerySm;
+import com.cloudhopper.smpp.pdu.QuerySmResp;
+import com.cloudhopper.smpp.pdu.ReplaceSm;
+import com.cloudhopper.smpp.pdu.ReplaceSmResp;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.pdu.Unbind;
+import com.cloudhopper.smpp.pdu.UnbindResp;
+import com.cloudhopper.smpp.util.PduUtil;
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of PduFactory instances indexed by command id.  Standard command
+ * ids (anything below 0x200 for both requests and responses) are looked up
+ * by indexing directly into an array; anything else (such as vendor specific
+ * command ids in the range 0x00010200 - 0x000102FF) falls back to a map.
+ * Registering a factory is thread safe (copy-on-write) so it can be done at
+ * any time, but it's meant to happen once at startup.  Lookups never lock.
+ * <br><br>
+ * There is no registry shared by the whole JVM: each transcoder created
+ * without one gets its own, so vendor specific PDUs registered for one
+ * client or server never leak into another.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class PduFactoryRegistry {
+
+    // standard command ids all fit within this (after the response bit is masked off)
+    static private final int INDEXED_SIZE = 0x200;
+
+    private volatile PduFactory[] requestFactories;
+    private volatile PduFactory[] responseFactories;
+    private volatile Map<Integer,PduFactory> otherFactories;
+
+    /**
+     * Creates a new registry with every PDU supported by this library
+     * already registered.
+     */
+    public PduFactoryRegistry() {
+        this.requestFactories = new PduFactory[INDEXED_SIZE];
+        this.responseFactories = new PduFactory[INDEXED_SIZE];
+        this.otherFactories = new HashMap<Integer,PduFactory>();
+        registerDefaults();
+    }
+
+    /**
+     * Registers (or replaces) the factory for a command id.  The factory is
+     * asked for a PDU once to check it creates a PduResponse for a response
+     * command id (and doesn't for a request command id).
+     * @param commandId The command id the factory creates PDUs for
+     * @param factory The factory to register
+     * @throws IllegalArgumentException If the factory creates a PDU of the
+     *      wrong type for the command id
+     */
+    public void register(int commandId, PduFactory factory) throws IllegalArgumentException {
+        assertValidPdu(commandId, factory.createPdu());
+        put(commandId, factory);
+    }
+
+    /**
+     * Registers (or replaces) the PDU class for a command id.  PDUs are
+     * created through its public no-arg constructor.
+     * @param commandId The command id of the PDU class
+     * @param pduClass The PDU class to register
+     * @throws IllegalArgumentException If the class has no public no-arg
+     *      constructor or is the wrong type for the command id
+     */
+    public void register(int commandId, Class<? extends Pdu> pduClass) throws IllegalArgumentException {
+        register(commandId, new ConstructorPduFactory(pduClass));
+    }
+
+    private synchronized void put(int commandId, PduFactory factory) {
+        int index = commandId & ~SmppConstants.PDU_CMD_ID_RESP_MASK;
+        if (index < INDEXED_SIZE) {
+            if (PduUtil.isRequestCommandId(commandId)) {
+                PduFactory[] factories = this.requestFactories.clone();
+                factories[index] = factory;
+                this.requestFactories = factories;
+            } else {
+                PduFactory[] factories = this.responseFactories.clone();
+                factories[index] = factory;
+                this.responseFactories = factories;
+            }
+        } else {
+            Map<Integer,PduFactory> factories = new HashMap<Integer,PduFactory>(this.otherFactories);
+            factories.put(commandId, factory);
+            this.otherFactories = factories;
+        }
+    }
+
+    /**
+     * Looks up the factory for a command id.
+     * @param commandId The command id to lookup
+     * @return The factory or null if no factory is registered for the command id
+     */
+    public PduFactory lookup(int commandId) {
+        int index = commandId & ~SmppConstants.PDU_CMD_ID_RESP_MASK;
+        if (index < INDEXED_SIZE) {
+            if (PduUtil.isRequestCommandId(commandId)) {
+                return this.requestFactories[index];
+            } else {
+                return this.responseFactories[index];
+            }
+        }
+        return this.otherFactories.get(commandId);
+    }
+
+    /**
+     * Creates a new PDU for the command id.
+     * @param commandId The command id of the PDU to create
+     * @return A new PDU or null if no factory is registered for the command id
+     */
+    public Pdu createPdu(int commandId) {
+        PduFactory factory = lookup(commandId);
+        return (factory == null ? null : factory.createPdu());
+    }
+
+    /**
+     * Checks whether a PDU is of the right type for a command id: a
+     * PduResponse for a response command id and anything else (such as
+     * alert_notification, which has no response) for a request one.
+     * @param commandId The command id
+     * @param pdu The PDU
+     * @return True if the PDU is of the right type
+     */
+    static public boolean isValidPdu(int commandId, Pdu pdu) {
+        if (PduUtil.isRequestCommandId(commandId)) {
+            return (pdu != null && !(pdu instanceof PduResponse));
+        } else {
+            return (pdu instanceof PduResponse);
+        }
+    }
+
+    static private void assertValidPdu(int commandId, Pdu pdu) throws IllegalArgumentException {
+        if (!isValidPdu(commandId, pdu)) {
+            throw new IllegalArgumentException("Factory for commandId [0x" + Integer.toHexString(commandId) + "] must create a " + (PduUtil.isRequestCommandId(commandId) ? "request" : "PduResponse") + " but created [" + (pdu == null ? null : pdu.getClass().getName()) + "]");
+        }
+    }
+
+    private void registerDefaults() {
+        // requests
+        register(SmppConstants.CMD_ID_ENQUIRE_LINK, EnquireLink.class);
+        register(SmppConstants.CMD_ID_DELIVER_SM, DeliverSm.class);
+        register(SmppConstants.CMD_ID_SUBMIT_SM, SubmitSm.class);
+        register(SmppConstants.CMD_ID_DATA_SM, DataSm.class);
+        register(SmppConstants.CMD_ID_CANCEL_SM, CancelSm.class);
+        register(SmppConstants.CMD_ID_QUERY_SM, QuerySm.class);
+        register(SmppConstants.CMD_ID_REPLACE_SM, ReplaceSm.class);
+        register(SmppConstants.CMD_ID_BIND_TRANSCEIVER, BindTransceiver.class);
+        register(SmppConstants.CMD_ID_BIND_TRANSMITTER, BindTransmitter.class);
+        register(SmppConstants.CMD_ID_BIND_RECEIVER, BindReceiver.class);
+        register(SmppConstants.CMD_ID_UNBIND, Unbind.class);
+        register(SmppConstants.CMD_ID_ALERT_NOTIFICATION, AlertNotification.class);
+        // responses
+        register(SmppConstants.CMD_ID_SUBMIT_SM_RESP, SubmitSmResp.class);
+        register(SmppConstants.CMD_ID_DELIVER_SM_RESP, DeliverSmResp.class);
+        register(SmppConstants.CMD_ID_DATA_SM_RESP, DataSmResp.class);
+        register(SmppConstants.CMD_ID_CANCEL_SM_RESP, CancelSmResp.class);
+        register(SmppConstants.CMD_ID_QUERY_SM_RESP, QuerySmResp.class);
+        register(SmppConstants.CMD_ID_REPLACE_SM_RESP, ReplaceSmResp.class);
+        register(SmppConstants.CMD_ID_ENQUIRE_LINK_RESP, EnquireLinkResp.class);
+        register(SmppConstants.CMD_ID_BIND_TRANSCEIVER_RESP, BindTransceiverResp.class);
+        register(SmppConstants.CMD_ID_BIND_RECEIVER_RESP, BindReceiverResp.class);
+        register(SmppConstants.CMD_ID_BIND_TRANSMITTER_RESP, BindTransmitterResp.class);
+        register(SmppConstants.CMD_ID_UNBIND_RESP, UnbindResp.class);
+        register(SmppConstants.CMD_ID_GENERIC_NACK, GenericNack.class);
+    }
+
+    /**
+     * Creates PDUs through the public no-arg constructor of a PDU class.
+     */
+    static private class ConstructorPduFactory implements PduFactory {
+        private final Constructor<? extends Pdu> constructor;
+
+        public ConstructorPduFactory(Class<? extends Pdu> pduClass) throws IllegalArgumentException {
+            try {
+                this.constructor = pduClass.getConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("PDU class [" + pduClass.getName() + "] has no public no-arg constructor", e);
+            }
+        }
+
+        @Override
+        public Pdu createPdu() {
+            try {
+                return this.constructor.newInstance();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create PDU [" + this.constructor.getDeclaringClass().getName() + "]", e);
+            }
+        }
+    }
+
+}
@@ -32,6 +32,11 @@ public class SmppConnectionConfiguration {
     private String host;
     private int port;
     private long connectTimeout;
+    // socket options
+    private boolean tcpNoDelay;
+    private boolean keepAlive;
+    private int sendBufferSize;
+    private int receiveBufferSize;
 
     public SmppConnectionConfiguration() {
         this(null, 0, SmppConstants.DEFAULT_CONNECT_TIMEOUT);
@@ -41,6 +46,10 @@ public class SmppConnectionConfiguration {
         this.host = host;
         this.port = port;
         this.connectTimeout = connectTimeout;
+        this.tcpNoDelay = SmppConstants.DEFAULT_TCP_NO_DELAY;
+        this.keepAlive = SmppConstants.DEFAULT_TCP_KEEP_ALIVE;
+        this.sendBufferSize = SmppConstants.DEFAULT_SEND_BUFFER_SIZE;
+        this.receiveBufferSize = SmppConstants.DEFAULT_RECEIVE_BUFFER_SIZE;
     }
 
     public void setHost(String value) {
@@ -67,4 +76,58 @@ public class SmppConnectionConfiguration {
         return this.connectTimeout;
     }
 
+    /**
+     * Sets whether TCP_NODELAY is set on the socket (Nagle's algorithm is
+     * disabled).  With Nagle enabled, a small PDU such as a submit_sm_resp
+     * can be held back until the previous segment is acknowledged, which
+     * combined with delayed ACKs adds tens of ms to a round trip.  Defaults
+     * to false (the socket's own default) so existing deployments keep the
+     * same segmenting on the wire.
+     * @param value True to disable Nagle's algorithm
+     */
+    public void setTcpNoDelay(boolean value) {
+        this.tcpNoDelay = value;
+    }
+
+    public boolean isTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    /**
+     * Sets whether SO_KEEPALIVE is set on the socket.  Defaults to false,
+     * since enquire_link is the usual way to detect dead SMPP connections.
+     * @param value True to enable TCP keepalive
+     */
+    public void setKeepAlive(boolean value) {
+        this.keepAlive = value;
+    }
+
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    /**
+     * Sets SO_SNDBUF on the socket.  Defaults to -1 (the system default).
+     * @param value The send buffer size in bytes or -1
+     */
+    public void setSendBufferSize(int value) {
+        this.sendBufferSize = value;
+    }
+
+    public int getSendBufferSize() {
+        return this.sendBufferSize;
+    }
+
+    /**
+     * Sets SO_RCVBUF on the socket.  Defaults to -1 (the system default).
+     * @param value The receive buffer size in bytes or -1
+     */
+    public void setReceiveBufferSize(int value) {
+        this.receiveBufferSize = value;
+    }
+
+    public int getReceiveBufferSize() {
+        return this.receiveBufferSize;
+    }
+
 }
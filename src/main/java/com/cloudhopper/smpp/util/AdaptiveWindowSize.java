@@ -0,0 +1,199 @@
+package com.cloudhopper.smpp.util;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSendWindow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks the "effective" size of a send window using additive increase and
+ * multiplicative decrease (AIMD), the same scheme TCP uses for its congestion
+ * window.  Every response with a latency under the threshold grows the size
+ * by 1/size (about one slot per window's worth of responses), up to the max
+ * size.  A throttling status (ESME_RTHROTTLED or ESME_RMSGQFUL), a latency
+ * spike, or an expired request halves the size, down to the min size.  Only
+ * one decrease happens per round trip: responses to requests that were sent
+ * before the last decrease are not counted again.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class AdaptiveWindowSize {
+
+    private final int minSize;
+    private final int maxSize;
+    private final long latencyThreshold;
+    // fractional size, so the additive increase can be spread over a window
+    private double size;
+    private long lastDecreaseTime;
+    // (int)size, readable without the lock by callers checking for a free slot
+    private volatile int effectiveSize;
+    // callers waiting for a free slot are signalled when a request leaves the
+    // window (or the size increases) rather than polling the window
+    private final ReentrantLock slotLock;
+    private final Condition slotFreed;
+    private final AtomicInteger slotWaiters;
+
+    /**
+     * Creates a new adaptive window size that starts at the max size.
+     * @param minSize The min size the window will shrink to
+     * @param maxSize The max size the window will grow to
+     * @param latencyThreshold A response latency (ms) above this is treated
+     *      as a spike, or <= 0 to only react to throttling statuses
+     */
+    public AdaptiveWindowSize(int minSize, int maxSize, long latencyThreshold) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be > 0");
+        }
+        this.minSize = Math.max(1, Math.min(minSize, maxSize));
+        this.maxSize = maxSize;
+        this.latencyThreshold = latencyThreshold;
+        this.size = maxSize;
+        this.lastDecreaseTime = 0;
+        this.effectiveSize = maxSize;
+        this.slotLock = new ReentrantLock();
+        this.slotFreed = this.slotLock.newCondition();
+        this.slotWaiters = new AtomicInteger(0);
+    }
+
+    public int getMinSize() {
+        return this.minSize;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public long getLatencyThreshold() {
+        return this.latencyThreshold;
+    }
+
+    /**
+     * Gets the current effective size of the window.
+     * @return The effective size
+     */
+    public int getSize() {
+        return this.effectiveSize;
+    }
+
+    static public boolean isThrottled(int commandStatus) {
+        return (commandStatus == SmppConstants.STATUS_THROTTLED || commandStatus == SmppConstants.STATUS_MSGQFUL);
+    }
+
+    /**
+     * Adjusts the size based on a response received for a request.
+     * @param acceptTimestamp The time the request was accepted into the window
+     * @param latency The time from when the request was accepted into the
+     *      window until its response was received
+     * @param commandStatus The command status of the response
+     */
+    public void responseReceived(long acceptTimestamp, long latency, int commandStatus) {
+        synchronized (this) {
+            if (isThrottled(commandStatus) || (this.latencyThreshold > 0 && latency > this.latencyThreshold)) {
+                decrease(acceptTimestamp);
+            } else if (this.size < this.maxSize) {
+                this.size = Math.min(this.maxSize, this.size + (1.0d / this.size));
+                this.effectiveSize = (int)this.size;
+            }
+        }
+        // the request left the window, so a slot opened up
+        requestRemoved();
+    }
+
+    /**
+     * Adjusts the size based on a request that expired without a response.
+     * @param acceptTimestamp The time the request was accepted into the window
+     */
+    public void requestExpired(long acceptTimestamp) {
+        synchronized (this) {
+            decrease(acceptTimestamp);
+        }
+        // the request left the window, so a slot may have opened up
+        requestRemoved();
+    }
+
+    /**
+     * Signals callers waiting in awaitFreeSlot() that a request left the
+     * window without a response or expiring (e.g. it was cancelled or its
+     * write failed).  Cheap if nobody is waiting.
+     */
+    public void requestRemoved() {
+        if (this.slotWaiters.get() == 0) {
+            return;
+        }
+        this.slotLock.lock();
+        try {
+            this.slotFreed.signalAll();
+        } finally {
+            this.slotLock.unlock();
+        }
+    }
+
+    private void decrease(long acceptTimestamp) {
+        if (acceptTimestamp < this.lastDecreaseTime) {
+            // sent before the last decrease, already accounted for
+            return;
+        }
+        this.size = Math.max(this.minSize, Math.floor(this.size / 2));
+        this.effectiveSize = (int)this.size;
+        this.lastDecreaseTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Waits until the number of pending requests in the window is under the
+     * effective size.  The limit is "soft": callers racing each other may
+     * exceed it by a few requests, the window itself enforces the hard max.
+     * A waiting caller is woken by responseReceived(), requestExpired() or
+     * requestRemoved(), so a request cancelled directly on its future (which
+     * none of them see) only frees its slot for waiters once another request
+     * leaves the window.
+     * @param window The send window
+     * @param timeoutMillis The max time to wait
+     * @return True if there is a free slot, false if timed out
+     * @throws InterruptedException
+     */
+    public boolean awaitFreeSlot(SmppSendWindow window, long timeoutMillis) throws InterruptedException {
+        if (window.getSize() < this.effectiveSize) {
+            return true;
+        }
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.slotLock.lockInterruptibly();
+        // registered before re-checking the window, so a request leaving it
+        // after the check always sees a waiter to signal
+        this.slotWaiters.incrementAndGet();
+        try {
+            while (window.getSize() >= this.effectiveSize) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = this.slotFreed.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            this.slotWaiters.decrementAndGet();
+            this.slotLock.unlock();
+        }
+    }
+
+}
@@ -27,7 +27,7 @@ import com.cloudhopper.smpp.type.RecoverablePduException;
 import com.cloudhopper.smpp.type.TerminatingNullByteNotFoundException;
 import com.cloudhopper.smpp.type.UnrecoverablePduException;
 import com.cloudhopper.smpp.tlv.Tlv;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +39,12 @@ import org.slf4j.LoggerFactory;
 public class ChannelBufferUtil {
     private static final Logger logger = LoggerFactory.getLogger(ChannelBufferUtil.class);
 
+    static private final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    // direct-mapped cache of recently read short strings (must be a power of 2)
+    static private final int STRING_CACHE_SIZE = 512;
+    static private final int STRING_CACHE_MAX_LENGTH = 16;
+    static private final String[] STRING_CACHE = new String[STRING_CACHE_SIZE];
+
     /**
      * Read and create a new Address from a buffer.  Checks if there is
      * a minimum number of bytes readable from the buffer.
@@ -84,6 +90,18 @@ public class ChannelBufferUtil {
      * @throws NotEnoughDataInBufferException
      */
     static public Tlv readTlv(ChannelBuffer buffer) throws NotEnoughDataInBufferException {
+        return readTlv(buffer, false);
+    }
+
+    /**
+     * Reads a TLV from a buffer.  If zeroCopy is true, the value of the TLV
+     * is a slice of the buffer rather than a copy of its bytes.
+     * @param buffer The buffer to read from
+     * @param zeroCopy If true the TLV value is a slice of the buffer
+     * @return A new TLV instance
+     * @throws NotEnoughDataInBufferException
+     */
+    static public Tlv readTlv(ChannelBuffer buffer, boolean zeroCopy) throws NotEnoughDataInBufferException {
         // a TLV is at least 4 bytes (tag+length)
         if (buffer.readableBytes() < 4) {
             throw new NotEnoughDataInBufferException("Parsing TLV tag and length", buffer.readableBytes(), 4);
@@ -97,6 +115,10 @@ public class ChannelBufferUtil {
             throw new NotEnoughDataInBufferException("Parsing TLV value", buffer.readableBytes(), length);
         }
 
+        if (zeroCopy) {
+            return new Tlv(tag, buffer.readSlice(length), null);
+        }
+
         byte[] value = new byte[length];
         buffer.readBytes(value);
 
@@ -108,27 +130,43 @@ public class ChannelBufferUtil {
         if (tlv == null) {
             return;
         }
+        // a single read of the value, whether it's retained as a buffer or not
+        ChannelBuffer value = tlv.getValueBuffer();
         buffer.writeShort(tlv.getTag());
-        buffer.writeShort(tlv.getLength());
-        if (tlv.getValue() != null) {
-            buffer.writeBytes(tlv.getValue());
+        buffer.writeShort(value == null ? 0 : value.readableBytes());
+        if (value != null) {
+            buffer.writeBytes(value);
         }
     }
 
     /**
      * Writes a C-String (null terminated) to a buffer.  If the String is null
      * this method will only write out the NULL byte (0x00) to the buffer.
+     * The String is encoded as ISO-8859-1 (any character outside of it is
+     * written as a '?') directly into the buffer without any intermediate
+     * byte array or charset lookup.  Unlike String.getBytes(), each half of
+     * a surrogate pair is written as its own '?', so exactly one byte is
+     * written per char as PduUtil.calculateByteSizeOfNullTerminatedString()
+     * expects.
      * @param buffer
      * @param value
-     * @throws UnsupportedEncodingException
+     * @throws UnrecoverablePduException
      */
     static public void writeNullTerminatedString(ChannelBuffer buffer, String value) throws UnrecoverablePduException {
         if (value != null) {
-            try {
-                byte[] bytes = value.getBytes("ISO-8859-1");
-                buffer.writeBytes(bytes);
-            } catch (UnsupportedEncodingException e) {
-                throw new UnrecoverablePduException(e.getMessage(), e);
+            int length = value.length();
+            if (buffer.hasArray() && buffer.writableBytes() >= length) {
+                // fast path: write straight into the backing array
+                byte[] array = buffer.array();
+                int offset = buffer.arrayOffset() + buffer.writerIndex();
+                for (int i = 0; i < length; i++) {
+                    array[offset+i] = toLatin1(value.charAt(i));
+                }
+                buffer.writerIndex(buffer.writerIndex() + length);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    buffer.writeByte(toLatin1(value.charAt(i)));
+                }
             }
         }
         // always write null byte
@@ -140,7 +178,9 @@ public class ChannelBufferUtil {
      * attempt to find the null byte and read all data up to and including
      * the null byte.  The returned String does not include the null byte.
      * Will throw an exception if no null byte is found and it runs out of data
-     * in the buffer to read.
+     * in the buffer to read.  Short values (such as service types and short
+     * codes) that repeat from PDU to PDU are returned from a small cache rather
+     * than a new String being created each time.
      * @param buffer
      * @return
      * @throws TerminatingNullByteNotFoundException
@@ -154,43 +194,72 @@ public class ChannelBufferUtil {
             return null;
         }
 
-        // the reader index is defaulted to the readerIndex
-        int offset = buffer.readerIndex();
-        int zeroPos = 0;
-
         // search for NULL byte until we hit end or find it
-        while ((zeroPos < maxLength) && (buffer.getByte(zeroPos+offset) != 0x00)) {
-            zeroPos++;
-        }
+        int zeroPos = buffer.bytesBefore((byte)0x00);
 
-        if (zeroPos >= maxLength) {
+        if (zeroPos < 0) {
             // a NULL byte was not found
             throw new TerminatingNullByteNotFoundException("Terminating null byte not found after searching [" + maxLength + "] bytes");
         }
 
         // at this point, we found a terminating zero
-        String result = null;
-        if (zeroPos > 0) {
-            // read a new byte array
-            byte[] bytes = new byte[zeroPos];
-            buffer.readBytes(bytes);
-            try {
-                result = new String(bytes, "ISO-8859-1");
-            } catch (UnsupportedEncodingException e) {
-                logger.error("Impossible error", e);
-            }
-        } else {
-            result = "";
+        String result = decodeLatin1(buffer, buffer.readerIndex(), zeroPos);
+
+        // skip over the string and the null byte
+        buffer.skipBytes(zeroPos + 1);
+
+        return result;
+    }
+
+    static private byte toLatin1(char c) {
+        return (c <= 0xFF ? (byte)c : (byte)'?');
+    }
+
+    static private String decodeLatin1(ChannelBuffer buffer, int index, int length) {
+        if (length == 0) {
+            return "";
         }
 
-        // at this point, we have just one more byte to skip over (the null byte)
-        byte b = buffer.readByte();
-        if (b != 0x00) {
-            logger.error("Impossible error: last byte read SHOULD have been a null byte, but was [" + b + "]");
+        if (length > STRING_CACHE_MAX_LENGTH) {
+            return newLatin1String(buffer, index, length);
         }
 
-        return result;
+        // same hash as String.hashCode() would calculate
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31*hash + (buffer.getByte(index+i) & 0xFF);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+
+        // NOTE: races between threads only ever cause a cache miss
+        String cached = STRING_CACHE[slot];
+        if (cached != null && cached.length() == length && cached.hashCode() == hash && isLatin1Equal(cached, buffer, index)) {
+            return cached;
+        }
+
+        String value = newLatin1String(buffer, index, length);
+        STRING_CACHE[slot] = value;
+        return value;
+    }
+
+    static private boolean isLatin1Equal(String value, ChannelBuffer buffer, int index) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != (char)(buffer.getByte(index+i) & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    static private String newLatin1String(ChannelBuffer buffer, int index, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + index, length, ISO_8859_1);
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char)(buffer.getByte(index+i) & 0xFF);
+        }
+        return new String(chars);
+    }
 
 }
@@ -22,7 +22,10 @@ package com.cloudhopper.smpp.util;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -30,20 +33,37 @@ import java.util.concurrent.ThreadFactory;
  */
 public class DaemonExecutors {
 
+    static private final ThreadFactory DAEMON_THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
     /**
      * Utility method for creating a cached pool of "daemon" threads.  A daemon
      * thread does not limit the JVM from exiting if they aren't shutdown.
      * @return A new cached pool of daemon threads
      */
     static public ExecutorService newCachedDaemonThreadPool() {
-        return Executors.newCachedThreadPool(new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(r);
-                t.setDaemon(true);
-                return t;
-            }
-        });
+        return Executors.newCachedThreadPool(DAEMON_THREAD_FACTORY);
+    }
+
+    /**
+     * Utility method for creating a pool of at most maxThreads "daemon"
+     * threads.  Tasks queue up (unbounded) while all threads are busy, and
+     * idle threads exit after the keep alive time, so an idle pool has no
+     * threads at all.
+     * @param maxThreads The max number of threads
+     * @param keepAliveMillis The time an idle thread is kept around
+     * @return A new bounded pool of daemon threads
+     */
+    static public ExecutorService newBoundedDaemonThreadPool(int maxThreads, long keepAliveMillis) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, keepAliveMillis, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), DAEMON_THREAD_FACTORY);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
 }
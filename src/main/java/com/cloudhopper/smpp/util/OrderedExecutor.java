@@ -0,0 +1,118 @@
+package com.cloudhopper.smpp.util;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor that runs its tasks one at a time in the order they were submitted,
+ * but on the threads of another (usually shared) executor.  Many instances
+ * can share one thread pool -- e.g. one instance per session -- and tasks
+ * for a session never run concurrently or out of order, while tasks for
+ * different sessions run in parallel.  To keep one busy instance from hogging
+ * a thread, at most MAX_TASKS_PER_RUN tasks are run before the remaining
+ * ones are handed back to the underlying executor.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class OrderedExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(OrderedExecutor.class);
+
+    static public final int MAX_TASKS_PER_RUN = 64;
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks;
+    private final AtomicBoolean scheduled;
+    private final Runnable runner;
+
+    public OrderedExecutor(Executor executor) {
+        this.executor = executor;
+        this.tasks = new ConcurrentLinkedQueue<Runnable>();
+        this.scheduled = new AtomicBoolean(false);
+        this.runner = new Runnable() {
+            @Override
+            public void run() {
+                runTasks();
+            }
+        };
+    }
+
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Gets the number of tasks waiting to be run.
+     * @return The number of tasks waiting to be run
+     */
+    public int getQueueSize() {
+        return this.tasks.size();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        this.tasks.offer(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this.runner);
+            } catch (RejectedExecutionException e) {
+                this.scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void runTasks() {
+        try {
+            for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+                Runnable task = this.tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.warn("Task threw an uncaught exception: ", t);
+                }
+            }
+        } finally {
+            this.scheduled.set(false);
+        }
+        // tasks may have been added after we stopped polling
+        if (!this.tasks.isEmpty()) {
+            try {
+                schedule();
+            } catch (RejectedExecutionException e) {
+                logger.error("Underlying executor rejected running [{}] remaining tasks", this.tasks.size());
+            }
+        }
+    }
+}
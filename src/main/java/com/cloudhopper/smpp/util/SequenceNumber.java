@@ -20,10 +20,13 @@ package com.cloudhopper.smpp.util;
  * #L%
  */
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Utility class for atomically generating SMPP PDU sequence numbers.  This
  * implementation will atomically increment the sequence number and wrap it
- * around back to 1 when it hits the max 0x7FFFFFFF.
+ * around back to 1 when it hits the max 0x7FFFFFFF.  No locks are taken so
+ * multiple threads sending on the same session don't contend on a monitor.
  * 
  * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
  */
@@ -36,33 +39,32 @@ public class SequenceNumber {
     public static final int DEFAULT_VALUE = 0x00000001;
     public static final int MAX_VALUE = 0x7FFFFFFF;
 
-    private int value;
+    private final AtomicInteger value;
 
     public SequenceNumber() {
-        this.value = DEFAULT_VALUE;
+        this.value = new AtomicInteger(DEFAULT_VALUE);
     }
 
     public SequenceNumber(int initialValue) throws InvalidSequenceNumberException {
         assertValid(initialValue);
-        this.value = initialValue;
+        this.value = new AtomicInteger(initialValue);
     }
 
     /**
-     * Get the next number in this sequence's scheme. This method is synchronized
-     * so its safe for multiple threads to call.
+     * Get the next number in this sequence's scheme. This method is lock-free
+     * (a compare-and-set loop) so its safe for multiple threads to call and
+     * they won't block each other.
      */
-    synchronized public int next() {
-        // the next value is the current value
-        int nextValue = this.value;
-
-        if (this.value == MAX_VALUE) {
-            // wrap this around back to 1
-            this.value = DEFAULT_VALUE;
-        } else {
-            this.value++;
+    public int next() {
+        while (true) {
+            // the next value is the current value
+            int nextValue = this.value.get();
+            // wrap this around back to 1 once we hit the max
+            int newValue = (nextValue == MAX_VALUE ? DEFAULT_VALUE : nextValue + 1);
+            if (this.value.compareAndSet(nextValue, newValue)) {
+                return nextValue;
+            }
         }
-
-        return nextValue;
     }
 
     /**
@@ -72,16 +74,16 @@ public class SequenceNumber {
      * increasing the sequence. Multiple calls to <code>peek</code> will
      * return the same number until a call to <code>next()</code> is made.
      */
-    synchronized public int peek() {
-        return this.value;
+    public int peek() {
+        return this.value.get();
     }
 
     /**
      * Reset the sequence scheme to the beginning of the sequence (min value
      * which is 1).
      */
-    synchronized public void reset() {
-        this.value = DEFAULT_VALUE;
+    public void reset() {
+        this.value.set(DEFAULT_VALUE);
     }
 
     static public void assertValid(int sequenceNumber) throws InvalidSequenceNumberException {
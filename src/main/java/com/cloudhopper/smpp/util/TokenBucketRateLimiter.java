@@ -0,0 +1,97 @@
+package com.cloudhopper.smpp.util;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket that paces callers to a max rate with some burst
+ * credit.  Implemented as a "generic cell rate algorithm" (GCRA): the only
+ * state is the theoretical arrival time of the next permit, which is updated
+ * with a compare-and-set.  A caller reserves a permit and is told exactly how
+ * long until it's due, so it can schedule the work for then rather than
+ * sleeping, and no thread ever polls or queues on a lock.  The
+ * bucket can also be paused for a period (e.g. when the remote endpoint says
+ * it is being throttled).
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;       // time between permits
+    private final long burstNanos;          // credit that can be used back-to-back
+    private final AtomicLong nextTime;      // theoretical arrival time
+
+    /**
+     * Creates a new token bucket.
+     * @param permitsPerSecond The max rate or <= 0 for an unlimited rate
+     *      (only pausing has any effect)
+     * @param burst The number of permits that can be acquired back-to-back
+     *      once the bucket has been idle (min 1)
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        this.intervalNanos = (permitsPerSecond > 0 ? (long)(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0);
+        this.burstNanos = this.intervalNanos * (Math.max(1, burst) - 1);
+        this.nextTime = new AtomicLong(System.nanoTime());
+    }
+
+    public double getPermitsPerSecond() {
+        return (this.intervalNanos > 0 ? (double)TimeUnit.SECONDS.toNanos(1) / this.intervalNanos : -1);
+    }
+
+    /**
+     * Reserves a permit if it is available within the max wait time.
+     * @param maxWaitNanos The max time the caller is willing to wait
+     * @return The time in nanoseconds to wait before using the permit (0 if
+     *      available now), or -1 if not available within the max wait time
+     *      (in which case nothing was reserved)
+     */
+    public long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long next = this.nextTime.get();
+            long wait = Math.max(0, next - this.burstNanos - now);
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (this.nextTime.compareAndSet(next, Math.max(now, next) + this.intervalNanos)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * Pauses the bucket so no permits are available for the period.  Any
+     * burst credit is used up as well, so sending resumes at the max rate.
+     * @param pauseMillis The period in milliseconds
+     */
+    public void pause(long pauseMillis) {
+        while (true) {
+            long next = this.nextTime.get();
+            long resume = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseMillis) + this.burstNanos;
+            if (next >= resume || this.nextTime.compareAndSet(next, resume)) {
+                return;
+            }
+        }
+    }
+
+}
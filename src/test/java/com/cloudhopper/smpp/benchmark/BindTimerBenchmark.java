@@ -0,0 +1,114 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.util.HashedWheelTimer;
+import org.jboss.netty.util.Timeout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Simulates the bind timeout handling of a connection storm (e.g. thousands of
+ * ESMEs reconnecting at once after a failover): for every accepted connection
+ * a bind timeout is scheduled, then cancelled once the connection binds.
+ * Compares the java.util.Timer DefaultSmppServer used to use (a binary heap
+ * that keeps cancelled tasks until they'd have run) against the
+ * HashedWheelTimer it uses now.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindTimerBenchmark {
+
+    static private final long BIND_TIMEOUT = 5000;
+
+    @Param({"1000", "10000"})
+    public int connections;
+
+    private Timer timer;
+    private HashedWheelTimer wheelTimer;
+    private TimerTask[] tasks;
+    private Timeout[] timeouts;
+
+    @Setup
+    public void setup() {
+        this.timer = new Timer("BindTimerBenchmark-Timer", true);
+        this.wheelTimer = new HashedWheelTimer();
+        this.tasks = new TimerTask[connections];
+        this.timeouts = new Timeout[connections];
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.timer.cancel();
+        this.wheelTimer.stop();
+    }
+
+    @Benchmark
+    public int stormTimer() {
+        for (int i = 0; i < connections; i++) {
+            this.tasks[i] = new TimerTask() {
+                @Override
+                public void run() {
+                }
+            };
+            this.timer.schedule(this.tasks[i], BIND_TIMEOUT);
+        }
+        for (int i = 0; i < connections; i++) {
+            this.tasks[i].cancel();
+        }
+        return connections;
+    }
+
+    @Benchmark
+    public int stormWheelTimer() {
+        for (int i = 0; i < connections; i++) {
+            this.timeouts[i] = this.wheelTimer.newTimeout(new org.jboss.netty.util.TimerTask() {
+                @Override
+                public void run(Timeout timeout) {
+                }
+            }, BIND_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        for (int i = 0; i < connections; i++) {
+            this.timeouts[i].cancel();
+        }
+        return connections;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.util.ChannelBufferUtil;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures reading and writing the null terminated (C-octet) strings that
+ * make up most of the mandatory parameters of a PDU.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelBufferUtilBenchmark {
+
+    // typical lengths: service_type, an msisdn, and a message id
+    @Param({ "0", "5", "11", "64" })
+    public int length;
+
+    private String value;
+    private ChannelBuffer readBuffer;
+    private ChannelBuffer writeBuffer;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((char)('0' + (i % 10)));
+        }
+        this.value = sb.toString();
+        this.readBuffer = ChannelBuffers.buffer(length+1);
+        ChannelBufferUtil.writeNullTerminatedString(this.readBuffer, this.value);
+        this.writeBuffer = ChannelBuffers.buffer(length+1);
+    }
+
+    @Benchmark
+    public String readNullTerminatedString() throws Exception {
+        this.readBuffer.readerIndex(0);
+        return ChannelBufferUtil.readNullTerminatedString(this.readBuffer);
+    }
+
+    @Benchmark
+    public ChannelBuffer writeNullTerminatedString() throws Exception {
+        this.writeBuffer.clear();
+        ChannelBufferUtil.writeNullTerminatedString(this.writeBuffer, this.value);
+        return this.writeBuffer;
+    }
+
+}
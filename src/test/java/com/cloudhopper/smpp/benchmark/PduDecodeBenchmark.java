@@ -0,0 +1,172 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.HexUtil;
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.*;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoder;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoderContext;
+import com.cloudhopper.smpp.transcoder.PduFactoryRegistry;
+import com.cloudhopper.smpp.transcoder.PduTranscoder;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-PDU cost of creating the PDU instance for a command id
+ * (the registry vs. the if/else chain DefaultPduTranscoder used to have) and
+ * the cost of a full decode of the hottest PDUs.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PduDecodeBenchmark {
+
+    @Param({ "submit_sm", "submit_sm_resp", "deliver_sm", "deliver_sm_resp", "enquire_link", "enquire_link_resp" })
+    public String pduType;
+
+    private PduTranscoder transcoder;
+    private PduFactoryRegistry registry;
+    private ChannelBuffer buffer;
+    private int commandId;
+
+    @Setup
+    public void setup() throws Exception {
+        this.transcoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext());
+        this.registry = new PduFactoryRegistry();
+        String hex = null;
+        if (pduType.equals("submit_sm")) {
+            hex = "00000039000000040000000000004FE80001013430343034000101343439353133363139323000000000000001000000084024232125262F3A";
+        } else if (pduType.equals("submit_sm_resp")) {
+            hex = "0000001c80000004000000000a342ee1393432353834333135393400";
+        } else if (pduType.equals("deliver_sm_resp")) {
+            hex = "0000001c800000050000000000116ac7393432353834333135393400";
+        } else if (pduType.equals("deliver_sm")) {
+            hex = "000000400000000500000000000000030002013837363534333231000409343034303400000000000000000000084024232125262F3A000E0001010006000101";
+        } else if (pduType.equals("enquire_link")) {
+            hex = "0000001000000015000000000a342ee7";
+        } else if (pduType.equals("enquire_link_resp")) {
+            hex = "0000001080000015000000000a342eed";
+        } else {
+            throw new IllegalArgumentException("Unsupported pduType [" + pduType + "]");
+        }
+        this.buffer = ChannelBuffers.wrappedBuffer(HexUtil.toByteArray(hex));
+        this.commandId = this.buffer.getInt(4);
+    }
+
+    @Benchmark
+    public Pdu dispatchRegistry() {
+        return this.registry.createPdu(this.commandId);
+    }
+
+    @Benchmark
+    public Pdu dispatchIfChain() {
+        return createPduByIfChain(this.commandId);
+    }
+
+    @Benchmark
+    public Pdu decode() throws Exception {
+        this.buffer.readerIndex(0);
+        return this.transcoder.decode(this.buffer);
+    }
+
+    /**
+     * Copy of the if/else chain DefaultPduTranscoder.doDecode used before
+     * the PduFactoryRegistry to serve as a baseline.
+     */
+    static private Pdu createPduByIfChain(int commandId) {
+        if ((commandId & SmppConstants.PDU_CMD_ID_RESP_MASK) == 0) {
+            if (commandId == SmppConstants.CMD_ID_ENQUIRE_LINK) {
+                return new EnquireLink();
+            } else if (commandId == SmppConstants.CMD_ID_DELIVER_SM) {
+                return new DeliverSm();
+            } else if (commandId == SmppConstants.CMD_ID_SUBMIT_SM) {
+                return new SubmitSm();
+            } else if (commandId == SmppConstants.CMD_ID_DATA_SM) {
+                return new DataSm();
+            } else if (commandId == SmppConstants.CMD_ID_CANCEL_SM) {
+                return new CancelSm();
+            } else if (commandId == SmppConstants.CMD_ID_QUERY_SM) {
+                return new QuerySm();
+            } else if (commandId == SmppConstants.CMD_ID_REPLACE_SM) {
+                return new ReplaceSm();
+            } else if (commandId == SmppConstants.CMD_ID_BIND_TRANSCEIVER) {
+                return new BindTransceiver();
+            } else if (commandId == SmppConstants.CMD_ID_BIND_TRANSMITTER) {
+                return new BindTransmitter();
+            } else if (commandId == SmppConstants.CMD_ID_BIND_RECEIVER) {
+                return new BindReceiver();
+            } else if (commandId == SmppConstants.CMD_ID_UNBIND) {
+                return new Unbind();
+            } else if (commandId == SmppConstants.CMD_ID_ALERT_NOTIFICATION) {
+                return new AlertNotification();
+            } else {
+                return new PartialPdu(commandId);
+            }
+        } else {
+            if (commandId == SmppConstants.CMD_ID_SUBMIT_SM_RESP) {
+                return new SubmitSmResp();
+            } else if (commandId == SmppConstants.CMD_ID_DELIVER_SM_RESP) {
+                return new DeliverSmResp();
+            } else if (commandId == SmppConstants.CMD_ID_DATA_SM_RESP) {
+                return new DataSmResp();
+            } else if (commandId == SmppConstants.CMD_ID_CANCEL_SM_RESP) {
+                return new CancelSmResp();
+            } else if (commandId == SmppConstants.CMD_ID_QUERY_SM_RESP) {
+                return new QuerySmResp();
+            } else if (commandId == SmppConstants.CMD_ID_REPLACE_SM_RESP) {
+                return new ReplaceSmResp();
+            } else if (commandId == SmppConstants.CMD_ID_ENQUIRE_LINK_RESP) {
+                return new EnquireLinkResp();
+            } else if (commandId == SmppConstants.CMD_ID_BIND_TRANSCEIVER_RESP) {
+                return new BindTransceiverResp();
+            } else if (commandId == SmppConstants.CMD_ID_BIND_RECEIVER_RESP) {
+                return new BindReceiverResp();
+            } else if (commandId == SmppConstants.CMD_ID_BIND_TRANSMITTER_RESP) {
+                return new BindTransmitterResp();
+            } else if (commandId == SmppConstants.CMD_ID_UNBIND_RESP) {
+                return new UnbindResp();
+            } else if (commandId == SmppConstants.CMD_ID_GENERIC_NACK) {
+                return new GenericNack();
+            } else {
+                return new PartialPduResp(commandId);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.pdu.DeliverSmResp;
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import com.cloudhopper.smpp.pdu.Pdu;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.tlv.Tlv;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoder;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoderContext;
+import com.cloudhopper.smpp.transcoder.PduTranscoder;
+import com.cloudhopper.smpp.type.Address;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of DefaultPduTranscoder.encode per PDU type.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PduEncodeBenchmark {
+
+    @Param({ "submit_sm", "submit_sm_resp", "deliver_sm", "deliver_sm_resp", "enquire_link" })
+    public String pduType;
+
+    private PduTranscoder transcoder;
+    private Pdu pdu;
+
+    @Setup
+    public void setup() throws Exception {
+        this.transcoder = new DefaultPduTranscoder(new DefaultPduTranscoderContext());
+        if (pduType.equals("submit_sm")) {
+            SubmitSm submitSm = new SubmitSm();
+            submitSm.setSourceAddress(new Address((byte)0x03, (byte)0x00, "40404"));
+            submitSm.setDestAddress(new Address((byte)0x01, (byte)0x01, "44951361920"));
+            submitSm.setRegisteredDelivery(SmppConstants.REGISTERED_DELIVERY_SMSC_RECEIPT_REQUESTED);
+            submitSm.setShortMessage("Hello World! This is a typical length short message.".getBytes("ISO-8859-1"));
+            this.pdu = submitSm;
+        } else if (pduType.equals("submit_sm_resp")) {
+            SubmitSmResp submitSmResp = new SubmitSmResp();
+            submitSmResp.setMessageId("94258431594");
+            this.pdu = submitSmResp;
+        } else if (pduType.equals("deliver_sm")) {
+            DeliverSm deliverSm = new DeliverSm();
+            deliverSm.setSourceAddress(new Address((byte)0x01, (byte)0x01, "44951361920"));
+            deliverSm.setDestAddress(new Address((byte)0x03, (byte)0x00, "40404"));
+            deliverSm.setShortMessage("Hello World! This is a typical length short message.".getBytes("ISO-8859-1"));
+            deliverSm.addOptionalParameter(new Tlv(SmppConstants.TAG_SOURCE_NETWORK_TYPE, new byte[] { (byte)0x01 }));
+            this.pdu = deliverSm;
+        } else if (pduType.equals("deliver_sm_resp")) {
+            this.pdu = new DeliverSmResp();
+        } else if (pduType.equals("enquire_link")) {
+            this.pdu = new EnquireLink();
+        } else {
+            throw new IllegalArgumentException("Unsupported pduType [" + pduType + "]");
+        }
+        this.pdu.setSequenceNumber(171192039);
+    }
+
+    @Benchmark
+    public ChannelBuffer encode() throws Exception {
+        return this.transcoder.encode(this.pdu);
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.windowing.OfferTimeoutException;
+import com.cloudhopper.commons.util.windowing.Window;
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.smpp.SmppSendWindow;
+import com.cloudhopper.smpp.impl.DefaultSmppSendWindow;
+import com.cloudhopper.smpp.impl.IntKeyedSmppSendWindow;
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import com.cloudhopper.smpp.pdu.EnquireLinkResp;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the default send window (ch-commons-util Window) against the
+ * IntKeyedSmppSendWindow at window sizes from 10 to 10,000.  "offerAndComplete"
+ * keeps the window at its max size minus one on a single thread.  The
+ * "contended" group has three threads offering requests (like producer threads
+ * sending on the same session) and one thread completing them (like the I/O
+ * thread matching responses).
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendWindowBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int windowSize;
+
+    @Param({"window", "intKeyed"})
+    public String impl;
+
+    private SmppSendWindow window;
+    private PduRequest request;
+    private PduResponse response;
+    private AtomicInteger sequenceNumber;
+    private ConcurrentLinkedQueue<Integer> pending;
+
+    @Setup
+    public void setup() throws Exception {
+        if (impl.equals("intKeyed")) {
+            this.window = new IntKeyedSmppSendWindow(windowSize);
+        } else {
+            this.window = new DefaultSmppSendWindow(new Window<Integer,PduRequest,PduResponse>(windowSize));
+        }
+        this.request = new EnquireLink();
+        this.response = new EnquireLinkResp();
+        this.sequenceNumber = new AtomicInteger(0);
+        this.pending = new ConcurrentLinkedQueue<Integer>();
+        // fill up all but one slot of the window
+        for (int i = 1; i < windowSize; i++) {
+            int seq = this.sequenceNumber.incrementAndGet();
+            this.window.offer(seq, this.request, 0, 0, false);
+            this.pending.add(seq);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.window.destroy();
+    }
+
+    @Benchmark
+    @Group("single")
+    public WindowFuture<Integer,PduRequest,PduResponse> offerAndComplete() throws Exception {
+        int seq = this.sequenceNumber.incrementAndGet();
+        this.window.offer(seq, this.request, 0, 0, false);
+        // complete the oldest request
+        return this.window.complete(seq - (windowSize - 1), this.response);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public WindowFuture<Integer,PduRequest,PduResponse> contendedOffer() throws Exception {
+        int seq = this.sequenceNumber.incrementAndGet();
+        try {
+            WindowFuture<Integer,PduRequest,PduResponse> future = this.window.offer(seq, this.request, 0, 0, false);
+            this.pending.add(seq);
+            return future;
+        } catch (OfferTimeoutException e) {
+            // window full
+            return null;
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public WindowFuture<Integer,PduRequest,PduResponse> contendedComplete() throws Exception {
+        Integer seq = this.pending.poll();
+        if (seq == null) {
+            return null;
+        }
+        return this.window.complete(seq, this.response);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.util.SequenceNumber;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of SequenceNumber.next() when many threads share one
+ * instance (as they do when multiple producers send on one bind), compared
+ * with the synchronized implementation it replaced.  Run with different
+ * thread counts via "-t" (e.g. -t 1, -t 4, -t 16) to see how each scales.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class SequenceNumberBenchmark {
+
+    private final SequenceNumber lockFree = new SequenceNumber();
+    private final SynchronizedSequenceNumber synchronizedBaseline = new SynchronizedSequenceNumber();
+
+    @Benchmark
+    public int nextLockFree() {
+        return this.lockFree.next();
+    }
+
+    @Benchmark
+    public int nextSynchronized() {
+        return this.synchronizedBaseline.next();
+    }
+
+    /**
+     * Copy of the original synchronized SequenceNumber to serve as a baseline.
+     */
+    static private class SynchronizedSequenceNumber {
+        private int value = SequenceNumber.DEFAULT_VALUE;
+
+        synchronized public int next() {
+            int nextValue = this.value;
+            if (this.value == SequenceNumber.MAX_VALUE) {
+                this.value = SequenceNumber.DEFAULT_VALUE;
+            } else {
+                this.value++;
+            }
+            return nextValue;
+        }
+    }
+
+}
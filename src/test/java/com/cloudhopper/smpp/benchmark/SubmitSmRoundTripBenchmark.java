@@ -0,0 +1,139 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppServerConfiguration;
+import com.cloudhopper.smpp.SmppServerHandler;
+import com.cloudhopper.smpp.SmppServerSession;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.impl.DefaultSmppClient;
+import com.cloudhopper.smpp.impl.DefaultSmppServer;
+import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
+import com.cloudhopper.smpp.pdu.BaseBind;
+import com.cloudhopper.smpp.pdu.BaseBindResp;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.type.Address;
+import com.cloudhopper.smpp.type.SmppProcessingException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures full submit_sm -> submit_sm_resp round trips between a
+ * DefaultSmppClient and a DefaultSmppServer over the loopback interface.
+ * All benchmark threads share one bind, so running with "-t" greater than 1
+ * also exercises the send window under contention.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubmitSmRoundTripBenchmark {
+
+    static public final int PORT = 9788;
+
+    private DefaultSmppServer server;
+    private DefaultSmppClient client;
+    private SmppSession session;
+
+    @Setup
+    public void setup() throws Exception {
+        SmppServerConfiguration serverConfiguration = new SmppServerConfiguration();
+        serverConfiguration.setPort(PORT);
+        serverConfiguration.setSystemId("cloudhopper");
+        serverConfiguration.setNonBlockingSocketsEnabled(true);
+        serverConfiguration.setDefaultWindowSize(100);
+        this.server = new DefaultSmppServer(serverConfiguration, new RespondingSmppServerHandler());
+        this.server.start();
+
+        SmppSessionConfiguration sessionConfiguration = new SmppSessionConfiguration();
+        sessionConfiguration.setWindowSize(100);
+        sessionConfiguration.setName("Benchmark.Session");
+        sessionConfiguration.setType(SmppBindType.TRANSCEIVER);
+        sessionConfiguration.setHost("127.0.0.1");
+        sessionConfiguration.setPort(PORT);
+        sessionConfiguration.setSystemId("benchmark");
+        sessionConfiguration.setPassword("password");
+        sessionConfiguration.getLoggingOptions().setLogPdu(false);
+        sessionConfiguration.getLoggingOptions().setLogBytes(false);
+        this.client = new DefaultSmppClient();
+        this.session = this.client.bind(sessionConfiguration, new DefaultSmppSessionHandler());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.session.unbind(5000);
+        this.session.destroy();
+        this.client.destroy();
+        this.server.destroy();
+    }
+
+    @Benchmark
+    public SubmitSmResp submit() throws Exception {
+        SubmitSm submitSm = new SubmitSm();
+        submitSm.setSourceAddress(new Address((byte)0x03, (byte)0x00, "40404"));
+        submitSm.setDestAddress(new Address((byte)0x01, (byte)0x01, "44951361920"));
+        submitSm.setShortMessage("Hello World! This is a typical length short message.".getBytes("ISO-8859-1"));
+        return this.session.submit(submitSm, 10000);
+    }
+
+    static private class RespondingSmppServerHandler implements SmppServerHandler {
+        @Override
+        public void sessionBindRequested(Long sessionId, SmppSessionConfiguration sessionConfiguration, BaseBind bindRequest) throws SmppProcessingException {
+            sessionConfiguration.getLoggingOptions().setLogPdu(false);
+            sessionConfiguration.getLoggingOptions().setLogBytes(false);
+        }
+
+        @Override
+        public void sessionCreated(Long sessionId, SmppServerSession session, BaseBindResp preparedBindResponse) throws SmppProcessingException {
+            session.serverReady(new DefaultSmppSessionHandler() {
+                @Override
+                public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+                    return pduRequest.createResponse();
+                }
+            });
+        }
+
+        @Override
+        public void sessionDestroyed(Long sessionId, SmppServerSession session) {
+            session.destroy();
+        }
+    }
+
+}
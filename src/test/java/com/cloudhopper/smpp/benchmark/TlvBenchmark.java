@@ -0,0 +1,85 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.commons.util.HexUtil;
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.tlv.Tlv;
+import com.cloudhopper.smpp.transcoder.DefaultPduTranscoderContext;
+import com.cloudhopper.smpp.transcoder.PduTranscoderContext;
+import com.cloudhopper.smpp.util.ChannelBufferUtil;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing optional parameters (TLVs), both a single TLV and the
+ * typical set found at the end of a deliver_sm delivery receipt.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TlvBenchmark {
+
+    // source_network_type, dest_network_type, message_payload, receipted_message_id, message_state
+    static private final String TLVS_HEX = "000E000101" + "0006000101" + "0424000454657374" + "001E0006413330303500" + "0427000102";
+
+    private PduTranscoderContext context;
+    private ChannelBuffer singleBuffer;
+    private ChannelBuffer allBuffer;
+
+    @Setup
+    public void setup() throws Exception {
+        this.context = new DefaultPduTranscoderContext();
+        this.singleBuffer = ChannelBuffers.wrappedBuffer(HexUtil.toByteArray("0424000454657374"));
+        this.allBuffer = ChannelBuffers.wrappedBuffer(HexUtil.toByteArray(TLVS_HEX));
+    }
+
+    @Benchmark
+    public Tlv readTlv() throws Exception {
+        this.singleBuffer.readerIndex(0);
+        return ChannelBufferUtil.readTlv(this.singleBuffer);
+    }
+
+    @Benchmark
+    public DeliverSm readOptionalParameters() throws Exception {
+        this.allBuffer.readerIndex(0);
+        DeliverSm deliverSm = new DeliverSm();
+        deliverSm.readOptionalParameters(this.allBuffer, this.context);
+        return deliverSm;
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.cloudhopper.smpp.benchmark;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.cloudhopper.smpp.pdu.DeliverSm;
+import com.cloudhopper.smpp.tlv.Tlv;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares looking up and inserting optional parameters by tag via the
+ * tag-indexed storage in Pdu against the linear list scan it replaced.
+ * 
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TlvLookupBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int count;
+
+    private Tlv[] tlvs;
+    private DeliverSm indexed;
+    private ArrayList<Tlv> linear;
+    private short lastTag;
+
+    @Setup
+    public void setup() throws Exception {
+        this.tlvs = new Tlv[count];
+        this.indexed = new DeliverSm();
+        this.linear = new ArrayList<Tlv>();
+        for (int i = 0; i < count; i++) {
+            // spread tags similar to the real ones (0x0005 - 0x1383)
+            this.tlvs[i] = new Tlv((short)(0x0005 + (i * 0x00F7)), new byte[] { (byte)i });
+            this.indexed.addOptionalParameter(this.tlvs[i]);
+            this.linear.add(this.tlvs[i]);
+        }
+        this.lastTag = this.tlvs[count-1].getTag();
+    }
+
+    @Benchmark
+    public Tlv lookupIndexed() {
+        return this.indexed.getOptionalParameter(this.lastTag);
+    }
+
+    @Benchmark
+    public Tlv lookupLinear() {
+        int i = findLinear(this.linear, this.lastTag);
+        return (i < 0 ? null : this.linear.get(i));
+    }
+
+    @Benchmark
+    public DeliverSm setIndexed() {
+        DeliverSm pdu = new DeliverSm();
+        for (Tlv tlv : this.tlvs) {
+            pdu.setOptionalParameter(tlv);
+        }
+        return pdu;
+    }
+
+    @Benchmark
+    public ArrayList<Tlv> setLinear() {
+        ArrayList<Tlv> list = new ArrayList<Tlv>();
+        for (Tlv tlv : this.tlvs) {
+            int i = findLinear(list, tlv.getTag());
+            if (i < 0) {
+                list.add(tlv);
+            } else {
+                list.set(i, tlv);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Copy of the linear scan Pdu.findOptionalParameter used to do.
+     */
+    static private int findLinear(ArrayList<Tlv> list, short tag) {
+        int i = 0;
+        for (Tlv tlv : list) {
+            if (tlv.getTag() == tag) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,280 @@
+package com.cloudhopper.smpp.channel;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioSocketChannel;
+import org.junit.*;
+
+/**
+ *
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class SmppSessionWriteCoalescerTest {
+
+    private ServerSocket serverSocket;
+    private ByteArrayOutputStream received;
+    private CountDownLatch eof;
+    private NioClientSocketChannelFactory channelFactory;
+    private RecordingHandler recorder;
+
+    @Before
+    public void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+        received = new ByteArrayOutputStream();
+        eof = new CountDownLatch(1);
+        // reads everything written until the client closes the connection
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    InputStream in = socket.getInputStream();
+                    byte[] buf = new byte[1024];
+                    int n;
+                    while ((n = in.read(buf)) >= 0) {
+                        synchronized (received) {
+                            received.write(buf, 0, n);
+                        }
+                    }
+                    socket.close();
+                } catch (IOException e) {
+                    // test is done
+                }
+                eof.countDown();
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        channelFactory = new NioClientSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool(), 1);
+        recorder = new RecordingHandler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverSocket.close();
+        channelFactory.releaseExternalResources();
+    }
+
+    private Channel connect(SmppSessionWriteCoalescer coalescer) throws Exception {
+        ClientBootstrap bootstrap = new ClientBootstrap(channelFactory);
+        // writes pass the coalescer first, then the recorder
+        bootstrap.getPipeline().addLast("recorder", recorder);
+        bootstrap.getPipeline().addLast("coalescer", coalescer);
+        ChannelFuture connectFuture = bootstrap.connect(new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort()));
+        Assert.assertTrue(connectFuture.await(5000));
+        Assert.assertTrue(connectFuture.isSuccess());
+        return connectFuture.getChannel();
+    }
+
+    /**
+     * Writes the buffers from within the channel's I/O thread (like responses
+     * returned by a session handler) and waits for all their futures.
+     */
+    private List<ChannelFuture> writeOnIoThread(final Channel channel, final int count, final boolean closeAfter) throws Exception {
+        final List<ChannelFuture> futures = Collections.synchronizedList(new ArrayList<ChannelFuture>());
+        final CountDownLatch written = new CountDownLatch(1);
+        ((NioSocketChannel)channel).getWorker().executeInIoThread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    futures.add(channel.write(ChannelBuffers.wrappedBuffer(new byte[] { (byte)i, (byte)i, (byte)i, (byte)i })));
+                }
+                if (closeAfter) {
+                    channel.close();
+                }
+                written.countDown();
+            }
+        }, true);
+        Assert.assertTrue(written.await(5000, TimeUnit.MILLISECONDS));
+        for (ChannelFuture future : futures) {
+            Assert.assertTrue(future.await(5000));
+        }
+        return futures;
+    }
+
+    private byte[] expectedBytes(int count) {
+        byte[] bytes = new byte[count * 4];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)(i / 4);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void writesOnIoThreadAreCoalescedIntoOneBatch() throws Exception {
+        SmppSessionWriteCoalescer coalescer = new SmppSessionWriteCoalescer(100, 65536);
+        Channel channel = connect(coalescer);
+
+        List<ChannelFuture> futures = writeOnIoThread(channel, 5, true);
+
+        // every individual future completed by the single batch
+        for (ChannelFuture future : futures) {
+            Assert.assertTrue(future.isSuccess());
+        }
+        Assert.assertEquals(1, coalescer.getBatchCount());
+        Assert.assertEquals(5, coalescer.getPduCount());
+        Assert.assertEquals(5, coalescer.getMaxObservedBatchSize());
+        Assert.assertEquals(Collections.singletonList(20), recorder.getWriteSizes());
+
+        // in order, and the close didn't overtake the pending writes
+        Assert.assertTrue(eof.await(5000, TimeUnit.MILLISECONDS));
+        Assert.assertArrayEquals(expectedBytes(5), received.toByteArray());
+    }
+
+    @Test
+    public void batchFlushedOnceMaxSizeReached() throws Exception {
+        SmppSessionWriteCoalescer coalescer = new SmppSessionWriteCoalescer(3, 65536);
+        Channel channel = connect(coalescer);
+
+        writeOnIoThread(channel, 7, true);
+
+        Assert.assertEquals(3, coalescer.getBatchCount());
+        Assert.assertEquals(7, coalescer.getPduCount());
+        Assert.assertEquals(3, coalescer.getMaxObservedBatchSize());
+        List<Integer> expected = new ArrayList<Integer>();
+        expected.add(12);
+        expected.add(12);
+        expected.add(4);
+        Assert.assertEquals(expected, recorder.getWriteSizes());
+
+        Assert.assertTrue(eof.await(5000, TimeUnit.MILLISECONDS));
+        Assert.assertArrayEquals(expectedBytes(7), received.toByteArray());
+    }
+
+    @Test
+    public void batchFlushedOnceMaxBytesReached() throws Exception {
+        SmppSessionWriteCoalescer coalescer = new SmppSessionWriteCoalescer(100, 8);
+        Channel channel = connect(coalescer);
+
+        writeOnIoThread(channel, 5, true);
+
+        List<Integer> expected = new ArrayList<Integer>();
+        expected.add(8);
+        expected.add(8);
+        expected.add(4);
+        Assert.assertEquals(expected, recorder.getWriteSizes());
+        Assert.assertTrue(eof.await(5000, TimeUnit.MILLISECONDS));
+        Assert.assertArrayEquals(expectedBytes(5), received.toByteArray());
+    }
+
+    @Test
+    public void batchFailurePropagatedToEveryFuture() throws Exception {
+        SmppSessionWriteCoalescer coalescer = new SmppSessionWriteCoalescer(100, 65536);
+        Channel channel = connect(coalescer);
+        IOException cause = new IOException("write failed");
+        recorder.failWith(cause);
+
+        List<ChannelFuture> futures = writeOnIoThread(channel, 3, false);
+
+        Assert.assertEquals(1, coalescer.getBatchCount());
+        for (ChannelFuture future : futures) {
+            Assert.assertFalse(future.isSuccess());
+            Assert.assertSame(cause, future.getCause());
+        }
+        channel.close().await();
+    }
+
+    @Test
+    public void writesFromOtherThreadsAreCoalesced() throws Exception {
+        SmppSessionWriteCoalescer coalescer = new SmppSessionWriteCoalescer(100, 65536);
+        final Channel channel = connect(coalescer);
+
+        // several threads writing concurrently; every byte arrives and every future completes
+        final int threads = 4;
+        final int writesPerThread = 250;
+        final List<ChannelFuture> futures = Collections.synchronizedList(new ArrayList<ChannelFuture>());
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < writesPerThread; i++) {
+                        futures.add(channel.write(ChannelBuffers.wrappedBuffer(new byte[] { 1, 2, 3, 4 })));
+                    }
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join(5000);
+        }
+        for (ChannelFuture future : futures) {
+            Assert.assertTrue(future.await(5000));
+            Assert.assertTrue(future.isSuccess());
+        }
+        Assert.assertEquals(threads * writesPerThread, coalescer.getPduCount());
+        Assert.assertTrue(coalescer.getBatchCount() <= coalescer.getPduCount());
+
+        channel.close().await();
+        Assert.assertTrue(eof.await(5000, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(threads * writesPerThread * 4, received.toByteArray().length);
+    }
+
+    /**
+     * Records the size of each write passed downstream by the coalescer (and
+     * optionally fails them rather than passing them on).
+     */
+    static private class RecordingHandler extends SimpleChannelDownstreamHandler {
+        private final List<Integer> writeSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        private volatile Throwable failure;
+
+        public void failWith(Throwable failure) {
+            this.failure = failure;
+        }
+
+        public List<Integer> getWriteSizes() {
+            return new ArrayList<Integer>(writeSizes);
+        }
+
+        @Override
+        public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            writeSizes.add(((ChannelBuffer)e.getMessage()).readableBytes());
+            if (failure != null) {
+                e.getFuture().setFailure(failure);
+                return;
+            }
+            super.writeRequested(ctx, e);
+        }
+    }
+
+}
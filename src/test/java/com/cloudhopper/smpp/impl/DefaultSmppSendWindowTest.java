@@ -0,0 +1,142 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+// third party imports
+import com.cloudhopper.commons.util.windowing.Window;
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.Timer;
+import org.jboss.netty.util.TimerTask;
+import org.junit.*;
+
+// my imports
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+
+/**
+ *
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class DefaultSmppSendWindowTest {
+
+    /**
+     * A timer that never fires and only records the timeouts it created.
+     */
+    static private class RecordingTimer implements Timer {
+        private final List<RecordingTimeout> timeouts = new ArrayList<RecordingTimeout>();
+
+        @Override
+        public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+            RecordingTimeout timeout = new RecordingTimeout(this, task);
+            this.timeouts.add(timeout);
+            return timeout;
+        }
+
+        @Override
+        public Set<Timeout> stop() {
+            return new HashSet<Timeout>();
+        }
+    }
+
+    static private class RecordingTimeout implements Timeout {
+        private final Timer timer;
+        private final TimerTask task;
+        private volatile boolean cancelled;
+
+        public RecordingTimeout(Timer timer, TimerTask task) {
+            this.timer = timer;
+            this.task = task;
+        }
+
+        @Override
+        public Timer getTimer() {
+            return this.timer;
+        }
+
+        @Override
+        public TimerTask getTask() {
+            return this.task;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+        }
+    }
+
+    @Test
+    public void releaseCancelsTimeoutOfCancelledRequest() throws Exception {
+        RecordingTimer timer = new RecordingTimer();
+        DefaultSmppSendWindow sendWindow = new DefaultSmppSendWindow(new Window<Integer,PduRequest,PduResponse>(2), timer, null);
+
+        WindowFuture<Integer,PduRequest,PduResponse> future = sendWindow.offer(1, new EnquireLink(), 0, 30000, false);
+        Assert.assertEquals(1, timer.timeouts.size());
+
+        future.cancel();
+        Assert.assertFalse(timer.timeouts.get(0).isCancelled());
+        sendWindow.release(future);
+        Assert.assertTrue(timer.timeouts.get(0).isCancelled());
+    }
+
+    @Test
+    public void releaseIgnoresTimeoutOfReusedSequenceNumber() throws Exception {
+        RecordingTimer timer = new RecordingTimer();
+        DefaultSmppSendWindow sendWindow = new DefaultSmppSendWindow(new Window<Integer,PduRequest,PduResponse>(2), timer, null);
+
+        WindowFuture<Integer,PduRequest,PduResponse> first = sendWindow.offer(1, new EnquireLink(), 0, 30000, false);
+        first.cancel();
+        // the sequence number is reused before the first request was released
+        sendWindow.offer(1, new EnquireLink(), 0, 30000, false);
+        sendWindow.release(first);
+
+        Assert.assertFalse(timer.timeouts.get(1).isCancelled());
+    }
+
+    @Test
+    public void completeCancelsTimeout() throws Exception {
+        RecordingTimer timer = new RecordingTimer();
+        DefaultSmppSendWindow sendWindow = new DefaultSmppSendWindow(new Window<Integer,PduRequest,PduResponse>(2), timer, null);
+
+        EnquireLink request = new EnquireLink();
+        request.setSequenceNumber(1);
+        sendWindow.offer(1, request, 0, 30000, false);
+        Assert.assertNotNull(sendWindow.complete(1, request.createResponse()));
+        Assert.assertTrue(timer.timeouts.get(0).isCancelled());
+    }
+
+}
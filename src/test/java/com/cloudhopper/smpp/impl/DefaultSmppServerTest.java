@@ -551,6 +551,90 @@ public class DefaultSmppServerTest {
         }
     }
     
+    @Test
+    public void serverRejectsConnectionsBeyondMaxConnectionSize() throws Exception {
+        SmppServerConfiguration configuration = createSmppServerConfiguration();
+        configuration.setMaxConnectionSize(1);
+        DefaultSmppServer server0 = new DefaultSmppServer(configuration, serverHandler);
+        server0.start();
+        DefaultSmppClient client0 = new DefaultSmppClient();
+        DefaultSmppClient client1 = new DefaultSmppClient();
+
+        try {
+            SmppSession session0 = client0.bind(createDefaultConfiguration());
+            Assert.assertEquals(true, session0.isBound());
+
+            // the 2nd connection is closed as soon as its accepted
+            SmppSessionConfiguration sessionConfig1 = createDefaultConfiguration();
+            sessionConfig1.setName("Tester.Session.1");
+            try {
+                client1.bind(sessionConfig1);
+                Assert.fail();
+            } catch (SmppChannelException e) {
+                // correct behavior
+            }
+
+            Thread.sleep(100);
+            Assert.assertEquals(1, server0.getCounters().getChannelRejects());
+            // a rejected channel isn't counted as a connect or disconnect
+            Assert.assertEquals(1, server0.getCounters().getChannelConnects());
+            Assert.assertEquals(0, server0.getCounters().getChannelDisconnects());
+            Assert.assertEquals(1, server0.getChannels().size());
+            Assert.assertEquals(true, session0.isBound());
+
+            // its slot is free again once the 1st connection is gone
+            session0.close();
+            Thread.sleep(100);
+            SmppSession session1 = client1.bind(sessionConfig1);
+            Assert.assertEquals(true, session1.isBound());
+            Assert.assertEquals(1, server0.getCounters().getChannelRejects());
+            Assert.assertEquals(1, server0.getCounters().getChannelDisconnects());
+            session1.close();
+        } finally {
+            client0.destroy();
+            client1.destroy();
+            server0.destroy();
+        }
+    }
+
+    @Test
+    public void clientsAndServerShareRuntime() throws Exception {
+        SmppRuntime runtime = new SmppRuntime(2);
+        DefaultSmppServer server0 = new DefaultSmppServer(createSmppServerConfiguration(), serverHandler, runtime);
+        server0.start();
+
+        try {
+            DefaultSmppClient client0 = new DefaultSmppClient(runtime);
+            DefaultSmppClient client1 = new DefaultSmppClient(runtime);
+            SmppSession session0 = client0.bind(createDefaultConfiguration());
+            SmppSessionConfiguration sessionConfig1 = createDefaultConfiguration();
+            sessionConfig1.setName("Tester.Session.1");
+            SmppSession session1 = client1.bind(sessionConfig1);
+            Assert.assertEquals(true, session0.isBound());
+            Assert.assertEquals(true, session1.isBound());
+
+            // destroying a client only closes its own channels
+            client0.destroy();
+            Thread.sleep(100);
+            Assert.assertEquals(1, server0.getChannels().size());
+            Assert.assertEquals(true, session1.isBound());
+            Assert.assertEquals(false, runtime.isDestroyed());
+
+            // and the shared threads keep serving new clients
+            DefaultSmppClient client2 = new DefaultSmppClient(runtime);
+            SmppSessionConfiguration sessionConfig2 = createDefaultConfiguration();
+            sessionConfig2.setName("Tester.Session.2");
+            SmppSession session2 = client2.bind(sessionConfig2);
+            Assert.assertEquals(true, session2.isBound());
+
+            client1.destroy();
+            client2.destroy();
+        } finally {
+            server0.destroy();
+            runtime.destroy();
+        }
+    }
+
     @Test
     public void serverBindToUnavailablePortThrowsException() throws Exception {
         DefaultSmppServer server0 = createSmppServer();
@@ -25,16 +25,24 @@ import com.cloudhopper.smpp.util.DaemonExecutors;
 import com.cloudhopper.commons.util.windowing.OfferTimeoutException;
 import com.cloudhopper.commons.util.windowing.WindowFuture;
 import com.cloudhopper.smpp.PduAsyncResponse;
+import com.cloudhopper.smpp.PduRequestSubscriber;
+import com.cloudhopper.smpp.PduRequestSubscription;
+import com.cloudhopper.smpp.PduResponseFuture;
+import com.cloudhopper.smpp.PduResponseListener;
 import com.cloudhopper.smpp.SmppBindType;
 import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppSendWindowFactory;
 import com.cloudhopper.smpp.SmppSession;
 import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.SmppSessionReadyListener;
 import com.cloudhopper.smpp.pdu.BufferHelper;
+import com.cloudhopper.smpp.pdu.DeliverSm;
 import com.cloudhopper.smpp.pdu.EnquireLink;
 import com.cloudhopper.smpp.pdu.EnquireLinkResp;
 import com.cloudhopper.smpp.pdu.Pdu;
 import com.cloudhopper.smpp.pdu.PduRequest;
 import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
 import com.cloudhopper.smpp.pdu.SubmitSmResp;
 import com.cloudhopper.smpp.pdu.UnbindResp;
 import com.cloudhopper.smpp.simulator.SmppSimulatorBindProcessor;
@@ -45,13 +53,22 @@ import com.cloudhopper.smpp.type.GenericNackException;
 import com.cloudhopper.smpp.type.SmppBindException;
 import com.cloudhopper.smpp.type.SmppChannelConnectException;
 import com.cloudhopper.smpp.type.SmppChannelConnectTimeoutException;
+import com.cloudhopper.smpp.type.SmppChannelException;
 import com.cloudhopper.smpp.type.SmppTimeoutException;
 import com.cloudhopper.smpp.type.TerminatingNullByteNotFoundException;
 import com.cloudhopper.smpp.type.UnexpectedPduResponseException;
 import com.cloudhopper.smpp.type.UnrecoverablePduException;
 import com.cloudhopper.smpp.util.SmppSessionUtil;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.socket.SocketChannelConfig;
 import org.junit.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -313,6 +330,52 @@ public class DefaultSmppSessionTest {
         }
     }
 
+    @Test
+    public void multipleEnquireLinksWithNonBlockingWrites() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setNonBlockingWritesEnabled(true);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        // bind and get the simulator session
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration);
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(new SmppSimulatorPduProcessor() {
+            @Override
+            public boolean process(SmppSimulatorSessionHandler session, Channel channel, Pdu pdu) throws Exception {
+                session.addPduToWriteOnNextPduReceived(((PduRequest)pdu).createResponse());
+                return true;
+            }
+        });
+
+        try {
+            session.enquireLink(new EnquireLink(), 100);
+            session.enquireLink(new EnquireLink(), 100);
+            session.enquireLink(new EnquireLink(), 100);
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
+
+    @Test
+    public void nonBlockingWriteOnClosedChannelFailsFuture() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setNonBlockingWritesEnabled(true);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        // bind and then close the channel out from under the session
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration);
+        session.close();
+
+        // the send returns right away and the write failure fails the future
+        WindowFuture future = session.sendRequestPdu(new EnquireLink(), 1000, true);
+        Assert.assertTrue(future.await());
+        Assert.assertFalse(future.isSuccess());
+        Assert.assertNotNull(future.getCause());
+        Assert.assertEquals(0, session.getSendWindow().getSize());
+    }
+
     @Test
     public void windowSizeBlocksAsyncRequest() throws Exception {
         SmppSessionConfiguration configuration = createDefaultConfiguration();
@@ -391,6 +454,485 @@ public class DefaultSmppSessionTest {
         }
     }
 
+    @Test
+    public void intKeyedWindowSizeBlocksAsyncRequest() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setWindowSize(2);
+        configuration.setSendWindowFactory(IntKeyedSmppSendWindow.FACTORY);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        // bind and get the simulator session
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration);
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        // make sure the processor is null
+        simulator0.setPduProcessor(null);
+
+        try {
+            try {
+                session.getSendWindow();
+                Assert.fail();
+            } catch (IllegalStateException e) {
+                // correct behavior
+            }
+            Assert.assertEquals(IntKeyedSmppSendWindow.class, session.getSmppSendWindow().getClass());
+
+            EnquireLink el0 = new EnquireLink();
+            EnquireLink el1 = new EnquireLink();
+            EnquireLink el2 = new EnquireLink();
+            // these two map to the same slot in the window
+            el0.setSequenceNumber(0x1000);
+            el1.setSequenceNumber(0x2000);
+            el2.setSequenceNumber(0x1001);
+
+            WindowFuture future0 = session.sendRequestPdu(el0, 3000, true);
+            WindowFuture future1 = session.sendRequestPdu(el1, 3000, true);
+
+            Assert.assertEquals(2, session.getSmppSendWindow().getSize());
+
+            try {
+                // window is full, this one should timeout
+                session.sendRequestPdu(el2, 100, true);
+                Assert.fail();
+            } catch (SmppTimeoutException e) {
+                Assert.assertNotNull(e.getCause());
+                Assert.assertEquals(OfferTimeoutException.class, e.getCause().getClass());
+            }
+
+            // respond to the second request first
+            simulator0.sendPdu(el1.createResponse());
+            Assert.assertTrue(future1.await());
+            Assert.assertTrue(future1.isSuccess());
+            Assert.assertEquals(1, session.getSmppSendWindow().getSize());
+            Assert.assertEquals(false, future0.isDone());
+
+            WindowFuture future2 = session.sendRequestPdu(el2, 3000, true);
+            simulator0.sendPdu(el2.createResponse());
+            simulator0.sendPdu(el0.createResponse());
+
+            Assert.assertTrue(future0.await());
+            Assert.assertTrue(future2.await());
+            Assert.assertEquals(0x1000, ((PduResponse)future0.getResponse()).getSequenceNumber());
+            Assert.assertEquals(0, session.getSmppSendWindow().getSize());
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
+
+
+    @Test
+    public void keepaliveSendsEnquireLinkAndClosesUnresponsiveSession() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setEnquireLinkInterval(100);
+        configuration.setEnquireLinkMaxMissed(2);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        final BlockingQueue<String> closedThreadNames = new LinkedBlockingQueue<String>();
+        PollableSmppSessionHandler sessionHandler = new PollableSmppSessionHandler() {
+            @Override
+            public void fireChannelUnexpectedlyClosed() {
+                closedThreadNames.add(Thread.currentThread().getName());
+                super.fireChannelUnexpectedlyClosed();
+            }
+        };
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, sessionHandler);
+
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        try {
+            // an idle session is pinged and the response isn't passed to the handler
+            Pdu pdu0 = simulator0.pollNextPdu(1000);
+            Assert.assertTrue(pdu0 instanceof EnquireLink);
+            simulator0.sendPdu(((EnquireLink)pdu0).createResponse());
+            Pdu pdu1 = simulator0.pollNextPdu(1000);
+            Assert.assertTrue(pdu1 instanceof EnquireLink);
+            Assert.assertEquals(0, sessionHandler.getReceivedExpectedPduResponses().size());
+            Assert.assertEquals(0, sessionHandler.getReceivedUnexpectedPduResponses().size());
+            Assert.assertTrue(session.isBound());
+
+            // no more responses: closed after 2 missed intervals
+            long deadline = System.currentTimeMillis() + 2000;
+            while (sessionHandler.getClosedCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(session.isClosed());
+            Assert.assertEquals(1, sessionHandler.getClosedCount());
+            // reported like any other closed channel, not from the shared timer thread
+            String threadName = closedThreadNames.poll(1000, TimeUnit.MILLISECONDS);
+            Assert.assertNotNull(threadName);
+            Assert.assertFalse(threadName, threadName.toLowerCase().contains("timer"));
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
+
+    @Test
+    public void keepaliveIgnoresIdleTimeWhileReadingSuspended() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setEnquireLinkInterval(100);
+        configuration.setEnquireLinkMaxMissed(2);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        PollableSmppSessionHandler sessionHandler = new PollableSmppSessionHandler();
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, sessionHandler);
+
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        try {
+            // backpressure: nothing can be received for far longer than 2 intervals
+            session.suspendReading();
+            Assert.assertTrue(session.isReadingSuspended());
+            Thread.sleep(600);
+            Assert.assertTrue(session.isBound());
+            Assert.assertEquals(0, sessionHandler.getClosedCount());
+
+            // once resumed, the session is pinged again (idle since the resume)
+            session.resumeReading();
+            Assert.assertFalse(session.isReadingSuspended());
+            Pdu pdu0 = simulator0.pollNextPdu(1000);
+            Assert.assertTrue(pdu0 instanceof EnquireLink);
+            simulator0.sendPdu(((EnquireLink)pdu0).createResponse());
+            Thread.sleep(150);
+            Assert.assertTrue(session.isBound());
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
+
+    @Test
+    public void requestExpiresOnSharedTimer() throws Exception {
+        for (SmppSendWindowFactory factory : new SmppSendWindowFactory[] { DefaultSmppSendWindow.FACTORY, IntKeyedSmppSendWindow.FACTORY }) {
+            SmppSessionConfiguration configuration = createDefaultConfiguration();
+            configuration.setWindowSize(2);
+            configuration.setRequestExpiryTimeout(100);
+            configuration.setRequestExpiryTimerEnabled(true);
+            configuration.setSendWindowFactory(factory);
+            registerServerBindProcessor();
+            clearAllServerSessions();
+
+            final BlockingQueue<PduRequest> expired = new LinkedBlockingQueue<PduRequest>();
+            DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, new DefaultSmppSessionHandler() {
+                @Override
+                public void firePduRequestExpired(PduRequest pduRequest) {
+                    expired.add(pduRequest);
+                }
+            });
+
+            SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+            simulator0.setPduProcessor(null);
+
+            try {
+                // answered: its timeout is cancelled and it never expires
+                EnquireLink el0 = new EnquireLink();
+                session.sendRequestPdu(el0, 1000, false);
+                simulator0.sendPdu(((EnquireLink)simulator0.pollNextPdu(1000)).createResponse());
+                // never answered
+                EnquireLink el1 = new EnquireLink();
+                session.sendRequestPdu(el1, 1000, false);
+
+                Assert.assertSame(el1, expired.poll(2000, TimeUnit.MILLISECONDS));
+                Assert.assertEquals(0, session.getSmppSendWindow().getSize());
+                Assert.assertNull(expired.poll(200, TimeUnit.MILLISECONDS));
+            } finally {
+                SmppSessionUtil.close(session);
+            }
+        }
+    }
+
+    @Test
+    public void sendRequestAsyncCompletesFuturePerRequest() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setWindowSize(3);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        PollableSmppSessionHandler sessionHandler = new PollableSmppSessionHandler();
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, sessionHandler);
+
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        try {
+            final BlockingQueue<PduResponseFuture<EnquireLinkResp>> completed = new LinkedBlockingQueue<PduResponseFuture<EnquireLinkResp>>();
+            PduResponseListener<EnquireLinkResp> listener = new PduResponseListener<EnquireLinkResp>() {
+                @Override
+                public void operationComplete(PduResponseFuture<EnquireLinkResp> future) {
+                    completed.add(future);
+                }
+            };
+
+            // a response completes the future (not the session handler)
+            PduResponseFuture<EnquireLinkResp> future0 = session.sendRequestAsync(new EnquireLink(), 1000).addListener(listener);
+            simulator0.sendPdu(((EnquireLink)simulator0.pollNextPdu(1000)).createResponse());
+            Assert.assertSame(future0, completed.poll(1000, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(future0.isSuccess());
+            Assert.assertEquals(future0.getRequest().getSequenceNumber(), future0.get().getSequenceNumber());
+            Assert.assertEquals(0, sessionHandler.getReceivedExpectedPduResponses().size());
+            // the request no longer refers to its future
+            Assert.assertNull(future0.getRequest().getResponseFuture());
+
+            // a generic_nack fails it
+            PduResponseFuture<EnquireLinkResp> future1 = session.sendRequestAsync(new EnquireLink(), 1000).addListener(listener);
+            simulator0.sendPdu(((EnquireLink)simulator0.pollNextPdu(1000)).createGenericNack(SmppConstants.STATUS_SYSERR));
+            Assert.assertSame(future1, completed.poll(1000, TimeUnit.MILLISECONDS));
+            Assert.assertFalse(future1.isSuccess());
+            Assert.assertTrue(future1.getCause() instanceof GenericNackException);
+            Assert.assertNull(future1.getRequest().getResponseFuture());
+
+            // so does the channel closing
+            PduResponseFuture<EnquireLinkResp> future2 = session.sendRequestAsync(new EnquireLink(), 1000).addListener(listener);
+            simulator0.pollNextPdu(1000);
+            simulator0.getChannel().close().await();
+            Assert.assertSame(future2, completed.poll(1000, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(future2.getCause() instanceof SmppChannelException);
+            Assert.assertNull(future2.getRequest().getResponseFuture());
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
+
+    @Test
+    public void sendRateLimitSchedulesWritesWithoutBlockingCaller() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setWindowSize(5);
+        configuration.setSendRateLimit(10);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration);
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        try {
+            // no caller waits for its permit (the last one isn't due for 200 ms)
+            long start = System.currentTimeMillis();
+            session.sendRequestPdu(new SubmitSm(), 1000, false);
+            session.sendRequestPdu(new SubmitSm(), 1000, false);
+            session.sendRequestPdu(new SubmitSm(), 1000, false);
+            Assert.assertTrue(System.currentTimeMillis() - start < 150);
+            Assert.assertEquals(3, session.getSmppSendWindow().getSize());
+
+            // but they are written about 100 ms apart
+            Assert.assertNotNull(simulator0.pollNextPdu(1000));
+            long firstReceived = System.currentTimeMillis();
+            Assert.assertNotNull(simulator0.pollNextPdu(1000));
+            Assert.assertNotNull(simulator0.pollNextPdu(1000));
+            Assert.assertTrue(System.currentTimeMillis() - firstReceived >= 150);
+
+            // a permit not due within the timeout doesn't keep a window slot
+            session.sendRequestPdu(new SubmitSm(), 1000, false);
+            Assert.assertEquals(4, session.getSmppSendWindow().getSize());
+            try {
+                session.sendRequestPdu(new SubmitSm(), 10, false);
+                Assert.fail();
+            } catch (SmppTimeoutException e) {
+                // correct behavior
+            }
+            Assert.assertEquals(4, session.getSmppSendWindow().getSize());
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
+
+    @Test
+    public void readyListenerAndTrySendFailFastOnFullWindow() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setWindowSize(1);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        PollableSmppSessionHandler sessionHandler = new PollableSmppSessionHandler();
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, sessionHandler);
+
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        try {
+            final BlockingQueue<Boolean> readyChanges = new LinkedBlockingQueue<Boolean>();
+            final BlockingQueue<Boolean> otherThreadAdded = new LinkedBlockingQueue<Boolean>();
+            session.addReadyListener(new SmppSessionReadyListener() {
+                @Override
+                public void fireSessionReadyChanged(final SmppSession session, boolean ready) {
+                    // no lock is held while listeners are called, so another
+                    // thread can add a listener in the meantime
+                    Thread t = new Thread() {
+                        @Override
+                        public void run() {
+                            ((DefaultSmppSession)session).addReadyListener(new SmppSessionReadyListener() {
+                                @Override
+                                public void fireSessionReadyChanged(SmppSession session, boolean ready) { }
+                            });
+                        }
+                    };
+                    t.start();
+                    try {
+                        t.join(1000);
+                    } catch (InterruptedException e) { }
+                    otherThreadAdded.add(!t.isAlive());
+                    readyChanges.add(ready);
+                }
+            });
+            Assert.assertTrue(session.isReady());
+
+            // taking the only slot in the window makes the session not ready
+            PduResponseFuture<EnquireLinkResp> future0 = session.trySendRequestAsync(new EnquireLink());
+            Assert.assertNotNull(future0);
+            Assert.assertEquals(Boolean.FALSE, readyChanges.poll(2000, TimeUnit.MILLISECONDS));
+            Assert.assertEquals(Boolean.TRUE, otherThreadAdded.poll(1000, TimeUnit.MILLISECONDS));
+            Assert.assertFalse(session.isReady());
+
+            // which fails fast rather than waiting for the slot
+            long start = System.currentTimeMillis();
+            Assert.assertNull(session.trySendRequestAsync(new EnquireLink()));
+            Assert.assertTrue(System.currentTimeMillis() - start < 500);
+
+            // the response frees the slot again
+            simulator0.sendPdu(((EnquireLink)simulator0.pollNextPdu(1000)).createResponse());
+            Assert.assertEquals(Boolean.TRUE, readyChanges.poll(1000, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(future0.await(1000));
+            Assert.assertTrue(future0.isSuccess());
+            Assert.assertTrue(session.isReady());
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
+
+    @Test
+    public void publisherPassesRequestsOnDemandAndSuspendsReading() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        PduRequestPublisher publisher = new PduRequestPublisher();
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, publisher);
+        publisher.setSession(session);
+
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        final BlockingQueue<PduRequest> received = new LinkedBlockingQueue<PduRequest>();
+        final PduRequestSubscription[] subscription = new PduRequestSubscription[1];
+        publisher.subscribe(new PduRequestSubscriber() {
+            @Override
+            public void onSubscribe(PduRequestSubscription s) {
+                subscription[0] = s;
+            }
+            @Override
+            public void onNext(PduRequest request) {
+                received.add(request);
+            }
+            @Override
+            public void onError(Throwable t) {
+            }
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        try {
+            // no demand yet: reading is suspended
+            Assert.assertTrue(publisher.isPaused());
+
+            simulator0.sendPdu(new DeliverSm());
+            simulator0.sendPdu(new DeliverSm());
+            Assert.assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+
+            subscription[0].request(1);
+            Assert.assertTrue(received.poll(1000, TimeUnit.MILLISECONDS) instanceof DeliverSm);
+            Assert.assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(publisher.isPaused());
+
+            subscription[0].request(5);
+            Assert.assertTrue(received.poll(1000, TimeUnit.MILLISECONDS) instanceof DeliverSm);
+            // demand left, so reading resumed
+            Assert.assertFalse(publisher.isPaused());
+            Assert.assertEquals(0, publisher.getBufferedCount());
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
+
+    @Test
+    public void inboundHighWatermarkPausesReads() throws Exception {
+        ExecutorService handlerExecutor = Executors.newSingleThreadExecutor();
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setHandlerExecutor(handlerExecutor);
+        configuration.setCountersEnabled(true);
+        configuration.setInboundHighWatermark(2);
+        configuration.setInboundLowWatermark(0);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        // the handler blocks until released, so received requests pile up on the executor
+        final CountDownLatch release = new CountDownLatch(1);
+        PollableSmppSessionHandler sessionHandler = new PollableSmppSessionHandler() {
+            @Override
+            public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+                try {
+                    release.await(5000, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // fall through
+                }
+                return super.firePduRequestReceived(pduRequest);
+            }
+        };
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, sessionHandler);
+
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        try {
+            // 3 enquire_links in a single write (seqNums 1, 2, and 3)
+            simulator0.getChannel().write(BufferHelper.createBuffer("000000100000001500000000000000010000001000000015000000000000000200000010000000150000000000000003")).await();
+
+            // the high watermark is reached by the 2nd request
+            for (int i = 0; i < 20 && session.getCounters().getReadPauses() == 0; i++) {
+                Thread.sleep(50);
+            }
+            Assert.assertEquals(1, session.getCounters().getReadPauses());
+            Assert.assertEquals(0, sessionHandler.getReceivedPduRequests().size());
+
+            // processing everything resumes reading
+            release.countDown();
+            for (int i = 1; i <= 3; i++) {
+                PduRequest pdu0 = sessionHandler.getReceivedPduRequests().poll(2000, TimeUnit.MILLISECONDS);
+                Assert.assertNotNull(pdu0);
+                Assert.assertEquals(i, pdu0.getSequenceNumber());
+            }
+            for (int i = 0; i < 20 && !session.getChannel().isReadable(); i++) {
+                Thread.sleep(50);
+            }
+            Assert.assertTrue(session.getChannel().isReadable());
+            Assert.assertEquals(1, session.getCounters().getReadPauses());
+            Assert.assertTrue(session.getCounters().getReadPauseTime() >= 0);
+        } finally {
+            SmppSessionUtil.close(session);
+            handlerExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void socketOptionsAppliedToClientChannel() throws Exception {
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setTcpNoDelay(true);
+        configuration.setKeepAlive(true);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, new PollableSmppSessionHandler());
+
+        try {
+            SocketChannelConfig channelConfig = (SocketChannelConfig)session.getChannel().getConfig();
+            Assert.assertTrue(channelConfig.isTcpNoDelay());
+            Assert.assertTrue(channelConfig.isKeepAlive());
+        } finally {
+            SmppSessionUtil.close(session);
+        }
+    }
 
     @Test
     public void cumulationOfMultipleByteBuffersToParsePdu() throws Exception {
@@ -435,6 +977,108 @@ public class DefaultSmppSessionTest {
         }
     }
 
+    @Test
+    public void receivePduRequestsOnOrderedHandlerExecutor() throws Exception {
+        ExecutorService handlerExecutor = Executors.newFixedThreadPool(4, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "HandlerExecutor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setHandlerExecutor(handlerExecutor);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        // record which thread the handler was called under
+        final BlockingQueue<String> threadNames = new LinkedBlockingQueue<String>();
+        PollableSmppSessionHandler sessionHandler = new PollableSmppSessionHandler() {
+            @Override
+            public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+                threadNames.add(Thread.currentThread().getName());
+                return super.firePduRequestReceived(pduRequest);
+            }
+        };
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, sessionHandler);
+
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        try {
+            // 3 enquire_links in a single write (seqNums 1, 2, and 3)
+            simulator0.getChannel().write(BufferHelper.createBuffer("000000100000001500000000000000010000001000000015000000000000000200000010000000150000000000000003")).await();
+
+            // received by the handler on the executor and in order
+            for (int i = 1; i <= 3; i++) {
+                PduRequest pdu0 = sessionHandler.getReceivedPduRequests().poll(2000, TimeUnit.MILLISECONDS);
+                Assert.assertNotNull(pdu0);
+                Assert.assertEquals(i, pdu0.getSequenceNumber());
+                Assert.assertEquals("HandlerExecutor", threadNames.poll());
+            }
+        } finally {
+            SmppSessionUtil.close(session);
+            handlerExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void requestsQueuedOnHandlerExecutorDroppedAfterDestroy() throws Exception {
+        // records any exception thrown by a handler task
+        final BlockingQueue<Throwable> taskErrors = new LinkedBlockingQueue<Throwable>();
+        ThreadPoolExecutor handlerExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                if (t != null) {
+                    taskErrors.add(t);
+                }
+            }
+        };
+        SmppSessionConfiguration configuration = createDefaultConfiguration();
+        configuration.setHandlerExecutor(handlerExecutor);
+        registerServerBindProcessor();
+        clearAllServerSessions();
+
+        // the first request blocks the only executor thread so the 2nd queues up
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        PollableSmppSessionHandler sessionHandler = new PollableSmppSessionHandler() {
+            @Override
+            public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+                entered.countDown();
+                try {
+                    release.await(5000, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // fall through
+                }
+                return super.firePduRequestReceived(pduRequest);
+            }
+        };
+        DefaultSmppSession session = (DefaultSmppSession)bootstrap.bind(configuration, sessionHandler);
+
+        SmppSimulatorSessionHandler simulator0 = server.pollNextSession(1000);
+        simulator0.setPduProcessor(null);
+
+        try {
+            // 2 enquire_links in a single write (seqNums 1 and 2)
+            simulator0.getChannel().write(BufferHelper.createBuffer("0000001000000015000000000000000100000010000000150000000000000002")).await();
+            Assert.assertTrue(entered.await(2000, TimeUnit.MILLISECONDS));
+
+            session.destroy();
+            release.countDown();
+
+            handlerExecutor.shutdown();
+            Assert.assertTrue(handlerExecutor.awaitTermination(2000, TimeUnit.MILLISECONDS));
+            // the queued request was dropped rather than hitting a null handler
+            Assert.assertEquals(0, taskErrors.size());
+            Assert.assertEquals(1, sessionHandler.getReceivedPduRequests().size());
+        } finally {
+            SmppSessionUtil.close(session);
+            handlerExecutor.shutdownNow();
+        }
+    }
+
     @Test
     public void routePduResponseToWaitingThread() throws Exception {
         SmppSessionConfiguration configuration = createDefaultConfiguration();
@@ -0,0 +1,169 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+// third party imports
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.junit.*;
+
+// my imports
+import com.cloudhopper.smpp.AsyncSmppSession;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.pdu.EnquireLink;
+
+/**
+ *
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class SmppSessionGroupTest {
+
+    /**
+     * The few session methods the group uses, for a session with a fixed
+     * number of pending requests and recent response time.
+     */
+    static private class StubSession implements InvocationHandler {
+        private final IntKeyedSmppSendWindow sendWindow;
+        private final long recentResponseTime;
+        private boolean bound;
+
+        public StubSession(int pending, long recentResponseTime) throws Exception {
+            this.sendWindow = new IntKeyedSmppSendWindow(16);
+            for (int i = 0; i < pending; i++) {
+                this.sendWindow.offer(i, new EnquireLink(), 0, 0, false);
+            }
+            this.recentResponseTime = recentResponseTime;
+            this.bound = true;
+        }
+
+        public SmppSession create() {
+            return (SmppSession)Proxy.newProxyInstance(AsyncSmppSession.class.getClassLoader(), new Class[] { AsyncSmppSession.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("isBound")) {
+                return this.bound;
+            } else if (name.equals("getSmppSendWindow")) {
+                return this.sendWindow;
+            } else if (name.equals("getRecentResponseTime")) {
+                return this.recentResponseTime;
+            } else if (name.equals("getConfiguration")) {
+                return new SmppSessionConfiguration();
+            } else if (name.equals("getStateName")) {
+                return "CLOSED";
+            } else if (name.equals("equals")) {
+                return (proxy == args[0]);
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    @Test
+    public void leastPendingSelectsFewestPendingAndDropsUnbound() throws Exception {
+        SmppSessionGroup group = new SmppSessionGroup();
+        StubSession busy = new StubSession(1, 10);
+        StubSession idle = new StubSession(0, 1000);
+        SmppSession busySession = busy.create();
+        SmppSession idleSession = idle.create();
+        group.add(busySession);
+        group.add(idleSession);
+        Assert.assertEquals(2, group.getSize());
+
+        // response times don't matter
+        for (int i = 0; i < 4; i++) {
+            Assert.assertSame(idleSession, group.select());
+        }
+
+        // sessions no longer bound are dropped from the group
+        idle.bound = false;
+        Assert.assertSame(busySession, group.select());
+        Assert.assertEquals(1, group.getSize());
+        busy.bound = false;
+        Assert.assertNull(group.select());
+        Assert.assertEquals(0, group.getSize());
+    }
+
+    @Test
+    public void leastPendingSpreadsTiesOverAllSessions() throws Exception {
+        SmppSessionGroup group = new SmppSessionGroup();
+        SmppSession session0 = new StubSession(0, -1).create();
+        SmppSession session1 = new StubSession(0, -1).create();
+        group.add(session0);
+        group.add(session1);
+
+        SmppSession first = group.select();
+        Assert.assertNotSame(first, group.select());
+        Assert.assertSame(first, group.select());
+    }
+
+    @Test
+    public void lowestLatencyWeighsResponseTimeByPending() throws Exception {
+        SmppSessionGroup group = new SmppSessionGroup(SmppSessionGroup.Selection.LOWEST_LATENCY);
+        SmppSession fast = new StubSession(1, 10).create();
+        SmppSession slow = new StubSession(1, 30).create();
+        group.add(fast);
+        group.add(slow);
+        // equally busy, so the faster one
+        Assert.assertSame(fast, group.select());
+
+        // a fast session with a backlog loses to an idle slower one (60 vs 30)
+        group = new SmppSessionGroup(SmppSessionGroup.Selection.LOWEST_LATENCY);
+        SmppSession backlogged = new StubSession(5, 10).create();
+        SmppSession idle = new StubSession(0, 30).create();
+        group.add(backlogged);
+        group.add(idle);
+        Assert.assertSame(idle, group.select());
+    }
+
+    @Test
+    public void lowestLatencyTreatsSessionsWithoutResponsesAsAverage() throws Exception {
+        // a session without a response yet doesn't always win
+        SmppSessionGroup group = new SmppSessionGroup(SmppSessionGroup.Selection.LOWEST_LATENCY);
+        SmppSession unknown = new StubSession(5, -1).create();
+        SmppSession known = new StubSession(0, 10).create();
+        group.add(unknown);
+        group.add(known);
+        Assert.assertSame(known, group.select());
+
+        // but it's still selected when it's the least busy
+        group = new SmppSessionGroup(SmppSessionGroup.Selection.LOWEST_LATENCY);
+        unknown = new StubSession(0, -1).create();
+        known = new StubSession(3, 10).create();
+        group.add(unknown);
+        group.add(known);
+        Assert.assertSame(unknown, group.select());
+
+        // without any response times, the fewest pending
+        group = new SmppSessionGroup(SmppSessionGroup.Selection.LOWEST_LATENCY);
+        SmppSession busy = new StubSession(2, -1).create();
+        SmppSession idle = new StubSession(1, -1).create();
+        group.add(busy);
+        group.add(idle);
+        Assert.assertSame(idle, group.select());
+    }
+
+}
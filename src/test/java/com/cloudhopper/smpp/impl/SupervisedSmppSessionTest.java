@@ -0,0 +1,298 @@
+package com.cloudhopper.smpp.impl;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+// third party imports
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+
+// my imports
+import com.cloudhopper.smpp.SmppClient;
+import com.cloudhopper.smpp.SmppSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.SmppSessionHandler;
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.type.SmppChannelException;
+
+/**
+ *
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class SupervisedSmppSessionTest {
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void before() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void after() throws Exception {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * The few session methods a supervised session uses.  Requests sent on
+     * it are recorded, but never answered.
+     */
+    static private class StubSession implements InvocationHandler {
+        private final SmppSessionHandler handler;
+        private final BlockingQueue<PduRequest> sent;
+        private volatile boolean bound;
+
+        public StubSession(SmppSessionHandler handler) {
+            this.handler = handler;
+            this.sent = new LinkedBlockingQueue<PduRequest>();
+            this.bound = true;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("isBound")) {
+                return this.bound;
+            } else if (name.equals("isClosed")) {
+                return !this.bound;
+            } else if (name.equals("isUnbinding")) {
+                return false;
+            } else if (name.equals("destroy")) {
+                this.bound = false;
+                return null;
+            } else if (name.equals("sendRequestPdu")) {
+                this.sent.add((PduRequest)args[0]);
+                return null;
+            } else if (name.equals("equals")) {
+                return (proxy == args[0]);
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    /**
+     * Binds stub sessions, or fails to bind while failing is set.  A bind
+     * waits for the bind gate to open.
+     */
+    static private class StubClient implements SmppClient {
+        private final BlockingQueue<StubSession> bound = new LinkedBlockingQueue<StubSession>();
+        private volatile boolean failing = false;
+        private volatile CountDownLatch bindGate = new CountDownLatch(0);
+
+        @Override
+        public SmppSession bind(SmppSessionConfiguration config, SmppSessionHandler sessionHandler) throws SmppChannelException, InterruptedException {
+            this.bindGate.await();
+            if (this.failing) {
+                throw new SmppChannelException("Connection refused");
+            }
+            StubSession stub = new StubSession(sessionHandler);
+            this.bound.add(stub);
+            return (SmppSession)Proxy.newProxyInstance(SmppSession.class.getClassLoader(), new Class[] { SmppSession.class }, stub);
+        }
+
+        @Override
+        public void destroy() {
+            // nothing to do
+        }
+    }
+
+    static private class ExpiredRecordingHandler extends DefaultSmppSessionHandler {
+        private final BlockingQueue<PduRequest> expired = new LinkedBlockingQueue<PduRequest>();
+
+        @Override
+        public void firePduRequestExpired(PduRequest pduRequest) {
+            this.expired.add(pduRequest);
+        }
+    }
+
+    static private SmppSessionConfiguration createConfiguration() {
+        SmppSessionConfiguration configuration = new SmppSessionConfiguration();
+        configuration.setName("supervised");
+        configuration.setReconnectDelay(50);
+        configuration.setReconnectMaxDelay(50);
+        configuration.setReconnectQueueSize(3);
+        return configuration;
+    }
+
+    static private EnquireLink createRequest(int sequenceNumber) {
+        EnquireLink request = new EnquireLink();
+        request.setSequenceNumber(sequenceNumber);
+        return request;
+    }
+
+    @Test
+    public void rebindsAfterUnexpectedClose() throws Exception {
+        StubClient client = new StubClient();
+        SupervisedSmppSession supervised = new SupervisedSmppSession(client, createConfiguration(), null, scheduler);
+        supervised.start();
+
+        try {
+            SmppSession session0 = supervised.awaitBound(5000);
+            Assert.assertNotNull(session0);
+            Assert.assertEquals(1, supervised.getRebindCount());
+            StubSession stub0 = client.bound.poll(1000, TimeUnit.MILLISECONDS);
+
+            // the channel closes under the session
+            stub0.bound = false;
+            stub0.handler.fireChannelUnexpectedlyClosed();
+
+            SmppSession session1 = supervised.awaitBound(5000);
+            Assert.assertNotNull(session1);
+            Assert.assertNotSame(session0, session1);
+            Assert.assertEquals(2, supervised.getRebindCount());
+        } finally {
+            supervised.destroy();
+        }
+        Assert.assertFalse(supervised.isBound());
+        Assert.assertFalse(client.bound.poll(1000, TimeUnit.MILLISECONDS).bound);
+    }
+
+    @Test
+    public void bindDoesNotBlockScheduler() throws Exception {
+        StubClient client = new StubClient();
+        client.bindGate = new CountDownLatch(1);
+        SupervisedSmppSession supervised = new SupervisedSmppSession(client, createConfiguration(), null, scheduler);
+        supervised.start();
+
+        try {
+            // the bind is stuck, but the (shared) scheduler still runs other tasks
+            scheduler.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // nothing to do
+                }
+            }).get(1000, TimeUnit.MILLISECONDS);
+            Assert.assertFalse(supervised.isBound());
+
+            client.bindGate.countDown();
+            Assert.assertNotNull(supervised.awaitBound(5000));
+        } finally {
+            client.bindGate.countDown();
+            supervised.destroy();
+        }
+    }
+
+    @Test
+    public void handOffQueueRejectsRequestsOnceFull() throws Exception {
+        StubClient client = new StubClient();
+        client.failing = true;
+        SupervisedSmppSession supervised = new SupervisedSmppSession(client, createConfiguration(), null, scheduler);
+        supervised.start();
+
+        try {
+            for (int i = 1; i <= 3; i++) {
+                Assert.assertNull(supervised.sendRequestPdu(createRequest(i), 1000, false));
+            }
+            Assert.assertEquals(3, supervised.getHandOffQueueSize());
+            try {
+                supervised.sendRequestPdu(createRequest(4), 1000, false);
+                Assert.fail();
+            } catch (SmppChannelException e) {
+                // correct behavior
+            }
+            Assert.assertEquals(3, supervised.getHandOffQueueSize());
+        } finally {
+            supervised.destroy();
+        }
+    }
+
+    @Test
+    public void handOffQueueFlushedInOrderOnceBound() throws Exception {
+        StubClient client = new StubClient();
+        client.failing = true;
+        SupervisedSmppSession supervised = new SupervisedSmppSession(client, createConfiguration(), null, scheduler);
+        supervised.start();
+
+        try {
+            for (int i = 1; i <= 3; i++) {
+                supervised.sendRequestPdu(createRequest(i), 1000, false);
+            }
+            client.failing = false;
+            Assert.assertNotNull(supervised.awaitBound(5000));
+
+            StubSession stub = client.bound.poll(1000, TimeUnit.MILLISECONDS);
+            for (int i = 1; i <= 3; i++) {
+                PduRequest request = stub.sent.poll(1000, TimeUnit.MILLISECONDS);
+                Assert.assertNotNull(request);
+                Assert.assertEquals(i, request.getSequenceNumber());
+            }
+            Assert.assertEquals(0, supervised.getHandOffQueueSize());
+        } finally {
+            supervised.destroy();
+        }
+    }
+
+    @Test
+    public void handOffQueueExpiredOnDestroy() throws Exception {
+        StubClient client = new StubClient();
+        client.failing = true;
+        ExpiredRecordingHandler handler = new ExpiredRecordingHandler();
+        SupervisedSmppSession supervised = new SupervisedSmppSession(client, createConfiguration(), handler, scheduler);
+        supervised.start();
+
+        supervised.sendRequestPdu(createRequest(1), 1000, false);
+        supervised.sendRequestPdu(createRequest(2), 1000, false);
+        supervised.destroy();
+
+        Assert.assertEquals(0, supervised.getHandOffQueueSize());
+        Assert.assertEquals(2, handler.expired.size());
+        Assert.assertEquals(1, handler.expired.poll().getSequenceNumber());
+        Assert.assertEquals(2, handler.expired.poll().getSequenceNumber());
+    }
+
+    @Test
+    public void rebindDelayBacksOffWithJitter() throws Exception {
+        SmppSessionConfiguration configuration = createConfiguration();
+        configuration.setReconnectDelay(100);
+        configuration.setReconnectMaxDelay(1000);
+        SupervisedSmppSession supervised = new SupervisedSmppSession(new StubClient(), configuration, null, scheduler);
+
+        // the first attempt is right away
+        Assert.assertEquals(0, supervised.getRebindDelay(0));
+
+        // then half fixed, half random of 100, 200, 400, 800 and 1000 (max) ms
+        long[] expected = new long[] { 100, 200, 400, 800, 1000, 1000 };
+        for (int attempts = 1; attempts <= expected.length; attempts++) {
+            Set<Long> delays = new HashSet<Long>();
+            for (int i = 0; i < 100; i++) {
+                long delay = supervised.getRebindDelay(attempts);
+                Assert.assertTrue("delay was " + delay, delay >= expected[attempts-1] / 2 && delay <= expected[attempts-1]);
+                delays.add(delay);
+            }
+            // jittered, so sessions don't retry in lock-step
+            Assert.assertTrue(delays.size() > 1);
+        }
+        supervised.destroy();
+    }
+
+}
@@ -21,11 +21,13 @@ package com.cloudhopper.smpp.pdu;
  */
 
 // third party imports
+import java.util.ListIterator;
 import org.junit.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 // my imports
+import com.cloudhopper.smpp.tlv.Tlv;
 
 /**
  *
@@ -59,4 +61,60 @@ public class PduTest {
         Assert.assertEquals(true, pdu0.hasCommandLengthCalculated());
         Assert.assertEquals(16, pdu0.getCommandLength());
     }
+
+    @Test
+    public void optionalParametersByTag() throws Exception {
+        Pdu pdu0 = new DeliverSm();
+
+        Assert.assertEquals(false, pdu0.hasOptionalParameter((short)0x0001));
+        Assert.assertNull(pdu0.getOptionalParameter((short)0x0001));
+
+        // more than the initial index capacity to force it to grow
+        for (int i = 1; i <= 20; i++) {
+            pdu0.addOptionalParameter(new Tlv((short)i, new byte[] { (byte)i }));
+        }
+        // duplicates are allowed, first match wins
+        pdu0.addOptionalParameter(new Tlv((short)0x0005, new byte[] { 0x55 }));
+
+        Assert.assertEquals(21, pdu0.getOptionalParameterCount());
+        for (int i = 1; i <= 20; i++) {
+            Assert.assertArrayEquals(new byte[] { (byte)i }, pdu0.getOptionalParameter((short)i).getValue());
+        }
+        Assert.assertEquals(false, pdu0.hasOptionalParameter((short)0x0015));
+
+        // replace keeps the encoding order
+        Tlv replaced = pdu0.setOptionalParameter(new Tlv((short)0x000A, new byte[] { 0x0A, 0x0A }));
+        Assert.assertArrayEquals(new byte[] { 0x0A }, replaced.getValue());
+        Assert.assertEquals((short)0x000A, pdu0.getOptionalParameters().get(9).getTag());
+        Assert.assertEquals(2, pdu0.getOptionalParameter((short)0x000A).getLength());
+
+        // removing shifts everything after it
+        Assert.assertEquals((short)0x0001, pdu0.removeOptionalParameter((short)0x0001).getTag());
+        Assert.assertEquals(false, pdu0.hasOptionalParameter((short)0x0001));
+        Assert.assertEquals((short)0x0002, pdu0.getOptionalParameters().get(0).getTag());
+        Assert.assertArrayEquals(new byte[] { 0x14 }, pdu0.getOptionalParameter((short)0x0014).getValue());
+
+        // the duplicate is found once the first one is removed
+        pdu0.removeOptionalParameter((short)0x0005);
+        Assert.assertArrayEquals(new byte[] { 0x55 }, pdu0.getOptionalParameter((short)0x0005).getValue());
+
+        // modifying the list directly is still picked up
+        pdu0.getOptionalParameters().add(new Tlv((short)0x0030, new byte[0]));
+        Assert.assertEquals(true, pdu0.hasOptionalParameter((short)0x0030));
+        pdu0.getOptionalParameters().set(0, new Tlv((short)0x0031, new byte[0]));
+        Assert.assertEquals(false, pdu0.hasOptionalParameter((short)0x0002));
+        // a same-size replacement with a new tag is found by that tag too
+        Assert.assertEquals(true, pdu0.hasOptionalParameter((short)0x0031));
+        Assert.assertSame(pdu0.getOptionalParameters().get(0), pdu0.getOptionalParameter((short)0x0031));
+        pdu0.getOptionalParameters().set(1, new Tlv((short)0x0032, new byte[0]));
+        Assert.assertSame(pdu0.getOptionalParameters().get(1), pdu0.getOptionalParameter((short)0x0032));
+        Assert.assertArrayEquals(new byte[] { 0x14 }, pdu0.getOptionalParameter((short)0x0014).getValue());
+        // so is a replacement through a list iterator (which keeps iterating)
+        ListIterator<Tlv> it = pdu0.getOptionalParameters().listIterator();
+        it.next();
+        it.set(new Tlv((short)0x0033, new byte[0]));
+        it.next();
+        Assert.assertEquals(true, pdu0.hasOptionalParameter((short)0x0033));
+        Assert.assertEquals(false, pdu0.hasOptionalParameter((short)0x0031));
+    }
 }
@@ -22,6 +22,7 @@ package com.cloudhopper.smpp.tlv;
 
 // third party imports
 import com.cloudhopper.commons.util.HexUtil;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -329,4 +330,25 @@ public class TlvTest {
         Assert.assertNotEquals(tlv0.hashCode(), differentAll.hashCode());
     }
 
+    @Test
+    public void equalsAndHashCodeDoNotCopyRetainedValue() throws Exception {
+        Tlv tlv0 = new Tlv((short)0x0001, ChannelBuffers.wrappedBuffer(new byte[] { 0x41, 0x42 }), null);
+        Tlv tlv1 = new Tlv((short)0x0001, new byte[] { 0x41, 0x42 });
+        Tlv tlv2 = new Tlv((short)0x0001, ChannelBuffers.wrappedBuffer(new byte[] { 0x41, 0x43 }), null);
+
+        Assert.assertTrue(tlv0.equals(tlv1));
+        Assert.assertTrue(tlv1.equals(tlv0));
+        Assert.assertEquals(tlv0.hashCode(), tlv1.hashCode());
+        Assert.assertFalse(tlv0.equals(tlv2));
+        Assert.assertFalse(tlv0.equals(new Tlv((short)0x0001, null)));
+        // neither call may swap the retained buffer for a copy
+        Assert.assertTrue(tlv0.isValueRetained());
+        Assert.assertTrue(tlv2.isValueRetained());
+
+        // once copied, the value is the same
+        Assert.assertArrayEquals(new byte[] { 0x41, 0x42 }, tlv0.getValue());
+        Assert.assertFalse(tlv0.isValueRetained());
+        Assert.assertTrue(tlv0.equals(tlv1));
+        Assert.assertEquals(tlv0.hashCode(), tlv1.hashCode());
+    }
 }
@@ -31,6 +31,7 @@ import com.cloudhopper.smpp.tlv.Tlv;
 import org.junit.*;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -96,6 +97,86 @@ public class PduDecoderTest {
         Assert.assertEquals(0, buffer.readableBytes());
     }
 
+    @Test
+    public void decodeVendorSpecificRequestCommandId() throws Exception {
+        PduFactoryRegistry registry = new PduFactoryRegistry();
+        registry.register(0x00010201, new PduFactory() {
+            @Override
+            public Pdu createPdu() {
+                return new EmptyBody<GenericNack>(0x00010201, "vendor_ping") {
+                    @Override
+                    public GenericNack createResponse() {
+                        GenericNack resp = new GenericNack();
+                        resp.setSequenceNumber(this.getSequenceNumber());
+                        return resp;
+                    }
+
+                    @Override
+                    public Class<GenericNack> getResponseClass() {
+                        return GenericNack.class;
+                    }
+                };
+            }
+        });
+        PduTranscoder transcoder0 = new DefaultPduTranscoder(this.context, HeapChannelBufferFactory.getInstance(), registry);
+
+        ChannelBuffer buffer = BufferHelper.createBuffer("0000001000010201000000000a342ee7");
+
+        Pdu pdu0 = transcoder0.decode(buffer);
+
+        Assert.assertEquals(16, pdu0.getCommandLength());
+        Assert.assertEquals(0x00010201, pdu0.getCommandId());
+        Assert.assertEquals(0, pdu0.getCommandStatus());
+        Assert.assertEquals(171192039, pdu0.getSequenceNumber());
+        Assert.assertEquals(true, pdu0.isRequest());
+        Assert.assertEquals("vendor_ping", pdu0.getName());
+        Assert.assertEquals(0, buffer.readableBytes());
+
+        // the registry of another transcoder still doesn't know about it
+        buffer = BufferHelper.createBuffer("0000001000010201000000000a342ee7");
+        try {
+            transcoder.decode(buffer);
+            Assert.fail();
+        } catch (UnknownCommandIdException e) {
+            // correct behavior
+        }
+    }
+
+    @Test
+    public void registerRejectsWrongPduTypeForCommandId() throws Exception {
+        PduFactoryRegistry registry = new PduFactoryRegistry();
+        try {
+            // a request registered for a response command id
+            registry.register(0x80010201, EnquireLink.class);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // correct behavior
+        }
+        Assert.assertNull(registry.lookup(0x80010201));
+    }
+
+    @Test
+    public void decodeRejectsWrongPduTypeFromFactory() throws Exception {
+        PduFactoryRegistry registry = new PduFactoryRegistry();
+        // passes the check on registration, then misbehaves
+        registry.register(0x80010201, new PduFactory() {
+            private int created = 0;
+            @Override
+            public Pdu createPdu() {
+                return (created++ == 0 ? new GenericNack() : new EnquireLink());
+            }
+        });
+        PduTranscoder transcoder0 = new DefaultPduTranscoder(this.context, HeapChannelBufferFactory.getInstance(), registry);
+
+        ChannelBuffer buffer = BufferHelper.createBuffer("0000001080010201000000000a342ee7");
+        try {
+            transcoder0.decode(buffer);
+            Assert.fail();
+        } catch (UnrecoverablePduException e) {
+            // correct behavior
+        }
+    }
+
     @Test
     public void decodeUnsupportedResponseCommandId() throws Exception {
         ChannelBuffer buffer = BufferHelper.createBuffer("0000001080000110000000000a342ee7");
@@ -640,6 +721,36 @@ public class PduDecoderTest {
         Assert.assertEquals(0, buffer.readableBytes());
     }
 
+    @Test
+    public void decodeDeliverSmWithZeroCopy() throws Exception {
+        DefaultPduTranscoder transcoder0 = new DefaultPduTranscoder(this.context);
+        transcoder0.setZeroCopyDecodeEnabled(true);
+
+        String hex = "000000400000000500000000000000030002013837363534333231000409343034303400000000000000000000084024232125262F3A000E0001010006000101";
+        ChannelBuffer buffer = BufferHelper.createBuffer(hex);
+
+        DeliverSm pdu0 = (DeliverSm)transcoder0.decode(buffer);
+
+        // short message and tlvs are slices of the original buffer
+        Assert.assertEquals(true, pdu0.hasRetainedBuffers());
+        Assert.assertEquals(true, pdu0.isShortMessageRetained());
+        Assert.assertEquals(8, pdu0.getShortMessageLength());
+        Assert.assertArrayEquals(HexUtil.toByteArray("4024232125262f3a"), BufferHelper.createByteArray(pdu0.getShortMessageBuffer()));
+        Tlv tlv0 = pdu0.getOptionalParameter(SmppConstants.TAG_SOURCE_NETWORK_TYPE);
+        Assert.assertEquals(true, tlv0.isValueRetained());
+        Assert.assertEquals(1, tlv0.getUnsignedLength());
+
+        // re-encoding writes the slices back out as-is
+        Assert.assertArrayEquals(HexUtil.toByteArray(hex), BufferHelper.createByteArray(transcoder0.encode(pdu0)));
+
+        // copying releases the retained buffers but keeps the values
+        pdu0.copyRetainedBuffers();
+        Assert.assertEquals(false, pdu0.hasRetainedBuffers());
+        Assert.assertArrayEquals(HexUtil.toByteArray("4024232125262f3a"), pdu0.getShortMessage());
+        Assert.assertEquals(0x01, tlv0.getValueAsByte());
+        Assert.assertArrayEquals(HexUtil.toByteArray(hex), BufferHelper.createByteArray(transcoder0.encode(pdu0)));
+    }
+
     @Test
     public void decodeDeliverSmAsDeliveryReceipt() throws Exception {
         ChannelBuffer buffer = BufferHelper.createBuffer("000000BA00000005000000000000000200010134343935313336313932300001013430343034000400000000000000006E69643A30303539313133393738207375623A30303120646C7672643A303031207375626D697420646174653A3130303231303137333020646F6E6520646174653A3130303231303137333120737461743A44454C49565244206572723A30303020746578743A4024232125262F3A000E0001010006000101001E000833383630316661000427000102");
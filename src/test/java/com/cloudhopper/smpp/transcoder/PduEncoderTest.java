@@ -30,9 +30,11 @@ import com.cloudhopper.smpp.tlv.Tlv;
 import com.cloudhopper.smpp.type.SmppInvalidArgumentException;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteOrder;
 
 import org.junit.*;
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +65,29 @@ public class PduEncoderTest {
         Assert.assertArrayEquals(HexUtil.toByteArray("0000001000000015000000000a342ee7"), BufferHelper.createByteArray(buffer));
     }
 
+    @Test
+    public void encodeEnquireLinkIntoDirectBuffer() throws Exception {
+        PduTranscoder directTranscoder = new DefaultPduTranscoder(this.context, new DirectChannelBufferFactory(ByteOrder.BIG_ENDIAN, 64));
+
+        EnquireLink pdu0 = new EnquireLink();
+        pdu0.setCommandStatus(0);
+        pdu0.setSequenceNumber(171192039);
+
+        ChannelBuffer buffer0 = directTranscoder.encode(pdu0);
+        Assert.assertTrue(buffer0.isDirect());
+        Assert.assertArrayEquals(HexUtil.toByteArray("0000001000000015000000000a342ee7"), BufferHelper.createByteArray(buffer0));
+
+        // encoding more PDUs than fit in a single arena must not corrupt earlier ones
+        SubmitSmResp pdu1 = new SubmitSmResp();
+        pdu1.setSequenceNumber(171192033);
+        pdu1.setMessageId("94258431594");
+        ChannelBuffer buffer1 = directTranscoder.encode(pdu1);
+        ChannelBuffer buffer2 = directTranscoder.encode(pdu1);
+        Assert.assertArrayEquals(HexUtil.toByteArray("0000001000000015000000000a342ee7"), BufferHelper.createByteArray(buffer0));
+        Assert.assertArrayEquals(HexUtil.toByteArray("0000001c80000004000000000a342ee1393432353834333135393400"), BufferHelper.createByteArray(buffer1));
+        Assert.assertArrayEquals(HexUtil.toByteArray("0000001c80000004000000000a342ee1393432353834333135393400"), BufferHelper.createByteArray(buffer2));
+    }
+
     @Test
     public void encodeEnquireLinkResp() throws Exception {
         EnquireLinkResp pdu0 = new EnquireLinkResp();
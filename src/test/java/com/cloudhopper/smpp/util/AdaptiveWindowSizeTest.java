@@ -0,0 +1,130 @@
+package com.cloudhopper.smpp.util;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+// third party imports
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.*;
+
+// my imports
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.impl.IntKeyedSmppSendWindow;
+import com.cloudhopper.smpp.pdu.EnquireLink;
+
+/**
+ *
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class AdaptiveWindowSizeTest {
+
+    @Test
+    public void decreaseOnThrottleAndIncreaseOnLowLatency() throws Exception {
+        AdaptiveWindowSize windowSize = new AdaptiveWindowSize(2, 16, 1000);
+        Assert.assertEquals(16, windowSize.getSize());
+
+        long acceptTime = System.currentTimeMillis();
+        windowSize.responseReceived(acceptTime, 10, SmppConstants.STATUS_THROTTLED);
+        Assert.assertEquals(8, windowSize.getSize());
+
+        // a burst of throttles for requests sent before the decrease only counts once
+        windowSize.responseReceived(acceptTime - 1, 10, SmppConstants.STATUS_MSGQFUL);
+        windowSize.responseReceived(acceptTime - 1, 10, SmppConstants.STATUS_THROTTLED);
+        Assert.assertEquals(8, windowSize.getSize());
+
+        // a latency spike for a request sent after the decrease counts
+        Thread.sleep(5);
+        windowSize.responseReceived(System.currentTimeMillis(), 2000, SmppConstants.STATUS_OK);
+        Assert.assertEquals(4, windowSize.getSize());
+
+        // never drops under the min size
+        Thread.sleep(5);
+        windowSize.requestExpired(System.currentTimeMillis());
+        Thread.sleep(5);
+        windowSize.requestExpired(System.currentTimeMillis());
+        Assert.assertEquals(2, windowSize.getSize());
+
+        // about one slot per window's worth of ok responses
+        windowSize.responseReceived(System.currentTimeMillis(), 10, SmppConstants.STATUS_OK);
+        windowSize.responseReceived(System.currentTimeMillis(), 10, SmppConstants.STATUS_OK);
+        Assert.assertEquals(2, windowSize.getSize());
+        windowSize.responseReceived(System.currentTimeMillis(), 10, SmppConstants.STATUS_OK);
+        Assert.assertEquals(3, windowSize.getSize());
+
+        // never grows over the max size
+        for (int i = 0; i < 1000; i++) {
+            windowSize.responseReceived(System.currentTimeMillis(), 10, SmppConstants.STATUS_OK);
+        }
+        Assert.assertEquals(16, windowSize.getSize());
+    }
+
+    @Test
+    public void awaitFreeSlot() throws Exception {
+        AdaptiveWindowSize windowSize = new AdaptiveWindowSize(1, 4, -1);
+        IntKeyedSmppSendWindow window = new IntKeyedSmppSendWindow(4);
+
+        window.offer(1, new EnquireLink(), 0, 0, false);
+        windowSize.responseReceived(System.currentTimeMillis(), 10, SmppConstants.STATUS_THROTTLED);
+        windowSize.responseReceived(System.currentTimeMillis(), 10, SmppConstants.STATUS_THROTTLED);
+        Assert.assertEquals(1, windowSize.getSize());
+
+        // 1 pending request fills up the effective window
+        Assert.assertEquals(false, windowSize.awaitFreeSlot(window, 50));
+
+        window.complete(1, new EnquireLink().createResponse());
+        Assert.assertEquals(true, windowSize.awaitFreeSlot(window, 50));
+    }
+
+    @Test
+    public void awaitFreeSlotSignalledWhenRequestLeavesWindow() throws Exception {
+        final AdaptiveWindowSize windowSize = new AdaptiveWindowSize(1, 1, -1);
+        final IntKeyedSmppSendWindow window = new IntKeyedSmppSendWindow(4);
+        window.offer(1, new EnquireLink(), 0, 0, false);
+        window.offer(2, new EnquireLink(), 0, 0, false);
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicBoolean freeSlot = new AtomicBoolean(false);
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    freeSlot.set(windowSize.awaitFreeSlot(window, 10000));
+                } catch (InterruptedException e) {
+                    // fall through
+                }
+                done.countDown();
+            }
+        };
+        waiter.start();
+
+        // a response still leaves the window full
+        window.complete(1, new EnquireLink().createResponse());
+        windowSize.responseReceived(System.currentTimeMillis(), 10, SmppConstants.STATUS_OK);
+        Assert.assertEquals(false, done.await(100, TimeUnit.MILLISECONDS));
+
+        // a cancelled request wakes the waiter well before its timeout
+        window.complete(2, new EnquireLink().createResponse());
+        windowSize.requestRemoved();
+        Assert.assertEquals(true, done.await(1000, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(true, freeSlot.get());
+    }
+}
@@ -129,6 +129,63 @@ public class ChannelBufferUtilTest {
         Assert.assertArrayEquals(HexUtil.toByteArray("4100"), BufferHelper.createByteArray(buffer0));
     }
 
+    @Test
+    public void readNullTerminatedStringFromDirectBuffer() throws Exception {
+        ChannelBuffer buffer0 = ChannelBuffers.directBuffer(13);
+        buffer0.writeBytes(HexUtil.toByteArray("39343439353133363139323000"));
+        buffer0.skipBytes(1);
+        String str0 = ChannelBufferUtil.readNullTerminatedString(buffer0);
+        Assert.assertEquals("44951361920", str0);
+        Assert.assertEquals(0, buffer0.readableBytes());
+
+        // latin-1 characters above 0x7F
+        buffer0 = BufferHelper.createBuffer("E9E800");
+        str0 = ChannelBufferUtil.readNullTerminatedString(buffer0);
+        Assert.assertEquals("\u00e9\u00e8", str0);
+    }
+
+    @Test
+    public void readNullTerminatedStringReusesShortValues() throws Exception {
+        // service type "CMT" read twice is the same instance
+        String str0 = ChannelBufferUtil.readNullTerminatedString(BufferHelper.createBuffer("434D5400"));
+        String str1 = ChannelBufferUtil.readNullTerminatedString(BufferHelper.createBuffer("434D5400"));
+        Assert.assertEquals("CMT", str0);
+        Assert.assertSame(str0, str1);
+
+        // a different value in the same length is not confused with it
+        String str2 = ChannelBufferUtil.readNullTerminatedString(BufferHelper.createBuffer("574150"+"00"));
+        Assert.assertEquals("WAP", str2);
+    }
+
+    @Test
+    public void writeNullTerminatedStringOutsideLatin1() throws Exception {
+        ChannelBuffer buffer0 = ChannelBuffers.buffer(10);
+        ChannelBufferUtil.writeNullTerminatedString(buffer0, "A\u00e9\u20ac");
+        Assert.assertArrayEquals(HexUtil.toByteArray("41E93F00"), BufferHelper.createByteArray(buffer0));
+
+        // a buffer without a backing array
+        buffer0 = ChannelBuffers.directBuffer(10);
+        ChannelBufferUtil.writeNullTerminatedString(buffer0, "A\u00e9\u20ac");
+        Assert.assertArrayEquals(HexUtil.toByteArray("41E93F00"), BufferHelper.createByteArray(buffer0));
+    }
+
+    @Test
+    public void writeNullTerminatedStringSurrogatePair() throws Exception {
+        // U+1F600 is a surrogate pair (2 chars): each char is written as a '?'
+        // so the encoded size matches PduUtil.calculateByteSizeOfNullTerminatedString
+        // (String.getBytes("ISO-8859-1") would write a single '?' for the pair)
+        String value = "A\ud83d\ude00B";
+        ChannelBuffer buffer0 = ChannelBuffers.buffer(10);
+        ChannelBufferUtil.writeNullTerminatedString(buffer0, value);
+        Assert.assertArrayEquals(HexUtil.toByteArray("413F3F4200"), BufferHelper.createByteArray(buffer0));
+        Assert.assertEquals(PduUtil.calculateByteSizeOfNullTerminatedString(value), buffer0.readableBytes());
+
+        // a buffer without a backing array
+        buffer0 = ChannelBuffers.directBuffer(10);
+        ChannelBufferUtil.writeNullTerminatedString(buffer0, value);
+        Assert.assertArrayEquals(HexUtil.toByteArray("413F3F4200"), BufferHelper.createByteArray(buffer0));
+    }
+
     @Test
     public void readTlv() throws Exception {
         Tlv tlv0 = null;
@@ -21,6 +21,9 @@ package com.cloudhopper.smpp.util;
  */
 
 // third party imports
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import org.junit.*;
 
 // my imports
@@ -54,4 +57,36 @@ public class SequenceNumberTest {
         Assert.assertEquals(2, seqNum.next());
         Assert.assertEquals(3, seqNum.next());
     }
+
+    @Test
+    public void concurrentNextIsUnique() throws Exception {
+        final SequenceNumber seqNum = new SequenceNumber(0x7FFFFFFF - 5000);
+        final Set<Integer> values = Collections.synchronizedSet(new HashSet<Integer>());
+        final int threadCount = 8;
+        final int perThread = 2000;
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        values.add(seqNum.next());
+                    }
+                }
+            };
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        // every value was unique even across the wrap around
+        Assert.assertEquals(threadCount*perThread, values.size());
+        Assert.assertTrue(values.contains(0x7FFFFFFF));
+        Assert.assertTrue(values.contains(1));
+        Assert.assertFalse(values.contains(0));
+    }
 }
@@ -0,0 +1,85 @@
+package com.cloudhopper.smpp.util;
+
+/*
+ * #%L
+ * ch-smpp
+ * %%
+ * Copyright (C) 2009 - 2015 Cloudhopper by Twitter
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+// third party imports
+import java.util.concurrent.TimeUnit;
+import org.junit.*;
+
+// my imports
+
+/**
+ *
+ * @author joelauer (twitter: @jjlauer or <a href="http://twitter.com/jjlauer" target=window>http://twitter.com/jjlauer</a>)
+ */
+public class TokenBucketRateLimiterTest {
+
+    @Test
+    public void burstThenPaced() throws Exception {
+        // 10 per second = 1 permit every 100 ms
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 3);
+
+        // burst credit is available right away
+        Assert.assertEquals(0, limiter.reserve(0));
+        Assert.assertEquals(0, limiter.reserve(0));
+        Assert.assertEquals(0, limiter.reserve(0));
+
+        // the next permit isn't due for ~100 ms, so nothing is reserved
+        Assert.assertEquals(-1, limiter.reserve(TimeUnit.MILLISECONDS.toNanos(50)));
+        long wait = limiter.reserve(TimeUnit.MILLISECONDS.toNanos(150));
+        Assert.assertTrue("wait was " + wait, wait > TimeUnit.MILLISECONDS.toNanos(50) && wait <= TimeUnit.MILLISECONDS.toNanos(100));
+        // and the one after that is another 100 ms later
+        wait = limiter.reserve(TimeUnit.MILLISECONDS.toNanos(250));
+        Assert.assertTrue("wait was " + wait, wait > TimeUnit.MILLISECONDS.toNanos(150) && wait <= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void reservationsAreSpacedWithoutWaiting() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(20, 1);
+        // the first is free, the other 4 are due 50 ms apart
+        long last = limiter.reserve(TimeUnit.SECONDS.toNanos(1));
+        Assert.assertEquals(0, last);
+        for (int i = 0; i < 4; i++) {
+            long wait = limiter.reserve(TimeUnit.SECONDS.toNanos(1));
+            Assert.assertTrue("wait was " + wait + " after " + last, wait - last > TimeUnit.MILLISECONDS.toNanos(40) && wait - last <= TimeUnit.MILLISECONDS.toNanos(50));
+            last = wait;
+        }
+        Assert.assertEquals(-1, limiter.reserve(TimeUnit.MILLISECONDS.toNanos(10)));
+    }
+
+    @Test
+    public void pauseWithoutRateLimit() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(-1, 1);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(0, limiter.reserve(0));
+        }
+
+        limiter.pause(200);
+        Assert.assertEquals(-1, limiter.reserve(TimeUnit.MILLISECONDS.toNanos(100)));
+        long wait = limiter.reserve(TimeUnit.MILLISECONDS.toNanos(300));
+        Assert.assertTrue("wait was " + wait, wait > TimeUnit.MILLISECONDS.toNanos(100) && wait <= TimeUnit.MILLISECONDS.toNanos(200));
+
+        // a shorter pause doesn't cut the current one short
+        limiter.pause(10);
+        Assert.assertEquals(-1, limiter.reserve(TimeUnit.MILLISECONDS.toNanos(100)));
+    }
+
+}